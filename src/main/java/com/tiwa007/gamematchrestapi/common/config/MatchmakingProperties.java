@@ -0,0 +1,155 @@
+package com.tiwa007.gamematchrestapi.common.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Settings of matchmaking queue, bound from matchmaking.* in application.properties
+ */
+@Configuration
+@ConfigurationProperties(prefix = "matchmaking")
+public class MatchmakingProperties {
+
+    // number of players in one match
+    private int matchSize = 2;
+
+    // interval between two passes of the matcher
+    private long tickMillis = 100;
+
+    // how long matched, cancelled or expired tickets can still be polled
+    private long ticketTtlMillis = 60000;
+
+    // how long a ticket waits for a match before it expires
+    private long maxWaitMillis = 300000;
+
+    private Widening widening = new Widening();
+
+    public int getMatchSize() {
+        return matchSize;
+    }
+
+    public void setMatchSize(int matchSize) {
+        this.matchSize = matchSize;
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    public void setTickMillis(long tickMillis) {
+        this.tickMillis = tickMillis;
+    }
+
+    public long getTicketTtlMillis() {
+        return ticketTtlMillis;
+    }
+
+    public void setTicketTtlMillis(long ticketTtlMillis) {
+        this.ticketTtlMillis = ticketTtlMillis;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    public void setMaxWaitMillis(long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public Widening getWidening() {
+        return widening;
+    }
+
+    public void setWidening(Widening widening) {
+        this.widening = widening;
+    }
+
+    /**
+     * Search window widening. A waiting ticket starts by only accepting its own level and geography,
+     * and applies each step once it has waited afterMillis.
+     */
+    public static class Widening {
+
+        private boolean enabled = false;
+
+        // ordered by afterMillis
+        private List<Step> steps = new ArrayList<>();
+
+        // geography -> other geographies, nearest first
+        private Map<String, List<String>> regionNeighbors = new HashMap<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public List<Step> getSteps() {
+            return steps;
+        }
+
+        public void setSteps(List<Step> steps) {
+            this.steps = steps;
+        }
+
+        public Map<String, List<String>> getRegionNeighbors() {
+            return regionNeighbors;
+        }
+
+        public void setRegionNeighbors(Map<String, List<String>> regionNeighbors) {
+            this.regionNeighbors = regionNeighbors;
+        }
+    }
+
+    public static class Step {
+
+        // waiting time after which the step applies
+        private long afterMillis;
+
+        // accepted distance between levels, e.g. 1 lets 'pro' match 'noob' and 'invincible'
+        private int levelDistance;
+
+        // number of neighbor geographies accepted besides own geography
+        private int regionCount;
+
+        public Step() {
+        }
+
+        public Step(long afterMillis, int levelDistance, int regionCount) {
+            this.afterMillis = afterMillis;
+            this.levelDistance = levelDistance;
+            this.regionCount = regionCount;
+        }
+
+        public long getAfterMillis() {
+            return afterMillis;
+        }
+
+        public void setAfterMillis(long afterMillis) {
+            this.afterMillis = afterMillis;
+        }
+
+        public int getLevelDistance() {
+            return levelDistance;
+        }
+
+        public void setLevelDistance(int levelDistance) {
+            this.levelDistance = levelDistance;
+        }
+
+        public int getRegionCount() {
+            return regionCount;
+        }
+
+        public void setRegionCount(int regionCount) {
+            this.regionCount = regionCount;
+        }
+    }
+}
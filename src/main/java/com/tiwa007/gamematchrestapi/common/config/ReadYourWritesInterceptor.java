@@ -0,0 +1,134 @@
+package com.tiwa007.gamematchrestapi.common.config;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read-your-writes on top of replica routing. A successful write request records the time after its commit
+ * for the client that sent it and, under /api/user/{userId}, for the user. Read requests of the same client or
+ * user are sent to the primary until ReplicaLagMonitor sees that the replica applied the write.
+ * Every read goes to the primary while the replica lags more than replica.max-lag-millis.
+ * A client is identified by the X-Client-Id header, or by a client-id cookie issued to clients without one.
+ * Buffered credits are recorded again for their users when they are flushed.
+ */
+public class ReadYourWritesInterceptor implements HandlerInterceptor {
+
+    public static final String CLIENT_ID_HEADER = "X-Client-Id";
+
+    public static final String CLIENT_ID_COOKIE = "client-id";
+
+    private static final String USER_ID_VARIABLE = "userId";
+
+    private final ReplicaLagMonitor replicaLagMonitor;
+
+    // client:<clientId> or user:<userId> -> time after last write
+    private final Map<String, Long> lastWriteMillisMap = new ConcurrentHashMap<>();
+
+    public ReadYourWritesInterceptor(ReplicaLagMonitor replicaLagMonitor) {
+        this.replicaLagMonitor = replicaLagMonitor;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String clientKey = getClientKey(request, response);
+        if (isRead(request))
+            ReplicaRoutingDataSource.setPrimaryRequired(!this.replicaLagMonitor.isHealthy(System.currentTimeMillis())
+                    || this.isUnreplicated(clientKey) || this.isUnreplicated(getUserKey(request)));
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception exception) {
+        ReplicaRoutingDataSource.setPrimaryRequired(false);
+        // the write is committed once the handler returned
+        if (isRead(request) || exception != null || response.getStatus() >= 400)
+            return;
+        long nowMillis = System.currentTimeMillis();
+        String clientKey = getClientKey(request, null);
+        if (clientKey != null)
+            this.lastWriteMillisMap.put(clientKey, nowMillis);
+        String userKey = getUserKey(request);
+        if (userKey != null)
+            this.lastWriteMillisMap.put(userKey, nowMillis);
+    }
+
+    /**
+     * Record writes committed after their request completed, like credits flushed by CreditWriteBuffer.
+     * Reads of the users go to the primary until the replica applied the writes.
+     * @param userIds
+     */
+    public void recordUserWrites(Collection<Long> userIds) {
+        long nowMillis = System.currentTimeMillis();
+        for (Long userId : userIds)
+            this.lastWriteMillisMap.put("user:" + userId, nowMillis);
+    }
+
+    // writes seen on the replica no longer need the primary. Writes older than replica.max-lag-millis are
+    // either replicated or the replica is not healthy, so reads go to the primary without them
+    @Scheduled(fixedDelayString = "${replica.heartbeat-millis:100}")
+    public void evictReplicatedWrites() {
+        long nowMillis = System.currentTimeMillis();
+        this.lastWriteMillisMap.values().removeIf(lastWriteMillis -> this.replicaLagMonitor.isReplicated(lastWriteMillis)
+                || nowMillis - lastWriteMillis >= this.replicaLagMonitor.getMaxLagMillis());
+    }
+
+//    Helper methods
+
+    private boolean isUnreplicated(String key) {
+        Long lastWriteMillis = key == null ? null : this.lastWriteMillisMap.get(key);
+        return lastWriteMillis != null && !this.replicaLagMonitor.isReplicated(lastWriteMillis);
+    }
+
+    private static boolean isRead(HttpServletRequest request) {
+        return "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+    }
+
+    /**
+     * Get key of client from header or cookie, and issue a cookie to a new client if response is given
+     */
+    private static String getClientKey(HttpServletRequest request, HttpServletResponse response) {
+        String clientId = request.getHeader(CLIENT_ID_HEADER);
+        if (clientId == null && request.getCookies() != null) {
+            for (Cookie cookie : request.getCookies()) {
+                if (CLIENT_ID_COOKIE.equals(cookie.getName()))
+                    clientId = cookie.getValue();
+            }
+        }
+        if (clientId == null) {
+            // set in preHandle, so the same id is found again in afterCompletion
+            clientId = (String) request.getAttribute(CLIENT_ID_COOKIE);
+            if (clientId == null && response != null) {
+                clientId = UUID.randomUUID().toString();
+                request.setAttribute(CLIENT_ID_COOKIE, clientId);
+                Cookie cookie = new Cookie(CLIENT_ID_COOKIE, clientId);
+                cookie.setPath("/");
+                cookie.setHttpOnly(true);
+                response.addCookie(cookie);
+            }
+        }
+        return clientId == null ? null : "client:" + clientId;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String getUserKey(HttpServletRequest request) {
+        Map<String, String> variableMap =
+                (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (variableMap == null || variableMap.get(USER_ID_VARIABLE) == null)
+            return null;
+        try {
+            return "user:" + Long.valueOf(variableMap.get(USER_ID_VARIABLE));
+        } catch (NumberFormatException exception) {
+            return null;
+        }
+    }
+}
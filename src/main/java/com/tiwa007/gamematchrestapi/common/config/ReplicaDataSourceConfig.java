@@ -0,0 +1,128 @@
+package com.tiwa007.gamematchrestapi.common.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.JpaVendorAdapter;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Primary and replica pools, used when replica.datasource.url is set. Read-only transactions read from the
+ * replica, everything else, including Flyway migrations and schema validation, uses the primary.
+ * The primary is configured by spring.datasource.*, the replica by replica.datasource.* and shares
+ * username and password of the primary unless they are set.
+ * Hibernate releases connections after each transaction, so every transaction is routed on its own.
+ * Rows read from the replica are not put in the second-level cache, see ReplicaJpaDialect.
+ */
+@Configuration
+@ConditionalOnProperty(name = "replica.datasource.url")
+public class ReplicaDataSourceConfig implements WebMvcConfigurer {
+
+    @Value("${replica.max-lag-millis:1000}")
+    private long maxLagMillis;
+
+    @Autowired
+    @Lazy
+    private ReadYourWritesInterceptor readYourWritesInterceptor;
+
+    /**
+     * Routing data source over the primary and replica pools. The pools are not beans of their own,
+     * so the data source initializer only sees this one.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties dataSourceProperties, Environment environment,
+                                 @Value("${replica.datasource.url}") String replicaUrl,
+                                 @Value("${replica.datasource.username:}") String replicaUsername,
+                                 @Value("${replica.datasource.password:}") String replicaPassword) {
+        Binder binder = Binder.get(environment);
+        HikariDataSource primaryDataSource =
+                dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(primaryDataSource));
+        HikariDataSource replicaDataSource = DataSourceBuilder.create().type(HikariDataSource.class)
+                .driverClassName(dataSourceProperties.determineDriverClassName())
+                .url(replicaUrl)
+                .username(replicaUsername.isEmpty() ? dataSourceProperties.determineUsername() : replicaUsername)
+                .password(replicaPassword.isEmpty() ? dataSourceProperties.determinePassword() : replicaPassword)
+                .build();
+        binder.bind("replica.datasource.hikari", Bindable.ofInstance(replicaDataSource));
+
+        Map<Object, Object> targetDataSourceMap = new HashMap<>();
+        targetDataSourceMap.put(ReplicaRoutingDataSource.Target.PRIMARY, primaryDataSource);
+        targetDataSourceMap.put(ReplicaRoutingDataSource.Target.REPLICA, replicaDataSource);
+        ReplicaRoutingDataSource routingDataSource = new ReplicaRoutingDataSource();
+        routingDataSource.setTargetDataSources(targetDataSourceMap);
+        routingDataSource.setDefaultTargetDataSource(primaryDataSource);
+        routingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    /**
+     * Vendor adapter of Spring Boot with ReplicaJpaDialect, so only reads of the primary fill the second-level cache
+     */
+    @Bean
+    public JpaVendorAdapter jpaVendorAdapter(JpaProperties jpaProperties) {
+        HibernateJpaVendorAdapter adapter = new HibernateJpaVendorAdapter() {
+
+            private final HibernateJpaDialect jpaDialect = new ReplicaJpaDialect();
+
+            @Override
+            public HibernateJpaDialect getJpaDialect() {
+                return jpaDialect;
+            }
+        };
+        adapter.setShowSql(jpaProperties.isShowSql());
+        if (jpaProperties.getDatabase() != null)
+            adapter.setDatabase(jpaProperties.getDatabase());
+        if (jpaProperties.getDatabasePlatform() != null)
+            adapter.setDatabasePlatform(jpaProperties.getDatabasePlatform());
+        adapter.setGenerateDdl(jpaProperties.isGenerateDdl());
+        return adapter;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer replicaConnectionHandlingCustomizer() {
+        return hibernateProperties -> hibernateProperties.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(DataSource dataSource) {
+        Map<Object, DataSource> targetDataSourceMap = ((ReplicaRoutingDataSource)
+                ((LazyConnectionDataSourceProxy) dataSource).getTargetDataSource()).getResolvedDataSources();
+        return new ReplicaLagMonitor(targetDataSourceMap.get(ReplicaRoutingDataSource.Target.PRIMARY),
+                targetDataSourceMap.get(ReplicaRoutingDataSource.Target.REPLICA), this.maxLagMillis);
+    }
+
+    @Bean
+    public ReadYourWritesInterceptor readYourWritesInterceptor(ReplicaLagMonitor replicaLagMonitor) {
+        return new ReadYourWritesInterceptor(replicaLagMonitor);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(this.readYourWritesInterceptor).addPathPatterns("/api/**");
+    }
+}
@@ -0,0 +1,29 @@
+package com.tiwa007.gamematchrestapi.common.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.TransactionDefinition;
+
+import javax.persistence.CacheStoreMode;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import java.sql.SQLException;
+
+/**
+ * Hibernate dialect that keeps rows read from the replica out of the second-level cache.
+ * Transactions routed to the replica only read the cache; a row loaded there may be older than one evicted
+ * after a write, and caching it would serve it to readers of the primary too.
+ */
+public class ReplicaJpaDialect extends HibernateJpaDialect {
+
+    @Override
+    public Object beginTransaction(EntityManager entityManager, TransactionDefinition definition)
+            throws PersistenceException, SQLException {
+        Object transactionData = super.beginTransaction(entityManager, definition);
+        // set on every transaction, an entity manager opened in view is shared by transactions of the request
+        boolean replica = definition.isReadOnly() && !ReplicaRoutingDataSource.isPrimaryRequired();
+        entityManager.setProperty(AvailableSettings.JPA_SHARED_CACHE_STORE_MODE,
+                replica ? CacheStoreMode.BYPASS : CacheStoreMode.USE);
+        return transactionData;
+    }
+}
@@ -0,0 +1,75 @@
+package com.tiwa007.gamematchrestapi.common.config;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+
+/**
+ * Measures replica lag with a heartbeat. Every replica.heartbeat-millis the current time is written to the
+ * primary and the last replicated heartbeat is read from the replica. Replication applies writes in order,
+ * so a write made before the replicated heartbeat is visible on the replica.
+ */
+public class ReplicaLagMonitor {
+
+    private static final String WRITE_BEAT_SQL = "UPDATE replica_heartbeat SET beat_millis = ? WHERE heartbeat_id = 1";
+
+    private static final String READ_BEAT_SQL = "SELECT beat_millis FROM replica_heartbeat WHERE heartbeat_id = 1";
+
+    private final JdbcTemplate primaryJdbcTemplate;
+
+    private final JdbcTemplate replicaJdbcTemplate;
+
+    private final long maxLagMillis;
+
+    // last heartbeat seen on the replica, 0 until the first one is replicated
+    private volatile long replicatedMillis;
+
+    public ReplicaLagMonitor(DataSource primaryDataSource, DataSource replicaDataSource, long maxLagMillis) {
+        this.primaryJdbcTemplate = new JdbcTemplate(primaryDataSource);
+        this.replicaJdbcTemplate = new JdbcTemplate(replicaDataSource);
+        this.maxLagMillis = maxLagMillis;
+    }
+
+    public long getMaxLagMillis() {
+        return maxLagMillis;
+    }
+
+    /**
+     * Write a heartbeat to the primary and read the replicated heartbeat from the replica
+     */
+    @Scheduled(fixedDelayString = "${replica.heartbeat-millis:100}")
+    public void beat() {
+        try {
+            this.primaryJdbcTemplate.update(WRITE_BEAT_SQL, System.currentTimeMillis());
+        } catch (DataAccessException exception) {
+            // the replica is still checked while the primary is unavailable
+        }
+        try {
+            Long beatMillis = this.replicaJdbcTemplate.queryForObject(READ_BEAT_SQL, Long.class);
+            if (beatMillis != null)
+                this.replicatedMillis = beatMillis;
+        } catch (DataAccessException exception) {
+            // an unreachable replica keeps its last heartbeat and falls behind
+        }
+    }
+
+    /**
+     * Whether a write is visible on the replica
+     * @param writeMillis time after the write committed
+     * @return true if a heartbeat written after writeMillis was replicated
+     */
+    public boolean isReplicated(long writeMillis) {
+        return this.replicatedMillis >= writeMillis;
+    }
+
+    /**
+     * Whether the replica can serve reads
+     * @param nowMillis
+     * @return true if the replica lags behind the primary by less than replica.max-lag-millis
+     */
+    public boolean isHealthy(long nowMillis) {
+        return nowMillis - this.replicatedMillis < this.maxLagMillis;
+    }
+}
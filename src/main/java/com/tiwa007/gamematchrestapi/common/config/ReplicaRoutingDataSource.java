@@ -0,0 +1,41 @@
+package com.tiwa007.gamematchrestapi.common.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Routes connections of read-only transactions to the replica and every other connection to the primary.
+ * The transaction is only known to be read-only once it is synchronized, so this data source is wrapped in a
+ * LazyConnectionDataSourceProxy that looks up the connection at the first statement.
+ * Reads of the current thread go to the primary while primary is required, e.g. for read-your-writes.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Target {
+        PRIMARY, REPLICA
+    }
+
+    private static final ThreadLocal<Boolean> primaryRequired = new ThreadLocal<>();
+
+    /**
+     * Require the primary for read-only transactions of the current thread until cleared
+     * @param required
+     */
+    public static void setPrimaryRequired(boolean required) {
+        if (required)
+            primaryRequired.set(Boolean.TRUE);
+        else
+            primaryRequired.remove();
+    }
+
+    public static boolean isPrimaryRequired() {
+        return primaryRequired.get() != null;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !isPrimaryRequired())
+            return Target.REPLICA;
+        return Target.PRIMARY;
+    }
+}
@@ -0,0 +1,115 @@
+package com.tiwa007.gamematchrestapi.common.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.*;
+
+/**
+ * Global database and one database per geography, used when shard.enabled is true.
+ * Connections go to the shard set by ShardTemplate for the current thread, and to the global database otherwise.
+ * Flyway migrates the global database and every shard with the same migrations.
+ * Not combined with replica routing of ReplicaDataSourceConfig.
+ */
+@Configuration
+@ConditionalOnProperty(name = "shard.enabled", havingValue = "true")
+public class ShardDataSourceConfig {
+
+    // sequences of a shard start at its number shifted by this many bits, which leaves 2^40 ids per shard.
+    // Ids stay below 2^53, so clients reading JSON numbers as doubles keep them exact, and shard numbers go from 1 to 8191
+    public static final int SHARD_ID_SHIFT = 40;
+
+    private static final int MAX_SHARD_NUMBER = (int) ((1L << 53) >> SHARD_ID_SHIFT) - 1;
+
+    // pooled sequence generators hand out the ids of a block below the value of the sequence
+    private static final int SEQUENCE_ALLOCATION_SIZE = 50;
+
+    private static final List<String> SEQUENCE_LIST = Arrays.asList("user_seq", "interest_seq", "hibernate_sequence");
+
+    /**
+     * Routing data source over the global and shard pools. The pools are not beans of their own,
+     * so the data source initializer only sees this one.
+     * @throws IllegalStateException
+     * if a shard has no url, its number is out of range or shards share a number
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties dataSourceProperties, ShardProperties shardProperties) {
+        Map<Object, Object> targetDataSourceMap = new HashMap<>();
+        Set<Integer> numberSet = new HashSet<>();
+        for (Map.Entry<String, ShardProperties.Shard> entry : shardProperties.getShards().entrySet()) {
+            ShardProperties.Shard shard = entry.getValue();
+            if (shard.getUrl() == null || shard.getNumber() < 1 || shard.getNumber() > MAX_SHARD_NUMBER
+                    || !numberSet.add(shard.getNumber()))
+                throw new IllegalStateException("Shard of geography: " + entry.getKey() +
+                        " should have a url and a unique number from 1 to " + MAX_SHARD_NUMBER);
+            targetDataSourceMap.put(entry.getKey(), DataSourceBuilder.create().type(HikariDataSource.class)
+                    .driverClassName(dataSourceProperties.determineDriverClassName())
+                    .url(shard.getUrl())
+                    .username(shard.getUsername() == null ? dataSourceProperties.determineUsername() : shard.getUsername())
+                    .password(shard.getPassword() == null ? dataSourceProperties.determinePassword() : shard.getPassword())
+                    .build());
+        }
+        ShardRoutingDataSource routingDataSource = new ShardRoutingDataSource();
+        routingDataSource.setTargetDataSources(targetDataSourceMap);
+        routingDataSource.setDefaultTargetDataSource(
+                dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build());
+        // only the global database is used without a shard, an unknown geography fails
+        routingDataSource.setLenientFallback(false);
+        routingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    /**
+     * Migrate the global database, then every shard through the routing data source,
+     * and move sequences of each shard to the start of its id range
+     */
+    @Bean
+    public FlywayMigrationStrategy shardFlywayMigrationStrategy(ShardProperties shardProperties) {
+        return flyway -> {
+            flyway.migrate();
+            DataSource dataSource = flyway.getConfiguration().getDataSource();
+            for (Map.Entry<String, ShardProperties.Shard> entry : shardProperties.getShards().entrySet()) {
+                ShardRoutingDataSource.setCurrentShard(entry.getKey());
+                try {
+                    Flyway.configure().configuration(flyway.getConfiguration()).load().migrate();
+                    moveSequences(new JdbcTemplate(dataSource), (long) entry.getValue().getNumber() << SHARD_ID_SHIFT);
+                } finally {
+                    ShardRoutingDataSource.setCurrentShard(null);
+                }
+            }
+        };
+    }
+
+    /**
+     * Keys of the query cache do not hold the shard, so a cached query of one shard would answer the same query
+     * on another shard. Entities stay in the second level cache, their ids are unique across shards
+     */
+    @Bean
+    public HibernatePropertiesCustomizer shardQueryCacheCustomizer() {
+        return hibernateProperties -> hibernateProperties.put(AvailableSettings.USE_QUERY_CACHE, false);
+    }
+
+//    Helper methods
+
+    private static void moveSequences(JdbcTemplate jdbcTemplate, long firstId) {
+        long firstValue = firstId + SEQUENCE_ALLOCATION_SIZE;
+        for (String sequence : SEQUENCE_LIST) {
+            Long nextValue = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR " + sequence, Long.class);
+            if (nextValue < firstValue)
+                jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + firstValue);
+        }
+    }
+}
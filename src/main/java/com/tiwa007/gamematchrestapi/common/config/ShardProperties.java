@@ -0,0 +1,96 @@
+package com.tiwa007.gamematchrestapi.common.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Shards of users and interests, one database per geography, bound from shard.* in application.properties.
+ * The database of spring.datasource.* stays the global database of the catalog.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "shard")
+public class ShardProperties {
+
+    // users and interests are stored in the shard of geography of user
+    private boolean enabled = false;
+
+    // geography -> shard
+    private Map<String, Shard> shards = new LinkedHashMap<>();
+
+    // threads of queries that run on all shards in parallel
+    private int scatterThreads = 4;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Map<String, Shard> getShards() {
+        return shards;
+    }
+
+    public void setShards(Map<String, Shard> shards) {
+        this.shards = shards;
+    }
+
+    public int getScatterThreads() {
+        return scatterThreads;
+    }
+
+    public void setScatterThreads(int scatterThreads) {
+        this.scatterThreads = scatterThreads;
+    }
+
+    public static class Shard {
+
+        // fixed number of shard, from 1 to 8191. Sequences of the shard start at number << 40, so ids from sequences
+        // of all shards stay unique and are kept when a user moves to another shard. Users are routed to shards by
+        // geography, not by id
+        private int number;
+
+        private String url;
+
+        // username and password of spring.datasource.* are used when not set
+        private String username;
+
+        private String password;
+
+        public int getNumber() {
+            return number;
+        }
+
+        public void setNumber(int number) {
+            this.number = number;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+    }
+}
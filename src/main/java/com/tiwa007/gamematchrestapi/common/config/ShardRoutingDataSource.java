@@ -0,0 +1,33 @@
+package com.tiwa007.gamematchrestapi.common.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Routes connections to the shard of the geography set for the current thread, and to the global database
+ * while no shard is set. Connections are looked up at their first statement through a
+ * LazyConnectionDataSourceProxy, so the shard only has to be set before the first statement of a transaction.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final ThreadLocal<String> currentShard = new ThreadLocal<>();
+
+    /**
+     * Set geography of shard of the current thread
+     * @param geography geography of shard, or null for the global database
+     */
+    public static void setCurrentShard(String geography) {
+        if (geography == null)
+            currentShard.remove();
+        else
+            currentShard.set(geography);
+    }
+
+    public static String getCurrentShard() {
+        return currentShard.get();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return getCurrentShard();
+    }
+}
@@ -1,5 +1,6 @@
 package com.tiwa007.gamematchrestapi.common.exception;
 
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -31,6 +32,23 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
     }
 
+    // handling PreconditionFailedException, If-Match does not match the current version
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<?> preconditionFailedHandling(PreconditionFailedException exception, WebRequest request){
+        ErrorResponse errorResponse =
+                new ErrorResponse(new Date(), exception.getMessage(), request.getDescription(false));
+        return new ResponseEntity<>(errorResponse, HttpStatus.PRECONDITION_FAILED);
+    }
+
+    // handling OptimisticLockingFailureException, the row was written by another request since it was read
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<?> optimisticLockingFailureHandling(OptimisticLockingFailureException exception,
+                                                              WebRequest request){
+        ErrorResponse errorResponse = new ErrorResponse(new Date(),
+                "Resource was modified concurrently, read it again and retry", request.getDescription(false));
+        return new ResponseEntity<>(errorResponse, HttpStatus.CONFLICT);
+    }
+
     // MethodArgumentNotValidException
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<?> methodArgumentNotValidHandling(MethodArgumentNotValidException exception){
@@ -0,0 +1,44 @@
+package com.tiwa007.gamematchrestapi.common.exception.validator;
+
+import com.tiwa007.gamematchrestapi.entity.CatalogAttribute;
+import com.tiwa007.gamematchrestapi.service.AttributeDictionary;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.validation.ConstraintValidator;
+import javax.validation.ConstraintValidatorContext;
+
+/**
+ * Check value against current catalog snapshot. Message lists the current values of the attribute.
+ */
+public class CatalogValueConstraintValidator implements ConstraintValidator<InCatalog, String> {
+
+    @Autowired
+    private AttributeDictionary attributeDictionary;
+
+    private CatalogAttribute attribute;
+
+    private String name;
+
+    @Override
+    public void initialize(InCatalog constraintAnnotation) {
+        this.attribute = constraintAnnotation.attribute();
+        String lowerName = this.attribute.name().toLowerCase();
+        this.name = Character.toUpperCase(lowerName.charAt(0)) + lowerName.substring(1);
+    }
+
+    @Override
+    public boolean isValid(String value, ConstraintValidatorContext constraintValidatorContext) {
+        if (value == null) return true;
+        if (this.attributeDictionary.encode(this.attribute, value) >= 0) return true;
+
+        constraintValidatorContext.disableDefaultConstraintViolation();
+        String message = this.name + " should be one of " + this.attributeDictionary.getValueList(this.attribute);
+        constraintValidatorContext.buildConstraintViolationWithTemplate(escape(message)).addConstraintViolation();
+        return false;
+    }
+
+    // catalog values are not message parameters or expressions
+    private static String escape(String message) {
+        return message.replaceAll("([\\\\{}$])", "\\\\$1");
+    }
+}
@@ -0,0 +1,24 @@
+package com.tiwa007.gamematchrestapi.common.exception.validator;
+
+import com.tiwa007.gamematchrestapi.entity.CatalogAttribute;
+
+import javax.validation.Constraint;
+import javax.validation.Payload;
+import java.lang.annotation.*;
+
+/**
+ * Value should be in the current game catalog for the attribute
+ */
+@Documented
+@Constraint(validatedBy = {CatalogValueConstraintValidator.class})
+@Target({ElementType.METHOD, ElementType.FIELD, ElementType.ANNOTATION_TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface InCatalog {
+    String message() default "";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+
+    CatalogAttribute attribute();
+}
@@ -0,0 +1,42 @@
+package com.tiwa007.gamematchrestapi.controller;
+
+import com.tiwa007.gamematchrestapi.service.CacheStatistics;
+import com.tiwa007.gamematchrestapi.service.CacheService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@Api(value = "Cache")
+@RestController
+@RequestMapping("/api/admin/cache")
+public class CacheController {
+
+    @Autowired
+    private CacheService cacheService;
+
+    // get cache statistics
+    @ApiOperation(value = "Get hit, miss and put counts of second-level cache regions")
+    @GetMapping
+    public ResponseEntity<List<CacheStatistics>> getStatistics() {
+        return new ResponseEntity<>(this.cacheService.getStatistics(), HttpStatus.OK);
+    }
+
+    /**
+     * Evict cache after users or interests tables were changed directly
+     * @return no content
+     */
+    @ApiOperation(value = "Evict second-level cache")
+    @PostMapping(path = "/evict")
+    public ResponseEntity<Void> evictAll() {
+        this.cacheService.evictAll();
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+}
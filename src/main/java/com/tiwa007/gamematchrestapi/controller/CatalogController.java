@@ -0,0 +1,57 @@
+package com.tiwa007.gamematchrestapi.controller;
+
+import com.tiwa007.gamematchrestapi.service.CatalogService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import java.util.List;
+import java.util.Map;
+
+@Api(value = "Catalog")
+@RestController
+@RequestMapping("/api/admin/catalog")
+public class CatalogController {
+
+    @Autowired
+    private CatalogService catalogService;
+
+    // get catalog
+    @ApiOperation(value = "Get allowed games, levels and geographies")
+    @GetMapping
+    public ResponseEntity<Map<String, List<String>>> getCatalog() {
+        return new ResponseEntity<>(this.catalogService.getCatalog(), HttpStatus.OK);
+    }
+
+    /**
+     * Append value to catalog attribute
+     * @param attribute game, level or geography
+     * @param catalogRequest
+     * @return catalog
+     */
+    @ApiOperation(value = "Add a game, level or geography to catalog",
+            notes = "[attribute] should be one of 'game', 'level', 'geography'. " +
+                    "New values are appended, so a new level is ranked above existing levels. " +
+                    "The value can be used by all endpoints as soon as the request returns.")
+    @PostMapping(path = "/{attribute}")
+    public ResponseEntity<Map<String, List<String>>> addValue(@PathVariable String attribute,
+                                                              @Valid @RequestBody CatalogRequest catalogRequest) {
+        Map<String, List<String>> catalog = this.catalogService.addValue(attribute, catalogRequest.getValue());
+        return new ResponseEntity<>(catalog, HttpStatus.CREATED);
+    }
+
+    /**
+     * Reload catalog after catalog_entries table was changed directly
+     * @return catalog
+     */
+    @ApiOperation(value = "Reload catalog from database")
+    @PostMapping(path = "/reload")
+    public ResponseEntity<Map<String, List<String>>> reload() {
+        this.catalogService.reload();
+        return new ResponseEntity<>(this.catalogService.getCatalog(), HttpStatus.OK);
+    }
+}
@@ -0,0 +1,26 @@
+package com.tiwa007.gamematchrestapi.controller;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.Size;
+
+public class CatalogRequest {
+
+    @NotBlank(message = "Value cannot be empty")
+    @Size(max = 45, message = "Value should have at most 45 characters")
+    private String value;
+
+    public CatalogRequest() {
+    }
+
+    public CatalogRequest(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+}
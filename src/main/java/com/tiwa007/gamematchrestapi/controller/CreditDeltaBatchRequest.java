@@ -0,0 +1,29 @@
+package com.tiwa007.gamematchrestapi.controller;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+public class CreditDeltaBatchRequest {
+
+    @NotEmpty(message = "Deltas cannot be empty")
+    @Size(max = 1000, message = "Deltas should have at most 1000 entries")
+    @Valid
+    private List<CreditDeltaRequest> deltas;
+
+    public CreditDeltaBatchRequest() {
+    }
+
+    public CreditDeltaBatchRequest(List<CreditDeltaRequest> deltas) {
+        this.deltas = deltas;
+    }
+
+    public List<CreditDeltaRequest> getDeltas() {
+        return deltas;
+    }
+
+    public void setDeltas(List<CreditDeltaRequest> deltas) {
+        this.deltas = deltas;
+    }
+}
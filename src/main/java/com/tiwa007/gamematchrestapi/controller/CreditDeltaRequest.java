@@ -0,0 +1,37 @@
+package com.tiwa007.gamematchrestapi.controller;
+
+import javax.validation.constraints.NotNull;
+
+public class CreditDeltaRequest {
+
+    @NotNull(message = "InterestId cannot be empty")
+    private Long interestId;
+
+    // added to credit, negative to subtract
+    @NotNull(message = "Delta cannot be empty")
+    private Integer delta;
+
+    public CreditDeltaRequest() {
+    }
+
+    public CreditDeltaRequest(Long interestId, Integer delta) {
+        this.interestId = interestId;
+        this.delta = delta;
+    }
+
+    public Long getInterestId() {
+        return interestId;
+    }
+
+    public void setInterestId(Long interestId) {
+        this.interestId = interestId;
+    }
+
+    public Integer getDelta() {
+        return delta;
+    }
+
+    public void setDelta(Integer delta) {
+        this.delta = delta;
+    }
+}
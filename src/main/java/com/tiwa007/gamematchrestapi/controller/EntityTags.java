@@ -0,0 +1,60 @@
+package com.tiwa007.gamematchrestapi.controller;
+
+import com.tiwa007.gamematchrestapi.common.exception.PreconditionFailedException;
+import com.tiwa007.gamematchrestapi.entity.Interest;
+import com.tiwa007.gamematchrestapi.entity.User;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ETags of users and interests. An ETag starts with the version of the user or interest, which is sent back
+ * in If-Match for optimistic locking, and ends with a hash of what the version does not cover in the response:
+ * interests of a user, and credits not yet written by credit write-behind.
+ */
+final class EntityTags {
+
+    private static final Pattern TAG_PATTERN = Pattern.compile("\"(\\d+)-[0-9a-f]+\"");
+
+    private EntityTags() {
+    }
+
+    static String of(User user) {
+        List<Interest> interestList = new ArrayList<>(user.getInterestSet());
+        interestList.sort(Comparator.comparing(Interest::getInterestId));
+        int hash = 1;
+        for (Interest interest : interestList)
+            hash = 31 * hash + Objects.hash(interest.getInterestId(), interest.getVersion(), interest.getCredit());
+        return format(user.getVersion(), hash);
+    }
+
+    static String of(Interest interest) {
+        return format(interest.getVersion(), Objects.hashCode(interest.getCredit()));
+    }
+
+    /**
+     * Get version from If-Match header
+     * @param ifMatch
+     * @return version, or null without If-Match or with If-Match: *
+     * @throws PreconditionFailedException
+     * if If-Match is not an ETag of a user or interest
+     */
+    static Long parseVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*"))
+            return null;
+        Matcher matcher = TAG_PATTERN.matcher(ifMatch.trim());
+        if (!matcher.matches())
+            throw new PreconditionFailedException("If-Match should be an ETag of GET, but was: " + ifMatch);
+        return Long.parseLong(matcher.group(1));
+    }
+
+//    Helper methods
+
+    private static String format(long version, int hash) {
+        return "\"" + version + "-" + Integer.toHexString(hash) + "\"";
+    }
+}
@@ -1,16 +1,21 @@
 package com.tiwa007.gamematchrestapi.controller;
 
+import com.tiwa007.gamematchrestapi.service.InterestCredit;
 import com.tiwa007.gamematchrestapi.service.InterestService;
 import com.tiwa007.gamematchrestapi.entity.Interest;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Api(value = "Interest")
 @RestController
@@ -20,14 +25,14 @@ public class InterestController {
     @Autowired
     private InterestService interestService;
 
-    // get interest by interestId
+    // get interest by interestId with an ETag, If-None-Match of the current ETag gets 304 without body
     @GetMapping(path = "/{userId}/interest/{interestId}")
     public ResponseEntity<Interest> getInterestByInterestId(@PathVariable Long userId,
                                                             @PathVariable Long interestId){
 
         Interest interest =  this.interestService.getInterestByInterestId(userId, interestId);
 
-        return new ResponseEntity<>(interest, HttpStatus.OK);
+        return ResponseEntity.ok().eTag(EntityTags.of(interest)).body(interest);
     }
 
     @ApiOperation(value = "Create new interest",
@@ -50,17 +55,21 @@ public class InterestController {
                     "In [Request Body], [game] cannot be empty should be one of 'fortnite', 'call of duty', 'dota', 'valhalla', 'among us'. " +
                     "[level] cannot be empty and should be one of 'noob', 'pro', 'invincible'. " +
                     "[credit] can be left empty but cannot be negative. " +
-                    "User can only have one interest for one game",
+                    "User can only have one interest for one game. " +
+                    "With [If-Match] of the ETag of GET, an interest changed since that GET is not updated and 412 is returned.",
             response = Interest.class)
     @PutMapping(path = "/{userId}/interest/{interestId}")
     public ResponseEntity updateUserInterestByInterestId(@Valid @RequestBody InterestRequest interestRequest,
                                                          @PathVariable Long userId,
-                                                         @PathVariable Long interestId){
+                                                         @PathVariable Long interestId,
+                                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                                                 String ifMatch){
 
         Interest interest = new Interest(interestRequest.getGame(), interestRequest.getLevel(), interestRequest.getCredit(), null);
         interest.setInterestId(interestId);
 
-        this.interestService.updateUserInterestByInterestId(interest, userId, interestId);
+        this.interestService.updateUserInterestByInterestId(interest, userId, interestId,
+                EntityTags.parseVersion(ifMatch));
 
         return new ResponseEntity(HttpStatus.OK);
     }
@@ -95,4 +104,49 @@ public class InterestController {
 
         return new ResponseEntity(HttpStatus.OK);
     }
+
+    /**
+     * Add delta to user interest credit
+     * @param userId
+     * @param interestId
+     * @param delta
+     * @return credit after the change
+     */
+    @ApiOperation(value = "Add to or subtract from user interest credit",
+            notes = "[delta] is added to the credit in one atomic update, a negative [delta] subtracts. " +
+                    "Empty credit counts as 0. The change is rejected if credit would become negative.",
+            response = InterestCredit.class)
+    @PostMapping(path = "/{userId}/interest/{interestId}/credit/delta")
+    public ResponseEntity<InterestCredit> addUserInterestCredit(@PathVariable Long userId,
+                                                                @PathVariable Long interestId,
+                                                                @ApiParam(
+                                                                        name = "delta",
+                                                                        type = "String",
+                                                                        value = "Delta added to credit, negative to subtract",
+                                                                        example = "5",
+                                                                        required = true)
+                                                                @RequestParam Integer delta) {
+        InterestCredit interestCredit = this.interestService.addUserInterestCredit(userId, interestId, delta);
+        return new ResponseEntity<>(interestCredit, HttpStatus.OK);
+    }
+
+    /**
+     * Add deltas to credits of many interests
+     * @param creditDeltaBatchRequest
+     * @return credits after the change
+     */
+    @ApiOperation(value = "Add to or subtract from credits of many interests",
+            notes = "In [Request Body], [deltas] has 1 to 1000 entries of [interestId] and [delta]. " +
+                    "Deltas of the same interest are summed. All credits are changed in one transaction, " +
+                    "so if any interest does not exist or any credit would become negative, no credit is changed.",
+            response = InterestCredit.class, responseContainer = "List")
+    @PostMapping(path = "/interest/credit/delta")
+    public ResponseEntity<List<InterestCredit>> addInterestCredits(
+            @Valid @RequestBody CreditDeltaBatchRequest creditDeltaBatchRequest) {
+        Map<Long, Integer> deltaMap = new LinkedHashMap<>();
+        for (CreditDeltaRequest creditDeltaRequest : creditDeltaBatchRequest.getDeltas())
+            deltaMap.merge(creditDeltaRequest.getInterestId(), creditDeltaRequest.getDelta(), Integer::sum);
+        List<InterestCredit> interestCreditList = this.interestService.addInterestCredits(deltaMap);
+        return new ResponseEntity<>(interestCreditList, HttpStatus.OK);
+    }
 }
@@ -1,6 +1,7 @@
 package com.tiwa007.gamematchrestapi.controller;
 
-import com.tiwa007.gamematchrestapi.common.exception.validator.InStringArray;
+import com.tiwa007.gamematchrestapi.common.exception.validator.InCatalog;
+import com.tiwa007.gamematchrestapi.entity.CatalogAttribute;
 
 import javax.persistence.Column;
 import javax.validation.constraints.NotBlank;
@@ -9,12 +10,11 @@ import javax.validation.constraints.PositiveOrZero;
 public class InterestRequest {
 
     @NotBlank(message = "Game cannot be empty")
-    @InStringArray(message = "Game should be one of 'fortnite', 'call of duty', 'dota', 'valhalla', 'among us'",
-            values = {"fortnite", "call of duty", "dota", "valhalla", "among us"})
+    @InCatalog(attribute = CatalogAttribute.GAME)
     private String game;
 
     @NotBlank(message = "Level cannot be empty")
-    @InStringArray(message = "Level should be one of 'noob', 'pro', 'invincible'", values = {"noob", "pro", "invincible"})
+    @InCatalog(attribute = CatalogAttribute.LEVEL)
     private String level;
 
     @PositiveOrZero(message = "Credit cannot be negative")
@@ -0,0 +1,62 @@
+package com.tiwa007.gamematchrestapi.controller;
+
+import com.tiwa007.gamematchrestapi.service.MatchmakingService;
+import com.tiwa007.gamematchrestapi.service.Ticket;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@Api(value = "Matchmaking")
+@RestController
+@RequestMapping("/api/matchmaking")
+public class MatchmakingController {
+
+    @Autowired
+    private MatchmakingService matchmakingService;
+
+    /**
+     * Enqueue a matchmaking ticket for user interest
+     * @param userId
+     * @param interestId
+     * @return waiting ticket
+     */
+    @ApiOperation(value = "Enqueue a matchmaking ticket for user interest",
+            notes = "Ticket is matched with other tickets of same game, level and geography. " +
+                    "Poll the ticket until [status] is 'MATCHED' to get the assigned [match]. " +
+                    "An interest can only have one waiting ticket.",
+            response = Ticket.class)
+    @PostMapping(path = "/{userId}/ticket/{interestId}")
+    public ResponseEntity<Ticket> enqueue(@PathVariable Long userId, @PathVariable Long interestId) {
+        Ticket ticket = this.matchmakingService.enqueue(userId, interestId);
+        return new ResponseEntity<>(ticket, HttpStatus.CREATED);
+    }
+
+    // get ticket by ticketId
+    @ApiOperation(value = "Get matchmaking ticket and its assigned match", response = Ticket.class)
+    @GetMapping(path = "/ticket/{ticketId}")
+    public ResponseEntity<Ticket> getTicket(@PathVariable Long ticketId) {
+        return new ResponseEntity<>(this.matchmakingService.getTicket(ticketId), HttpStatus.OK);
+    }
+
+    /**
+     * Get number of waiting tickets and p50, p90, p99 and max time-to-match of recent matches in milliseconds
+     * @return map of statistic name to value
+     */
+    @ApiOperation(value = "Get number of waiting tickets and time-to-match percentiles of recent matches")
+    @GetMapping(path = "/stats")
+    public ResponseEntity<Map<String, Long>> getStats() {
+        return new ResponseEntity<>(this.matchmakingService.getStats(), HttpStatus.OK);
+    }
+
+    @ApiOperation(value = "Cancel waiting matchmaking ticket")
+    @DeleteMapping(path = "/ticket/{ticketId}")
+    public ResponseEntity cancel(@PathVariable Long ticketId) {
+        this.matchmakingService.cancel(ticketId);
+        return new ResponseEntity(HttpStatus.OK);
+    }
+}
@@ -1,6 +1,12 @@
 package com.tiwa007.gamematchrestapi.controller;
 
 
+import com.tiwa007.gamematchrestapi.service.ImportResult;
+import com.tiwa007.gamematchrestapi.service.LeaderboardEntry;
+import com.tiwa007.gamematchrestapi.service.UserBatch;
+import com.tiwa007.gamematchrestapi.service.UserExportService;
+import com.tiwa007.gamematchrestapi.service.UserImportService;
+import com.tiwa007.gamematchrestapi.service.UserPage;
 import com.tiwa007.gamematchrestapi.service.UserService;
 import com.tiwa007.gamematchrestapi.entity.Interest;
 import com.tiwa007.gamematchrestapi.entity.User;
@@ -8,11 +14,16 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -25,17 +36,88 @@ public class UserController {
     @Autowired
     private UserService userService;
 
-    // get all users
+    @Autowired
+    private UserExportService userExportService;
+
+    @Autowired
+    private UserImportService userImportService;
+
+    /**
+     * Get a page of users ordered by userId
+     * @param cursor
+     * @param size
+     * @param geography
+     * @param game
+     * @return page of users with cursor of next page
+     */
+    @ApiOperation(value = "Get a page of users ordered by userId",
+            notes = "Pass [nextCursor] of the response as [cursor] to get the next page. " +
+                    "[nextCursor] is null on the last page. [size] should be between 1 and 100. " +
+                    "Users can be filtered by [geography] and by [game] of their interests.",
+            response = UserPage.class)
     @GetMapping
-    public ResponseEntity<List<User>> getAllUsers(){
-        List<User> userList = userService.getAllUsers();
-        return new ResponseEntity<>(userList, HttpStatus.OK);
+    public ResponseEntity<UserPage> getUsers(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String geography,
+            @RequestParam(required = false) String game){
+        UserPage userPage = this.userService.getUsers(cursor, size, geography, game);
+        return new ResponseEntity<>(userPage, HttpStatus.OK);
     }
 
-    // get user by id
+    /**
+     * Get users with their interests by userIds
+     * @param ids
+     * @return users in order of ids with ids of users that do not exist
+     */
+    @ApiOperation(value = "Get users with their interests by userIds",
+            notes = "[ids] are separated by ',' and have 1 to 1000 entries. Users are returned in order of [ids] " +
+                    "and ids of users that do not exist are returned in [missingIds]. " +
+                    "Use [Get users by userIds in body] for lists too long for the URL.",
+            response = UserBatch.class)
+    @GetMapping(params = "ids")
+    public ResponseEntity<UserBatch> getUsersByIds(@RequestParam List<Long> ids) {
+        UserBatch userBatch = this.userService.getUsersByIds(ids);
+        return new ResponseEntity<>(userBatch, HttpStatus.OK);
+    }
+
+    /**
+     * Get users with their interests by userIds in request body
+     * @param userIdsRequest
+     * @return users in order of ids with ids of users that do not exist
+     */
+    @ApiOperation(value = "Get users by userIds in body",
+            notes = "In [Request Body], [ids] has 1 to 1000 userIds. The response is the same as [Get users with " +
+                    "their interests by userIds].",
+            response = UserBatch.class)
+    @PostMapping(path = "/batch")
+    public ResponseEntity<UserBatch> getUsersByIdsInBody(@Valid @RequestBody UserIdsRequest userIdsRequest) {
+        UserBatch userBatch = this.userService.getUsersByIds(userIdsRequest.getIds());
+        return new ResponseEntity<>(userBatch, HttpStatus.OK);
+    }
+
+    /**
+     * Export all users with their interests as NDJSON, one user per line ordered by userId
+     * @return streamed response body
+     */
+    @ApiOperation(value = "Export all users with their interests as NDJSON",
+            notes = "Each line is one user in the same shape as [Get user by id]. " +
+                    "The response is streamed from the database, so it can be used for the full user base.")
+    @GetMapping(path = "/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportUsers() {
+        StreamingResponseBody body = outputStream -> this.userExportService.exportUsers(outputStream);
+        return new ResponseEntity<>(body, HttpStatus.OK);
+    }
+
+    /**
+     * Get user by id with an ETag. A request with If-None-Match of the current ETag gets 304 without body.
+     * @param userId
+     * @return user
+     */
     @GetMapping(path = "/{userId}")
     public ResponseEntity<User> getUserById(@PathVariable Long userId){
-        return new ResponseEntity<>(this.userService.getUserById(userId), HttpStatus.OK);
+        User user = this.userService.getUserById(userId);
+        return ResponseEntity.ok().eTag(EntityTags.of(user)).body(user);
     }
 
     // create user
@@ -57,10 +139,32 @@ public class UserController {
         return new ResponseEntity<>(createdUser, HttpStatus.CREATED);
     }
 
+    /**
+     * Import users with interests from NDJSON or CSV body
+     * @param request
+     * @return number of imported and failed records with errors of failed records
+     * @throws IOException
+     */
+    @ApiOperation(value = "Import users with interests from NDJSON or CSV body",
+            notes = "With Content-Type 'application/x-ndjson', each line is a user in the request body of [Create new user]. " +
+                    "With Content-Type 'text/csv', the first line should be the header " +
+                    "'name,gender,nickname,geography,interests' and [interests] are 'game:level:credit' separated by ';'. " +
+                    "Each record is validated like [Create new user]. Invalid records are skipped and reported by line.",
+            response = ImportResult.class)
+    @PostMapping(path = "/import", consumes = {"application/x-ndjson", "text/csv"})
+    public ResponseEntity<ImportResult> importUsers(HttpServletRequest request) throws IOException {
+        String format = MediaType.parseMediaType(request.getContentType()).isCompatibleWith(MediaType.valueOf("text/csv"))
+                ? UserImportService.FORMAT_CSV : UserImportService.FORMAT_NDJSON;
+        ImportResult importResult = this.userImportService.importUsers(request.getInputStream(), format);
+        return new ResponseEntity<>(importResult, HttpStatus.OK);
+    }
+
     /**
      * Update user by userId. Interest of user will not be updated.
+     * With If-Match, the user is only updated if it is still at the version of the ETag.
      * @param userRequestWithoutInterest
      * @param userId
+     * @param ifMatch ETag of GET /api/user/{userId} or null
      * @return HttpStatus.OK
      */
     @ApiOperation(value = "Update user",
@@ -68,15 +172,17 @@ public class UserController {
                     "In [Request Body], [name] and [nickname] cannot be empty and should only consist of letter and number with more than 2 characters. " +
                     "[gender] cannot be empty and should be 'male' or 'female'. " +
                     "[geography] cannot be empty and should be one of 'Europe', 'Asia', 'USA'. " +
-                    "User can only have one interest for one game")
+                    "User can only have one interest for one game. " +
+                    "With [If-Match] of the ETag of GET, a user changed since that GET is not updated and 412 is returned.")
     @PutMapping("/{userId}")
     public ResponseEntity updateUserById(@Valid @RequestBody UserRequestWithoutInterest userRequestWithoutInterest
-            , @PathVariable Long userId) {
+            , @PathVariable Long userId
+            , @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
         User user = new User(userRequestWithoutInterest.getName(), userRequestWithoutInterest.getGender(),
                 userRequestWithoutInterest.getNickname(), userRequestWithoutInterest.getGeography());
 
-        this.userService.updateUserById(user, userId);
+        this.userService.updateUserById(user, userId, EntityTags.parseVersion(ifMatch));
 
         return new ResponseEntity(HttpStatus.OK);
     }
@@ -94,13 +200,15 @@ public class UserController {
     }
 
     /**
-     * Get a list of matched users with same game, level and geography
+     * Get a list of matched users with same game, level and geography. Left out attribute matches any value.
      * @param game
      * @param level
      * @param geography,
      * @return List<User>
      */
-    @ApiOperation(value = "Get a list of matched users with same game, level and geography", response = List.class)
+    @ApiOperation(value = "Get a list of matched users with same game, level and geography",
+            notes = "Any of game, level and geography can be left out to match any value, but at least one is required.",
+            response = List.class)
     @GetMapping(path = "/match")
     public ResponseEntity<List<User>> getMatchUserByGameAndLevelAndGeography(
             @ApiParam(
@@ -108,22 +216,22 @@ public class UserController {
                     type = "String",
                     value = "Game should be one of 'fortnite', 'call of duty', 'dota', 'valhalla', 'among us'",
                     example = "fortnite",
-                    required = true)
-            @RequestParam String game,
+                    required = false)
+            @RequestParam(required = false) String game,
             @ApiParam(
                     name = "level",
                     type = "String",
                     value = "Level should be one of 'noob', 'pro', 'invincible'",
                     example = "noob",
-                    required = true)
-            @RequestParam String level,
+                    required = false)
+            @RequestParam(required = false) String level,
             @ApiParam(
                     name = "geography",
                     type = "String",
                     value = "Geography should be one of 'Europe', 'Asia', 'USA'",
                     example = "Europe",
-                    required = true)
-            @RequestParam String geography){
+                    required = false)
+            @RequestParam(required = false) String geography){
         List<User> matchUserList = this.userService.getMatchUserByGameAndLevelAndGeography(game, level, geography);
         return new ResponseEntity<>(matchUserList, HttpStatus.OK);
     }
@@ -172,6 +280,89 @@ public class UserController {
         return new ResponseEntity<>(userList, HttpStatus.OK);
     }
 
+    /**
+     * Get top k users with highest credit among users with same game and level
+     * @return list of leaderboard entries
+     */
+    @ApiOperation(value = "Get top k users with highest credit among users with same game and level", response = List.class)
+    @GetMapping(path = "/interest/credit/top")
+    public ResponseEntity<List<LeaderboardEntry>> getTopUsersByCredit(
+            @ApiParam(
+                    name = "game",
+                    type = "String",
+                    value = "Game should be one of 'fortnite', 'call of duty', 'dota', 'valhalla', 'among us'",
+                    example = "fortnite",
+                    required = true)
+            @RequestParam String game,
+            @ApiParam(
+                    name = "level",
+                    type = "String",
+                    value = "Level should be one of 'noob', 'pro', 'invincible'",
+                    example = "noob",
+                    required = true)
+            @RequestParam String level,
+            @ApiParam(
+                    name = "k",
+                    type = "Integer",
+                    value = "Number of users, at most 100",
+                    example = "10")
+            @RequestParam(defaultValue = "10") Integer k){
+
+        List<LeaderboardEntry> leaderboardEntryList = this.userService.getTopUsersByCredit(game, level, k);
+
+        return new ResponseEntity<>(leaderboardEntryList, HttpStatus.OK);
+    }
+
+    /**
+     * Get users ranked from rank [from] to rank [to] by credit among users with same game and level
+     * @return list of leaderboard entries
+     */
+    @ApiOperation(value = "Get users ranked from rank [from] to rank [to] by credit among users with same game and level",
+            notes = "Ranks are 1-based and inclusive. Users with same credit are ranked by interestId. " +
+                    "At most 100 ranks can be requested at once.",
+            response = List.class)
+    @GetMapping(path = "/interest/credit/rank")
+    public ResponseEntity<List<LeaderboardEntry>> getUsersByCreditRank(
+            @ApiParam(
+                    name = "game",
+                    type = "String",
+                    value = "Game should be one of 'fortnite', 'call of duty', 'dota', 'valhalla', 'among us'",
+                    example = "fortnite",
+                    required = true)
+            @RequestParam String game,
+            @ApiParam(
+                    name = "level",
+                    type = "String",
+                    value = "Level should be one of 'noob', 'pro', 'invincible'",
+                    example = "noob",
+                    required = true)
+            @RequestParam String level,
+            @ApiParam(name = "from", type = "Integer", value = "First rank", example = "11", required = true)
+            @RequestParam Integer from,
+            @ApiParam(name = "to", type = "Integer", value = "Last rank", example = "20", required = true)
+            @RequestParam Integer to){
+
+        List<LeaderboardEntry> leaderboardEntryList = this.userService.getUsersByCreditRank(game, level, from, to);
+
+        return new ResponseEntity<>(leaderboardEntryList, HttpStatus.OK);
+    }
+
+    /**
+     * Get credit rank of user interest among users with same game and level
+     * @param userId
+     * @param interestId
+     * @return leaderboard entry
+     */
+    @ApiOperation(value = "Get credit rank of user interest among users with same game and level", response = LeaderboardEntry.class)
+    @GetMapping(path = "/{userId}/interest/{interestId}/credit/rank")
+    public ResponseEntity<LeaderboardEntry> getUserInterestCreditRank(@PathVariable Long userId,
+                                                                      @PathVariable Long interestId){
+
+        LeaderboardEntry leaderboardEntry = this.userService.getUserInterestCreditRank(userId, interestId);
+
+        return new ResponseEntity<>(leaderboardEntry, HttpStatus.OK);
+    }
+
 //    Helper methods
 
     private User createUserFromUserRequest(UserRequest userRequest) {
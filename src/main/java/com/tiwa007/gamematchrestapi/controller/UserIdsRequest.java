@@ -0,0 +1,28 @@
+package com.tiwa007.gamematchrestapi.controller;
+
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+public class UserIdsRequest {
+
+    @NotEmpty(message = "Ids cannot be empty")
+    @Size(max = 1000, message = "Ids should have at most 1000 entries")
+    private List<@NotNull(message = "Id cannot be null") Long> ids;
+
+    public UserIdsRequest() {
+    }
+
+    public UserIdsRequest(List<Long> ids) {
+        this.ids = ids;
+    }
+
+    public List<Long> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<Long> ids) {
+        this.ids = ids;
+    }
+}
@@ -1,7 +1,9 @@
 package com.tiwa007.gamematchrestapi.controller;
 
 
+import com.tiwa007.gamematchrestapi.common.exception.validator.InCatalog;
 import com.tiwa007.gamematchrestapi.common.exception.validator.InStringArray;
+import com.tiwa007.gamematchrestapi.entity.CatalogAttribute;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotBlank;
@@ -29,7 +31,7 @@ public class UserRequestWithoutInterest {
 
     //    Europe, Asia, USA
     @NotBlank(message = "Geography cannot be empty")
-    @InStringArray(message = "Geography should be one of 'Europe', 'Asia', 'USA'", values = {"Europe", "Asia", "USA"})
+    @InCatalog(attribute = CatalogAttribute.GEOGRAPHY)
     private String geography;
 
     public UserRequestWithoutInterest() {
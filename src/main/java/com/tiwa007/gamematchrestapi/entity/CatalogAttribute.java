@@ -0,0 +1,10 @@
+package com.tiwa007.gamematchrestapi.entity;
+
+/**
+ * Attribute of the game catalog
+ */
+public enum CatalogAttribute {
+    GAME,
+    LEVEL,
+    GEOGRAPHY
+}
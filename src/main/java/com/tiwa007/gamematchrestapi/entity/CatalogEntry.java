@@ -0,0 +1,88 @@
+package com.tiwa007.gamematchrestapi.entity;
+
+import javax.persistence.*;
+import java.util.Objects;
+
+/**
+ * Allowed value of game, level or geography together with the code that is stored in the
+ * interests and users tables
+ */
+@Entity
+@Table(name = "catalog_entries", uniqueConstraints = {
+        @UniqueConstraint(columnNames = {"attribute", "code"}),
+        @UniqueConstraint(columnNames = {"attribute", "value"})})
+public class CatalogEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    @Column(name = "entry_id")
+    private Long entryId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private CatalogAttribute attribute;
+
+    // position of value in its attribute, levels are ordered from lowest to highest
+    @Column(nullable = false)
+    private Short code;
+
+    @Column(nullable = false)
+    private String value;
+
+    public CatalogEntry() {
+    }
+
+    public CatalogEntry(CatalogAttribute attribute, Short code, String value) {
+        this.attribute = attribute;
+        this.code = code;
+        this.value = value;
+    }
+
+    public Long getEntryId() {
+        return entryId;
+    }
+
+    public void setEntryId(Long entryId) {
+        this.entryId = entryId;
+    }
+
+    public CatalogAttribute getAttribute() {
+        return attribute;
+    }
+
+    public void setAttribute(CatalogAttribute attribute) {
+        this.attribute = attribute;
+    }
+
+    public Short getCode() {
+        return code;
+    }
+
+    public void setCode(Short code) {
+        this.code = code;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CatalogEntry that = (CatalogEntry) o;
+        return Objects.equals(entryId, that.entryId) &&
+                attribute == that.attribute &&
+                Objects.equals(code, that.code) &&
+                Objects.equals(value, that.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(entryId, attribute, code, value);
+    }
+}
@@ -1,28 +1,54 @@
 package com.tiwa007.gamematchrestapi.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.tiwa007.gamematchrestapi.entity.converter.GameConverter;
+import com.tiwa007.gamematchrestapi.entity.converter.GeographyConverter;
+import com.tiwa007.gamematchrestapi.entity.converter.LevelConverter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.Objects;
 
 @Entity
-@Table(name = "interests")
+// a user has at most one interest per game, enforced by the database
+@Table(name = "interests", uniqueConstraints = @UniqueConstraint(name = Interest.USER_GAME_CONSTRAINT,
+        columnNames = {"user_id", "game"}))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Interest {
 
+    public static final String USER_GAME_CONSTRAINT = "uk_interests_user_game";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    // pooled sequence, ids are allocated 50 at a time so inserts can be batched
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "interest_seq")
+    @SequenceGenerator(name = "interest_seq", sequenceName = "interest_seq", allocationSize = 50)
     @Column(name="interest_id")
     private Long interestId;
 
-    // fortnite, call of duty, dota, valhalla, among us
+    // fortnite, call of duty, dota, valhalla, among us, stored as smallint code
+    @Convert(converter = GameConverter.class)
     private String game;
 
-    // noob, pro, invincible
+    // noob, pro, invincible, stored as smallint code
+    @Convert(converter = LevelConverter.class)
     private String level;
 
     @Column(columnDefinition = "integer default 0")
     private Integer credit;
 
+    // copy of geography of user, so interests are matched without a join to users.
+    // Set by the services that insert interests, and updated by UserService when the user moves
+    @Convert(converter = GeographyConverter.class)
+    @JsonIgnore
+    private String geography;
+
+    // optimistic lock, incremented by every write including bulk updates, sent to clients in the ETag
+    @Version
+    @JsonIgnore
+    private long version;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     @JsonIgnore
@@ -70,6 +96,14 @@ public class Interest {
         this.credit = credit;
     }
 
+    public String getGeography() {
+        return geography;
+    }
+
+    public void setGeography(String geography) {
+        this.geography = geography;
+    }
+
     public User getUser() {
         return user;
     }
@@ -78,6 +112,14 @@ public class Interest {
         this.user = user;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -1,7 +1,12 @@
 package com.tiwa007.gamematchrestapi.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.tiwa007.gamematchrestapi.entity.converter.GeographyConverter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.Fetch;
 import org.hibernate.annotations.FetchMode;
+import org.hibernate.annotations.Where;
 
 import javax.persistence.*;
 import java.util.HashSet;
@@ -10,9 +15,15 @@ import java.util.Set;
 
 @Entity
 @Table(name = "users")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+// deleted users are hidden from every query and load by id until UserPurger removes them
+@Where(clause = "deleted = false")
 public class User {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    // pooled sequence, ids are allocated 50 at a time so inserts can be batched
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_seq")
+    @SequenceGenerator(name = "user_seq", sequenceName = "user_seq", allocationSize = 50)
     @Column(name="user_id")
     private Long userId;
 
@@ -23,13 +34,24 @@ public class User {
 
     private String nickname;
 
-    //    Europe, Asia, USA
+    //    Europe, Asia, USA, stored as smallint code
+    @Convert(converter = GeographyConverter.class)
     private String geography;
 
     @Fetch(FetchMode.SUBSELECT)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @OneToMany(cascade = CascadeType.ALL, fetch = FetchType.LAZY, mappedBy = "user")
     private Set<Interest> interestSet = new HashSet<>();
 
+    // optimistic lock, incremented by every write including bulk updates, sent to clients in the ETag
+    @Version
+    @JsonIgnore
+    private long version;
+
+    // soft delete, set by UserService with one update
+    @JsonIgnore
+    private boolean deleted;
+
     public User() {
     }
 
@@ -96,6 +118,22 @@ public class User {
         this.interestSet = interestSet;
     }
 
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(boolean deleted) {
+        this.deleted = deleted;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
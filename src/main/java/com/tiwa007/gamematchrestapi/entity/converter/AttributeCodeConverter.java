@@ -0,0 +1,39 @@
+package com.tiwa007.gamematchrestapi.entity.converter;
+
+import com.tiwa007.gamematchrestapi.service.AttributeDictionary;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.persistence.AttributeConverter;
+
+/**
+ * Store a low-cardinality String attribute as its smallint code of AttributeDictionary.
+ * Converters are created by Hibernate through the Spring bean container, so the dictionary is injected.
+ */
+public abstract class AttributeCodeConverter implements AttributeConverter<String, Short> {
+
+    @Autowired
+    protected AttributeDictionary attributeDictionary;
+
+    @Override
+    public Short convertToDatabaseColumn(String value) {
+        if (value == null)
+            return null;
+        int code = this.encode(value);
+        if (code < 0)
+            throw new IllegalArgumentException("Unknown " + this.getAttributeName() + ": " + value);
+        return (short) code;
+    }
+
+    @Override
+    public String convertToEntityAttribute(Short code) {
+        if (code == null)
+            return null;
+        return this.decode(code);
+    }
+
+    protected abstract String getAttributeName();
+
+    protected abstract int encode(String value);
+
+    protected abstract String decode(int code);
+}
@@ -0,0 +1,22 @@
+package com.tiwa007.gamematchrestapi.entity.converter;
+
+import javax.persistence.Converter;
+
+@Converter
+public class GameConverter extends AttributeCodeConverter {
+
+    @Override
+    protected String getAttributeName() {
+        return "game";
+    }
+
+    @Override
+    protected int encode(String value) {
+        return this.attributeDictionary.encodeGame(value);
+    }
+
+    @Override
+    protected String decode(int code) {
+        return this.attributeDictionary.decodeGame(code);
+    }
+}
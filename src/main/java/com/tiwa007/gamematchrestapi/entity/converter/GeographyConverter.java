@@ -0,0 +1,22 @@
+package com.tiwa007.gamematchrestapi.entity.converter;
+
+import javax.persistence.Converter;
+
+@Converter
+public class GeographyConverter extends AttributeCodeConverter {
+
+    @Override
+    protected String getAttributeName() {
+        return "geography";
+    }
+
+    @Override
+    protected int encode(String value) {
+        return this.attributeDictionary.encodeGeography(value);
+    }
+
+    @Override
+    protected String decode(int code) {
+        return this.attributeDictionary.decodeGeography(code);
+    }
+}
@@ -0,0 +1,22 @@
+package com.tiwa007.gamematchrestapi.entity.converter;
+
+import javax.persistence.Converter;
+
+@Converter
+public class LevelConverter extends AttributeCodeConverter {
+
+    @Override
+    protected String getAttributeName() {
+        return "level";
+    }
+
+    @Override
+    protected int encode(String value) {
+        return this.attributeDictionary.encodeLevel(value);
+    }
+
+    @Override
+    protected String decode(int code) {
+        return this.attributeDictionary.decodeLevel(code);
+    }
+}
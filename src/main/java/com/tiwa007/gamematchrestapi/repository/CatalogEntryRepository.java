@@ -0,0 +1,17 @@
+package com.tiwa007.gamematchrestapi.repository;
+
+import com.tiwa007.gamematchrestapi.entity.CatalogAttribute;
+import com.tiwa007.gamematchrestapi.entity.CatalogEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface CatalogEntryRepository extends JpaRepository<CatalogEntry, Long> {
+
+    List<CatalogEntry> findAllByOrderByCodeAsc();
+
+    List<CatalogEntry> findByAttributeOrderByCodeAsc(CatalogAttribute attribute);
+
+}
@@ -1,7 +1,6 @@
 package com.tiwa007.gamematchrestapi.repository;
 
 import com.tiwa007.gamematchrestapi.entity.Interest;
-import com.tiwa007.gamematchrestapi.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -10,21 +9,74 @@ import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface InterestRepository extends JpaRepository<Interest, Long> {
 
-    List<Interest> findInterestByUserAndGame(User user, String game);
+    // bulk updates bypass the entity cache, so Hibernate evicts cached interests and interest sets on execution.
+    // Writes below are scoped by owner, so the ownership check and the write are one statement
+    // and 0 updated rows means the interest does not exist or belongs to another user.
+    // Interests of deleted users are not written, deleted users are hidden from User in the subquery.
+    // Versions are incremented like Hibernate does for entity updates.
+    @Transactional
+    @Modifying
+    @Query("update Interest i set i.credit = :credit, i.version = i.version + 1 " +
+            "where i.interestId = :interestId and i.user.userId = :userId " +
+            "and exists (select u.userId from User u where u.userId = :userId)")
+    int updateUserInterestCredit(@Param("userId") Long userId,
+                                 @Param("interestId") Long interestId,
+                                 @Param("credit") Integer credit);
+
+    // fails with a violation of uk_interests_user_game when another interest of the user already has the game.
+    // With a version, 0 updated rows can also mean the interest was changed since that version
+    @Transactional
+    @Modifying
+    @Query("update Interest i set i.game = :game, i.level = :level, i.credit = :credit, i.version = i.version + 1 " +
+            "where i.interestId = :interestId and i.user.userId = :userId " +
+            "and (:version is null or i.version = :version) " +
+            "and exists (select u.userId from User u where u.userId = :userId)")
+    int updateUserInterest(@Param("userId") Long userId,
+                           @Param("interestId") Long interestId,
+                           @Param("game") String game,
+                           @Param("level") String level,
+                           @Param("credit") Integer credit,
+                           @Param("version") Long version);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Interest i where i.interestId = :interestId and i.user.userId = :userId " +
+            "and exists (select u.userId from User u where u.userId = :userId)")
+    int deleteUserInterest(@Param("userId") Long userId,
+                           @Param("interestId") Long interestId);
 
+    // keeps geography copied onto interests equal to geography of their user
     @Transactional
     @Modifying
-    @Query("update Interest i set i.credit = :credit where i.interestId = :interestId")
-    void updateUserInterestCredit(@Param("interestId") Long interestId,
-                                  @Param("credit") Integer credit);
+    @Query("update Interest i set i.geography = :geography, i.version = i.version + 1 where i.user.userId = :userId")
+    int updateGeographyByUserId(@Param("userId") Long userId,
+                                @Param("geography") String geography);
+
+    // userId of the owner of interest, only read to explain a write that changed no row
+    @Query("select i.user.userId from Interest i where i.interestId = :interestId")
+    Optional<Long> findOwnerIdByInterestId(@Param("interestId") Long interestId);
 
     @Transactional
     @Modifying
     @Query("delete from Interest interest where interest.user.userId = :id")
     void deleteInterestsByUserId(@Param("id") Long userId);
 
+    // interest with given interestId, used to move a user to another shard
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO interests(interest_id, game, level, credit, user_id, geography, version) " +
+            "VALUES (:interestId, :game, :level, :credit, :userId, :geography, :version)", nativeQuery = true)
+    int insertInterest(@Param("interestId") Long interestId,
+                       @Param("game") int gameCode,
+                       @Param("level") int levelCode,
+                       @Param("credit") Integer credit,
+                       @Param("userId") Long userId,
+                       @Param("geography") int geographyCode,
+                       @Param("version") long version);
+
 }
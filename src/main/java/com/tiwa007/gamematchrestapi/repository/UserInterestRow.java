@@ -0,0 +1,75 @@
+package com.tiwa007.gamematchrestapi.repository;
+
+/**
+ * Read-only row of a user joined with one of its interests, selected by constructor expression.
+ * Interest columns are null for a user without interests.
+ */
+public class UserInterestRow {
+
+    private final Long userId;
+
+    private final String name;
+
+    private final String gender;
+
+    private final String nickname;
+
+    private final String geography;
+
+    private final Long interestId;
+
+    private final String game;
+
+    private final String level;
+
+    private final Integer credit;
+
+    public UserInterestRow(Long userId, String name, String gender, String nickname, String geography,
+                           Long interestId, String game, String level, Integer credit) {
+        this.userId = userId;
+        this.name = name;
+        this.gender = gender;
+        this.nickname = nickname;
+        this.geography = geography;
+        this.interestId = interestId;
+        this.game = game;
+        this.level = level;
+        this.credit = credit;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getGender() {
+        return gender;
+    }
+
+    public String getNickname() {
+        return nickname;
+    }
+
+    public String getGeography() {
+        return geography;
+    }
+
+    public Long getInterestId() {
+        return interestId;
+    }
+
+    public String getGame() {
+        return game;
+    }
+
+    public String getLevel() {
+        return level;
+    }
+
+    public Integer getCredit() {
+        return credit;
+    }
+}
@@ -1,27 +1,65 @@
 package com.tiwa007.gamematchrestapi.repository;
 
 import com.tiwa007.gamematchrestapi.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
 
-    @Query("SELECT user FROM Interest interest WHERE interest.game = :game AND interest.level = :level " +
-            "AND interest.user.geography = :geography")
-    List<User> findMatchUserByGameAndLevelAndGeography(@Param("game") String game,
-                                                       @Param("level") String level,
-                                                       @Param("geography") String geography);
-
-    @Query("SELECT interest.user FROM Interest interest WHERE interest.game = :game AND interest.level = :level " +
-            "AND interest.credit = " +
-            "(SELECT MAX(interest1.credit) FROM Interest interest1 " +
-            "WHERE interest1.game = :game AND interest1.level = :level)")
-    List<User> findUserWithMaxCreditByGameAndLevel(@Param("game") String game,
-                                                   @Param("level") String level);
+    @Query("SELECT user.userId FROM User user WHERE user.userId > :afterUserId " +
+            "AND (:geography IS NULL OR user.geography = :geography) " +
+            "AND (:game IS NULL OR EXISTS (SELECT interest FROM Interest interest " +
+            "WHERE interest.user = user AND interest.game = :game)) " +
+            "ORDER BY user.userId")
+    List<Long> findUserIdPage(@Param("afterUserId") Long afterUserId,
+                              @Param("geography") String geography,
+                              @Param("game") String game,
+                              Pageable pageable);
+
+    @Query("SELECT DISTINCT user FROM User user LEFT JOIN FETCH user.interestSet " +
+            "WHERE user.userId IN :userIds ORDER BY user.userId")
+    List<User> findWithInterestsByUserIdIn(@Param("userIds") Collection<Long> userIds);
+
+    // all users joined with their interests as read-only rows, consecutive per user
+    @Query("SELECT new com.tiwa007.gamematchrestapi.repository.UserInterestRow(user.userId, user.name, " +
+            "user.gender, user.nickname, user.geography, interest.interestId, interest.game, interest.level, " +
+            "interest.credit) " +
+            "FROM User user LEFT JOIN user.interestSet interest ORDER BY user.userId, interest.interestId")
+    List<UserInterestRow> findAllUserInterestRows();
+
+    // delete of a user moved to another shard, 0 deleted rows means the user was written since it was read
+    @Transactional
+    @Modifying
+    @Query("delete from User user where user.userId = :userId and user.version = :version")
+    int deleteByUserIdAndVersion(@Param("userId") Long userId, @Param("version") long version);
+
+    // soft delete in one statement, 0 updated rows means the user does not exist or is already deleted.
+    // Rows are removed later by UserPurger. The version is incremented like for other writes of the user
+    @Transactional
+    @Modifying
+    @Query("update User user set user.deleted = true, user.version = user.version + 1 " +
+            "where user.userId = :userId and user.deleted = false")
+    int softDeleteById(@Param("userId") Long userId);
+
+    // user with given userId, used to move a user to another shard
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO users(user_id, name, gender, nickname, geography, version) " +
+            "VALUES (:userId, :name, :gender, :nickname, :geography, :version)", nativeQuery = true)
+    int insertUser(@Param("userId") Long userId,
+                   @Param("name") String name,
+                   @Param("gender") String gender,
+                   @Param("nickname") String nickname,
+                   @Param("geography") int geographyCode,
+                   @Param("version") long version);
 
 }
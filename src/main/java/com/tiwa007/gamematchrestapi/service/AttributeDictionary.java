@@ -0,0 +1,171 @@
+package com.tiwa007.gamematchrestapi.service;
+
+import com.tiwa007.gamematchrestapi.entity.CatalogAttribute;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Dictionary encoding of game, level and geography values to small int codes.
+ * Code is the position of the value in its list, so level codes are ordered from lowest to highest level.
+ * Unknown values are encoded to -1.
+ * Codes are also stored in the interests and users tables, so new values must only be appended to a list.
+ * Values are read from an immutable snapshot of the catalog that CatalogService swaps atomically,
+ * so lookups take no lock and allocate nothing. Until the catalog is loaded the default values are used.
+ */
+@Component
+public class AttributeDictionary {
+
+    static final List<String> DEFAULT_GAME_LIST = Collections.unmodifiableList(
+            Arrays.asList("fortnite", "call of duty", "dota", "valhalla", "among us"));
+    static final List<String> DEFAULT_LEVEL_LIST = Collections.unmodifiableList(
+            Arrays.asList("noob", "pro", "invincible"));
+    static final List<String> DEFAULT_GEOGRAPHY_LIST = Collections.unmodifiableList(
+            Arrays.asList("Europe", "Asia", "USA"));
+
+    private volatile Snapshot snapshot = new Snapshot(DEFAULT_GAME_LIST, DEFAULT_LEVEL_LIST, DEFAULT_GEOGRAPHY_LIST);
+
+    public List<String> getGameList() {
+        return snapshot.gameList;
+    }
+
+    public List<String> getLevelList() {
+        return snapshot.levelList;
+    }
+
+    public List<String> getGeographyList() {
+        return snapshot.geographyList;
+    }
+
+    /**
+     * Get values of attribute ordered by code
+     * @param attribute
+     * @return list of values
+     */
+    public List<String> getValueList(CatalogAttribute attribute) {
+        Snapshot current = this.snapshot;
+        switch (attribute) {
+            case GAME:
+                return current.gameList;
+            case LEVEL:
+                return current.levelList;
+            default:
+                return current.geographyList;
+        }
+    }
+
+    public int encodeGame(String game) {
+        return encode(snapshot.gameCodeMap, game);
+    }
+
+    public int encodeLevel(String level) {
+        return encode(snapshot.levelCodeMap, level);
+    }
+
+    public int encodeGeography(String geography) {
+        return encode(snapshot.geographyCodeMap, geography);
+    }
+
+    /**
+     * Encode value of attribute
+     * @param attribute
+     * @param value
+     * @return code or -1 if value is unknown
+     */
+    public int encode(CatalogAttribute attribute, String value) {
+        Snapshot current = this.snapshot;
+        switch (attribute) {
+            case GAME:
+                return encode(current.gameCodeMap, value);
+            case LEVEL:
+                return encode(current.levelCodeMap, value);
+            default:
+                return encode(current.geographyCodeMap, value);
+        }
+    }
+
+    /**
+     * Decode game code
+     * @param code
+     * @return game
+     * @throws IllegalArgumentException if code is unknown
+     */
+    public String decodeGame(int code) {
+        return decode(snapshot.gameList, code, "game");
+    }
+
+    /**
+     * Decode level code
+     * @param code
+     * @return level
+     * @throws IllegalArgumentException if code is unknown
+     */
+    public String decodeLevel(int code) {
+        return decode(snapshot.levelList, code, "level");
+    }
+
+    /**
+     * Decode geography code
+     * @param code
+     * @return geography
+     * @throws IllegalArgumentException if code is unknown
+     */
+    public String decodeGeography(int code) {
+        return decode(snapshot.geographyList, code, "geography");
+    }
+
+    /**
+     * Replace the catalog snapshot. Lists are indexed by code.
+     * @param gameList
+     * @param levelList
+     * @param geographyList
+     */
+    void swap(List<String> gameList, List<String> levelList, List<String> geographyList) {
+        this.snapshot = new Snapshot(gameList, levelList, geographyList);
+    }
+
+//    Helper methods
+
+    private static String decode(List<String> valueList, int code, String attribute) {
+        if (code < 0 || code >= valueList.size())
+            throw new IllegalArgumentException("Unknown " + attribute + " code: " + code);
+        return valueList.get(code);
+    }
+
+    private static int encode(Map<String, Integer> codeMap, String value) {
+        if (value == null)
+            return -1;
+        Integer code = codeMap.get(value);
+        return code == null ? -1 : code;
+    }
+
+    private static Map<String, Integer> createCodeMap(List<String> valueList) {
+        Map<String, Integer> codeMap = new HashMap<>();
+        for (int code = 0; code < valueList.size(); code++)
+            codeMap.put(valueList.get(code), code);
+        return Collections.unmodifiableMap(codeMap);
+    }
+
+    /**
+     * Immutable catalog values with code lookup maps
+     */
+    private static final class Snapshot {
+
+        private final List<String> gameList;
+        private final List<String> levelList;
+        private final List<String> geographyList;
+
+        private final Map<String, Integer> gameCodeMap;
+        private final Map<String, Integer> levelCodeMap;
+        private final Map<String, Integer> geographyCodeMap;
+
+        private Snapshot(List<String> gameList, List<String> levelList, List<String> geographyList) {
+            this.gameList = Collections.unmodifiableList(new ArrayList<>(gameList));
+            this.levelList = Collections.unmodifiableList(new ArrayList<>(levelList));
+            this.geographyList = Collections.unmodifiableList(new ArrayList<>(geographyList));
+            this.gameCodeMap = createCodeMap(this.gameList);
+            this.levelCodeMap = createCodeMap(this.levelList);
+            this.geographyCodeMap = createCodeMap(this.geographyList);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.tiwa007.gamematchrestapi.service;
+
+import com.tiwa007.gamematchrestapi.entity.Interest;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Statistics and eviction of the Hibernate second-level cache of users, interests and interest sets.
+ * Writes through JPA, including bulk JPQL updates, evict the cached state they change. Only tables changed
+ * without Hibernate, like by a SQL script, need the cache to be evicted.
+ */
+@Service
+public class CacheService {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Get hit, miss and put counts of every entity and collection region
+     * @return list of cache statistics ordered by region
+     */
+    public List<CacheStatistics> getStatistics() {
+        Statistics statistics = this.getSessionFactory().getStatistics();
+        List<CacheStatistics> cacheStatisticsList = new ArrayList<>();
+        String[] regionNames = statistics.getSecondLevelCacheRegionNames();
+        Arrays.sort(regionNames);
+        for (String regionName : regionNames) {
+            CacheRegionStatistics regionStatistics = statistics.getDomainDataRegionStatistics(regionName);
+            cacheStatisticsList.add(new CacheStatistics(regionName, regionStatistics.getHitCount(),
+                    regionStatistics.getMissCount(), regionStatistics.getPutCount()));
+        }
+        return cacheStatisticsList;
+    }
+
+    /**
+     * Evict all entity and collection cache regions
+     */
+    public void evictAll() {
+        this.getSessionFactory().getCache().evictAllRegions();
+    }
+
+    /**
+     * Evict cached interests after interests were updated without Hibernate
+     * @param interestIds
+     */
+    public void evictInterests(Collection<Long> interestIds) {
+        Cache cache = this.getSessionFactory().getCache();
+        for (Long interestId : interestIds)
+            cache.evictEntityData(Interest.class, interestId);
+    }
+
+//    Helper methods
+
+    private SessionFactory getSessionFactory() {
+        return this.entityManagerFactory.unwrap(SessionFactory.class);
+    }
+}
@@ -0,0 +1,129 @@
+package com.tiwa007.gamematchrestapi.service;
+
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Compressed 64-bit bitmaps of interestIds per dictionary code of game, level and owner geography.
+ * A match query is the intersection of the bitmaps of the given attributes, and an attribute left out
+ * is simply not intersected. Writes must be serialized by the caller; reads share a read lock.
+ * Bitmaps of codes appended to the catalog after creation are added on first write.
+ */
+public class CandidateBitmapIndex {
+
+    // attribute left out of query
+    public static final int ANY = -1;
+
+    private final Roaring64Bitmap allBitmap = new Roaring64Bitmap();
+
+    private Roaring64Bitmap[] gameBitmaps;
+
+    private Roaring64Bitmap[] levelBitmaps;
+
+    private Roaring64Bitmap[] geographyBitmaps;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public CandidateBitmapIndex(int gameCount, int levelCount, int geographyCount) {
+        this.gameBitmaps = createBitmaps(gameCount);
+        this.levelBitmaps = createBitmaps(levelCount);
+        this.geographyBitmaps = createBitmaps(geographyCount);
+    }
+
+    /**
+     * Atomically remove and add interests. Each interest is given as {interestId, game, level, geography} codes.
+     * @param removedList interests to remove
+     * @param addedList interests to add
+     */
+    public void replace(List<long[]> removedList, List<long[]> addedList) {
+        this.lock.writeLock().lock();
+        try {
+            for (long[] interest : removedList)
+                this.update(interest, false);
+            for (long[] interest : addedList)
+                this.update(interest, true);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get interestIds matching all given codes
+     * @param gameCode game code or ANY
+     * @param levelCode level code or ANY
+     * @param geographyCode geography code or ANY
+     * @return bitmap of interestIds
+     */
+    public Roaring64Bitmap match(int gameCode, int levelCode, int geographyCode) {
+        this.lock.readLock().lock();
+        try {
+            if (gameCode >= this.gameBitmaps.length || levelCode >= this.levelBitmaps.length
+                    || geographyCode >= this.geographyBitmaps.length)
+                return new Roaring64Bitmap();
+
+            List<Roaring64Bitmap> bitmapList = new ArrayList<>(3);
+            if (gameCode != ANY)
+                bitmapList.add(this.gameBitmaps[gameCode]);
+            if (levelCode != ANY)
+                bitmapList.add(this.levelBitmaps[levelCode]);
+            if (geographyCode != ANY)
+                bitmapList.add(this.geographyBitmaps[geographyCode]);
+
+            Roaring64Bitmap result = bitmapList.isEmpty() ? this.allBitmap.clone() : bitmapList.get(0).clone();
+            for (int i = 1; i < bitmapList.size(); i++)
+                result.and(bitmapList.get(i));
+            return result;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private void update(long[] interest, boolean add) {
+        long interestId = interest[0];
+        int gameCode = (int) interest[1];
+        int levelCode = (int) interest[2];
+        int geographyCode = (int) interest[3];
+
+        setBit(this.allBitmap, interestId, add);
+        if (gameCode >= 0) {
+            this.gameBitmaps = ensureCapacity(this.gameBitmaps, gameCode);
+            setBit(this.gameBitmaps[gameCode], interestId, add);
+        }
+        if (levelCode >= 0) {
+            this.levelBitmaps = ensureCapacity(this.levelBitmaps, levelCode);
+            setBit(this.levelBitmaps[levelCode], interestId, add);
+        }
+        if (geographyCode >= 0) {
+            this.geographyBitmaps = ensureCapacity(this.geographyBitmaps, geographyCode);
+            setBit(this.geographyBitmaps[geographyCode], interestId, add);
+        }
+    }
+
+    private static Roaring64Bitmap[] ensureCapacity(Roaring64Bitmap[] bitmaps, int code) {
+        if (code < bitmaps.length)
+            return bitmaps;
+        Roaring64Bitmap[] grownBitmaps = Arrays.copyOf(bitmaps, code + 1);
+        for (int i = bitmaps.length; i < grownBitmaps.length; i++)
+            grownBitmaps[i] = new Roaring64Bitmap();
+        return grownBitmaps;
+    }
+
+    private static void setBit(Roaring64Bitmap bitmap, long interestId, boolean add) {
+        if (add)
+            bitmap.addLong(interestId);
+        else
+            bitmap.removeLong(interestId);
+    }
+
+    private static Roaring64Bitmap[] createBitmaps(int count) {
+        Roaring64Bitmap[] bitmaps = new Roaring64Bitmap[count];
+        for (int i = 0; i < count; i++)
+            bitmaps[i] = new Roaring64Bitmap();
+        return bitmaps;
+    }
+}
@@ -0,0 +1,149 @@
+package com.tiwa007.gamematchrestapi.service;
+
+import com.tiwa007.gamematchrestapi.common.exception.InvalidRequestException;
+import com.tiwa007.gamematchrestapi.entity.CatalogAttribute;
+import com.tiwa007.gamematchrestapi.entity.CatalogEntry;
+import com.tiwa007.gamematchrestapi.repository.CatalogEntryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+
+/**
+ * Game catalog of allowed games, levels and geographies stored in the catalog_entries table.
+ * The catalog is loaded into AttributeDictionary once the application is ready, before the match index is built,
+ * and reloaded whenever an added value is committed, so new games can be launched without a restart.
+ */
+@Service
+public class CatalogService {
+
+    @Autowired
+    private CatalogEntryRepository catalogEntryRepository;
+
+    @Autowired
+    private AttributeDictionary attributeDictionary;
+
+    @Autowired
+    private ShardTemplate shardTemplate;
+
+    /**
+     * Load catalog from database and swap the dictionary snapshot. An empty catalog is filled with default values.
+     * @throws IllegalStateException
+     * if codes of an attribute are not consecutive from 0
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0)
+    @Transactional
+    public synchronized void reload() {
+        List<CatalogEntry> entryList = this.catalogEntryRepository.findAllByOrderByCodeAsc();
+        if (entryList.isEmpty())
+            entryList = this.catalogEntryRepository.saveAll(this.createDefaultEntries());
+
+        Map<CatalogAttribute, List<String>> valueMap = new EnumMap<>(CatalogAttribute.class);
+        for (CatalogAttribute attribute : CatalogAttribute.values())
+            valueMap.put(attribute, new ArrayList<>());
+        for (CatalogEntry entry : entryList) {
+            List<String> valueList = valueMap.get(entry.getAttribute());
+            if (entry.getCode() != valueList.size())
+                throw new IllegalStateException("Catalog codes of " + entry.getAttribute() +
+                        " should be consecutive from 0, but found code: " + entry.getCode());
+            valueList.add(entry.getValue());
+        }
+
+        this.attributeDictionary.swap(valueMap.get(CatalogAttribute.GAME), valueMap.get(CatalogAttribute.LEVEL),
+                valueMap.get(CatalogAttribute.GEOGRAPHY));
+    }
+
+    /**
+     * Get current catalog
+     * @return map of attribute name to values ordered by code
+     */
+    public Map<String, List<String>> getCatalog() {
+        Map<String, List<String>> catalog = new LinkedHashMap<>();
+        for (CatalogAttribute attribute : CatalogAttribute.values())
+            catalog.put(attribute.name().toLowerCase(), this.attributeDictionary.getValueList(attribute));
+        return catalog;
+    }
+
+    /**
+     * Append value to attribute of catalog and reload catalog once the value is committed
+     * @param attributeName game, level or geography
+     * @param value
+     * @return catalog with the new value
+     * @throws InvalidRequestException
+     * if attribute is unknown, value is empty, value already exists, or a new geography has no shard with sharding
+     */
+    @Transactional
+    public synchronized Map<String, List<String>> addValue(String attributeName, String value) {
+        CatalogAttribute attribute = this.getAttribute(attributeName);
+        if (value == null || value.trim().isEmpty())
+            throw new InvalidRequestException("Catalog value cannot be empty");
+        // users of a geography are stored in its shard, and shards are fixed by configuration
+        if (attribute == CatalogAttribute.GEOGRAPHY && this.shardTemplate.isEnabled()
+                && !this.shardTemplate.getShardGeographyList().contains(value))
+            throw new InvalidRequestException("Catalog geography: " + value + " has no shard in shard.shards");
+
+        List<CatalogEntry> entryList = this.catalogEntryRepository.findByAttributeOrderByCodeAsc(attribute);
+        for (CatalogEntry entry : entryList) {
+            if (entry.getValue().equals(value))
+                throw new InvalidRequestException("Catalog " + attributeName + " already has value: " + value);
+        }
+        this.catalogEntryRepository.saveAndFlush(new CatalogEntry(attribute, (short) entryList.size(), value));
+        this.reloadAfterCommit();
+
+        Map<String, List<String>> catalog = this.getCatalog();
+        List<String> valueList = new ArrayList<>();
+        for (CatalogEntry entry : entryList)
+            valueList.add(entry.getValue());
+        valueList.add(value);
+        catalog.put(attribute.name().toLowerCase(), valueList);
+        return catalog;
+    }
+
+//    Helper methods
+
+    /**
+     * Reload catalog after the current transaction commits, so the dictionary never has a value that could still
+     * be rolled back. Reload at once without a transaction.
+     */
+    private void reloadAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            this.reload();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                reload();
+            }
+        });
+    }
+
+    private CatalogAttribute getAttribute(String attributeName) {
+        for (CatalogAttribute attribute : CatalogAttribute.values()) {
+            if (attribute.name().equalsIgnoreCase(attributeName))
+                return attribute;
+        }
+        throw new InvalidRequestException("Invalid catalog attribute: " + attributeName +
+                " and it should be one of [game, level, geography]");
+    }
+
+    private List<CatalogEntry> createDefaultEntries() {
+        List<CatalogEntry> entryList = new ArrayList<>();
+        addEntries(entryList, CatalogAttribute.GAME, AttributeDictionary.DEFAULT_GAME_LIST);
+        addEntries(entryList, CatalogAttribute.LEVEL, AttributeDictionary.DEFAULT_LEVEL_LIST);
+        addEntries(entryList, CatalogAttribute.GEOGRAPHY, AttributeDictionary.DEFAULT_GEOGRAPHY_LIST);
+        return entryList;
+    }
+
+    private static void addEntries(List<CatalogEntry> entryList, CatalogAttribute attribute, List<String> valueList) {
+        for (int code = 0; code < valueList.size(); code++)
+            entryList.add(new CatalogEntry(attribute, (short) code, valueList.get(code)));
+    }
+}
@@ -0,0 +1,364 @@
+package com.tiwa007.gamematchrestapi.service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Credit leaderboard of interests per (game, level).
+ * Each board keeps interests in an order-statistic tree ordered by credit descending and then by interestId,
+ * so rank lookups and rank ranges cost O(log n). Max-credit holders are cached; a write that touches the max credit
+ * only drops the cache and the next read collects it again, so bulk inserts of tied credits stay O(log n) each.
+ * Rank is the 1-based position in that order, so interests with same credit are ranked by interestId.
+ * Writes must be serialized by the caller. Interests without credit are not ranked, same as MAX(credit) ignores null.
+ */
+public class CreditLeaderboard {
+
+    // game|level -> board
+    private final Map<String, Board> boardMap = new ConcurrentHashMap<>();
+
+    // interestId -> ranked entry
+    private final Map<Long, Entry> entryMap = new ConcurrentHashMap<>();
+
+    /**
+     * Add or move interest in leaderboard
+     * @param interestId
+     * @param userId
+     * @param game
+     * @param level
+     * @param credit
+     */
+    public void put(Long interestId, Long userId, String game, String level, Integer credit) {
+        String key = boardKey(game, level);
+        Entry existing = this.entryMap.get(interestId);
+        if (existing != null) {
+            if (existing.key.equals(key) && Objects.equals(existing.credit, credit) && existing.userId.equals(userId))
+                return;
+            this.remove(interestId);
+        }
+        if (credit == null)
+            return;
+
+        Entry entry = new Entry(interestId, userId, key, credit);
+        this.entryMap.put(interestId, entry);
+        this.boardMap.computeIfAbsent(key, k -> new Board()).add(entry);
+    }
+
+    /**
+     * Remove interest from leaderboard
+     * @param interestId
+     */
+    public void remove(Long interestId) {
+        Entry entry = this.entryMap.remove(interestId);
+        if (entry == null)
+            return;
+        Board board = this.boardMap.get(entry.key);
+        board.remove(entry);
+        if (board.size() == 0)
+            this.boardMap.remove(entry.key);
+    }
+
+    /**
+     * Get userIds of interests with maximum credit among interests with same game and level
+     * @param game
+     * @param level
+     * @return list of userIds ordered by interestId
+     */
+    public List<Long> getMaxCreditUserIds(String game, String level) {
+        Board board = this.boardMap.get(boardKey(game, level));
+        if (board == null)
+            return Collections.emptyList();
+        return board.maxCreditUserIdList();
+    }
+
+    /**
+     * Get entries ranked from fromRank to toRank, both inclusive and 1-based
+     * @param game
+     * @param level
+     * @param fromRank
+     * @param toRank
+     * @return list of entries ordered by rank
+     */
+    public List<Entry> getRankRange(String game, String level, int fromRank, int toRank) {
+        Board board = this.boardMap.get(boardKey(game, level));
+        if (board == null)
+            return Collections.emptyList();
+        return board.range(fromRank, toRank);
+    }
+
+    /**
+     * Get ranked entry of interest
+     * @param interestId
+     * @return entry with rank or null if interest is not ranked
+     */
+    public Entry getEntry(Long interestId) {
+        Entry entry = this.entryMap.get(interestId);
+        if (entry == null)
+            return null;
+        Board board = this.boardMap.get(entry.key);
+        if (board == null)
+            return null;
+        return board.rankOf(entry);
+    }
+
+    private static String boardKey(String game, String level) {
+        return game + '|' + level;
+    }
+
+    /**
+     * Ranked interest. Rank is only set on entries returned by read methods.
+     */
+    public static class Entry {
+        private final Long interestId;
+        private final Long userId;
+        private final String key;
+        private final Integer credit;
+        private final int rank;
+
+        private Entry(Long interestId, Long userId, String key, Integer credit) {
+            this(interestId, userId, key, credit, 0);
+        }
+
+        private Entry(Long interestId, Long userId, String key, Integer credit, int rank) {
+            this.interestId = interestId;
+            this.userId = userId;
+            this.key = key;
+            this.credit = credit;
+            this.rank = rank;
+        }
+
+        public Long getInterestId() {
+            return interestId;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        public Integer getCredit() {
+            return credit;
+        }
+
+        public int getRank() {
+            return rank;
+        }
+
+        private Entry withRank(int rank) {
+            return new Entry(interestId, userId, key, credit, rank);
+        }
+
+        // credit descending, then interestId ascending
+        private int compareTo(Entry other) {
+            int result = Integer.compare(other.credit, this.credit);
+            return result != 0 ? result : Long.compare(this.interestId, other.interestId);
+        }
+    }
+
+    /**
+     * Leaderboard of one (game, level), backed by a treap whose nodes keep the size of their subtree
+     */
+    private static class Board {
+
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private Node root;
+
+        // null when dropped by a write
+        private volatile List<Long> maxCreditUserIdList = Collections.emptyList();
+
+        private void add(Entry entry) {
+            this.lock.writeLock().lock();
+            try {
+                this.root = insert(this.root, new Node(entry));
+                if (entry.credit >= firstNode(this.root).entry.credit)
+                    this.maxCreditUserIdList = null;
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        }
+
+        private void remove(Entry entry) {
+            this.lock.writeLock().lock();
+            try {
+                boolean wasMax = entry.credit.equals(firstNode(this.root).entry.credit);
+                this.root = delete(this.root, entry);
+                if (wasMax)
+                    this.maxCreditUserIdList = null;
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        }
+
+        private int size() {
+            return size(this.root);
+        }
+
+        private List<Entry> range(int fromRank, int toRank) {
+            this.lock.readLock().lock();
+            try {
+                List<Entry> entryList = new ArrayList<>();
+                collect(this.root, 0, Math.max(fromRank, 1), toRank, entryList);
+                return entryList;
+            } finally {
+                this.lock.readLock().unlock();
+            }
+        }
+
+        private Entry rankOf(Entry entry) {
+            this.lock.readLock().lock();
+            try {
+                int before = 0;
+                Node node = this.root;
+                while (node != null) {
+                    int result = entry.compareTo(node.entry);
+                    if (result == 0)
+                        return node.entry.withRank(before + size(node.left) + 1);
+                    if (result < 0) {
+                        node = node.left;
+                    } else {
+                        before += size(node.left) + 1;
+                        node = node.right;
+                    }
+                }
+                return null;
+            } finally {
+                this.lock.readLock().unlock();
+            }
+        }
+
+        private List<Long> maxCreditUserIdList() {
+            List<Long> cachedList = this.maxCreditUserIdList;
+            if (cachedList != null)
+                return cachedList;
+            this.lock.readLock().lock();
+            try {
+                if (this.root == null)
+                    return Collections.emptyList();
+                List<Long> userIdList = new ArrayList<>();
+                collectCredit(this.root, firstNode(this.root).entry.credit, userIdList);
+                // writers hold the write lock, so no write can drop the cache between collecting and caching
+                cachedList = Collections.unmodifiableList(userIdList);
+                this.maxCreditUserIdList = cachedList;
+                return cachedList;
+            } finally {
+                this.lock.readLock().unlock();
+            }
+        }
+
+        // in-order walk of entries with given credit, skipping subtrees that cannot contain it
+        private static void collectCredit(Node node, int credit, List<Long> userIdList) {
+            if (node == null)
+                return;
+            if (node.entry.credit < credit) {
+                collectCredit(node.left, credit, userIdList);
+                return;
+            }
+            if (node.entry.credit > credit) {
+                collectCredit(node.right, credit, userIdList);
+                return;
+            }
+            collectCredit(node.left, credit, userIdList);
+            if (node.entry.credit == credit)
+                userIdList.add(node.entry.userId);
+            collectCredit(node.right, credit, userIdList);
+        }
+
+        // in-order walk of ranks [fromRank, toRank], where offset is the number of entries before node's subtree
+        private static void collect(Node node, int offset, int fromRank, int toRank, List<Entry> entryList) {
+            if (node == null || offset >= toRank || offset + node.size < fromRank)
+                return;
+            collect(node.left, offset, fromRank, toRank, entryList);
+            int rank = offset + size(node.left) + 1;
+            if (rank >= fromRank && rank <= toRank)
+                entryList.add(node.entry.withRank(rank));
+            collect(node.right, rank, fromRank, toRank, entryList);
+        }
+
+        private static Node firstNode(Node node) {
+            while (node.left != null)
+                node = node.left;
+            return node;
+        }
+
+        private static Node insert(Node node, Node newNode) {
+            if (node == null)
+                return newNode;
+            if (newNode.entry.compareTo(node.entry) < 0) {
+                node.left = insert(node.left, newNode);
+                if (node.left.priority > node.priority)
+                    node = rotateRight(node);
+            } else {
+                node.right = insert(node.right, newNode);
+                if (node.right.priority > node.priority)
+                    node = rotateLeft(node);
+            }
+            node.update();
+            return node;
+        }
+
+        private static Node delete(Node node, Entry entry) {
+            if (node == null)
+                return null;
+            int result = entry.compareTo(node.entry);
+            if (result < 0) {
+                node.left = delete(node.left, entry);
+            } else if (result > 0) {
+                node.right = delete(node.right, entry);
+            } else {
+                if (node.left == null)
+                    return node.right;
+                if (node.right == null)
+                    return node.left;
+                if (node.left.priority > node.right.priority) {
+                    node = rotateRight(node);
+                    node.right = delete(node.right, entry);
+                } else {
+                    node = rotateLeft(node);
+                    node.left = delete(node.left, entry);
+                }
+            }
+            node.update();
+            return node;
+        }
+
+        private static Node rotateRight(Node node) {
+            Node left = node.left;
+            node.left = left.right;
+            left.right = node;
+            node.update();
+            left.update();
+            return left;
+        }
+
+        private static Node rotateLeft(Node node) {
+            Node right = node.right;
+            node.right = right.left;
+            right.left = node;
+            node.update();
+            right.update();
+            return right;
+        }
+
+        private static int size(Node node) {
+            return node == null ? 0 : node.size;
+        }
+    }
+
+    private static class Node {
+        private final Entry entry;
+        private final int priority = ThreadLocalRandom.current().nextInt();
+        private Node left;
+        private Node right;
+        private int size = 1;
+
+        private Node(Entry entry) {
+            this.entry = entry;
+        }
+
+        private void update() {
+            this.size = Board.size(this.left) + Board.size(this.right) + 1;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.tiwa007.gamematchrestapi.service;
+
+import com.tiwa007.gamematchrestapi.common.config.ReadYourWritesInterceptor;
+import com.tiwa007.gamematchrestapi.entity.Interest;
+import com.tiwa007.gamematchrestapi.entity.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind buffer of credit updates, used when credit.write-behind.enabled is true.
+ * Updates are kept per interestId in lock-striped maps, so repeated updates of the same interest before a flush
+ * are coalesced into the last credit. Pending credits are written as one JDBC batch in one transaction when
+ * credit.write-behind.flush-size interests are pending, every credit.write-behind.flush-millis and on shutdown.
+ * A credit stays readable through getPendingCredit until its batch is committed.
+ * With sharding, credits are written in one batch and transaction per shard.
+ * Flushes are serialized; a failed flush puts back the credits that were not updated again meanwhile.
+ * With replica routing, owners of flushed credits read from the primary until the replica applied the batch.
+ */
+@Component
+public class CreditWriteBuffer {
+
+    private static final String UPDATE_CREDIT_SQL = "UPDATE interests SET credit = ?, version = version + 1 " +
+            "WHERE interest_id = ?";
+
+    private static final int STRIPE_COUNT = 16;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Autowired
+    private ShardTemplate shardTemplate;
+
+    @Autowired
+    private MatchIndex matchIndex;
+
+    // present with replica routing
+    @Autowired(required = false)
+    private ReadYourWritesInterceptor readYourWritesInterceptor;
+
+    @Value("${credit.write-behind.enabled:false}")
+    private boolean enabled;
+
+    // pending interests that trigger a flush
+    @Value("${credit.write-behind.flush-size:500}")
+    private int flushSize;
+
+    // interestId -> pending credit, striped by interestId
+    private final Stripe[] stripes = createStripes();
+
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    // interestId -> credit of the batch being written, readable until it is committed
+    private volatile Map<Long, Integer> flushingMap = Collections.emptyMap();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Buffer credit of interest, replacing any pending credit of the same interest.
+     * The match index is updated under the stripe lock, so it sees credits of the interest in buffer order.
+     * The calling thread flushes when flush-size interests are pending and no flush is running.
+     * @param interestId
+     * @param credit
+     */
+    public void put(Long interestId, Integer credit) {
+        Stripe stripe = this.stripeOf(interestId);
+        int count;
+        synchronized (stripe) {
+            this.matchIndex.updateCredit(interestId, credit);
+            if (stripe.pendingMap.put(interestId, credit) != null)
+                return;
+            count = this.pendingCount.incrementAndGet();
+        }
+        if (count >= this.flushSize && this.flushLock.tryLock()) {
+            try {
+                this.flushLocked();
+            } finally {
+                this.flushLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Get credit of interest that is not yet committed
+     * @param interestId
+     * @return pending credit or null if there is none
+     */
+    public Integer getPendingCredit(Long interestId) {
+        Stripe stripe = this.stripeOf(interestId);
+        synchronized (stripe) {
+            Integer credit = stripe.pendingMap.get(interestId);
+            if (credit != null)
+                return credit;
+        }
+        return this.flushingMap.get(interestId);
+    }
+
+    /**
+     * Drop pending credit of interest, before the interest is written or deleted directly.
+     * Waits for a running flush, so no buffered credit of the interest is written afterwards.
+     * @param interestId
+     */
+    public void discard(Long interestId) {
+        this.flushLock.lock();
+        try {
+            Stripe stripe = this.stripeOf(interestId);
+            synchronized (stripe) {
+                if (stripe.pendingMap.remove(interestId) != null)
+                    this.pendingCount.decrementAndGet();
+            }
+        } finally {
+            this.flushLock.unlock();
+        }
+    }
+
+    /**
+     * Get copy of interest with pending credit
+     * @param interest
+     * @return the interest itself if it has no pending credit
+     */
+    public Interest withPendingCredit(Interest interest) {
+        Integer credit = this.getPendingCredit(interest.getInterestId());
+        if (credit == null)
+            return interest;
+        Interest copy = new Interest(interest.getGame(), interest.getLevel(), credit, interest.getUser());
+        copy.setInterestId(interest.getInterestId());
+        copy.setVersion(interest.getVersion());
+        return copy;
+    }
+
+    /**
+     * Get copy of user whose interests have pending credits
+     * @param user
+     * @return the user itself if no interest has pending credit
+     */
+    public User withPendingCredits(User user) {
+        if (this.pendingCount.get() == 0 && this.flushingMap.isEmpty())
+            return user;
+        boolean pending = false;
+        Set<Interest> interestSet = new LinkedHashSet<>();
+        for (Interest interest : user.getInterestSet()) {
+            Interest pendingInterest = this.withPendingCredit(interest);
+            pending |= pendingInterest != interest;
+            interestSet.add(pendingInterest);
+        }
+        if (!pending)
+            return user;
+        User copy = new User(user.getName(), user.getGender(), user.getNickname(), user.getGeography(), interestSet);
+        copy.setUserId(user.getUserId());
+        copy.setVersion(user.getVersion());
+        return copy;
+    }
+
+    /**
+     * Write all pending credits in one batch
+     */
+    @Scheduled(fixedDelayString = "${credit.write-behind.flush-millis:100}")
+    public void flush() {
+        if (this.pendingCount.get() == 0)
+            return;
+        this.flushLock.lock();
+        try {
+            this.flushLocked();
+        } finally {
+            this.flushLock.unlock();
+        }
+    }
+
+    /**
+     * Write credits still pending when the application is shut down
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        this.flush();
+    }
+
+    public int getPendingCount() {
+        return this.pendingCount.get();
+    }
+
+//    Helper methods
+
+    private void flushLocked() {
+        if (this.pendingCount.get() == 0)
+            return;
+        // drained credits become readable from flushingMap before they leave their stripe
+        Map<Long, Integer> drainedMap = new ConcurrentHashMap<>();
+        this.flushingMap = drainedMap;
+        for (Stripe stripe : this.stripes) {
+            synchronized (stripe) {
+                if (stripe.pendingMap.isEmpty())
+                    continue;
+                drainedMap.putAll(stripe.pendingMap);
+                this.pendingCount.addAndGet(-stripe.pendingMap.size());
+                stripe.pendingMap.clear();
+            }
+        }
+        if (drainedMap.isEmpty()) {
+            this.flushingMap = Collections.emptyMap();
+            return;
+        }
+
+        try {
+            for (Map.Entry<String, List<Object[]>> entry : this.createShardArgListMap(drainedMap).entrySet()) {
+                this.shardTemplate.execute(entry.getKey(), () -> this.transactionTemplate.execute(
+                        status -> this.jdbcTemplate.batchUpdate(UPDATE_CREDIT_SQL, entry.getValue())));
+            }
+            // reads of the owners go to the primary until the replica applied the batch, not just the request
+            if (this.readYourWritesInterceptor != null)
+                this.readYourWritesInterceptor.recordUserWrites(this.getOwnerIds(drainedMap.keySet()));
+            // batch was written without Hibernate, so cached interests are stale
+            this.cacheService.evictInterests(drainedMap.keySet());
+        } catch (RuntimeException exception) {
+            this.putBack(drainedMap);
+            throw exception;
+        } finally {
+            this.flushingMap = Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Group update arguments of credits by geography of shard of their interest owner.
+     * Without sharding, all arguments are in one batch of null geography. With sharding, credits of interests
+     * that are no longer indexed are dropped, like the update of a deleted interest.
+     */
+    private Map<String, List<Object[]>> createShardArgListMap(Map<Long, Integer> drainedMap) {
+        Map<String, List<Object[]>> argListMap = new HashMap<>();
+        for (Map.Entry<Long, Integer> entry : drainedMap.entrySet()) {
+            String geography = null;
+            if (this.shardTemplate.isEnabled()) {
+                Long ownerId = this.matchIndex.getInterestOwner(entry.getKey());
+                User owner = ownerId == null ? null : this.matchIndex.getUser(ownerId);
+                if (owner == null)
+                    continue;
+                geography = owner.getGeography();
+            }
+            argListMap.computeIfAbsent(geography, key -> new ArrayList<>())
+                    .add(new Object[]{entry.getValue(), entry.getKey()});
+        }
+        return argListMap;
+    }
+
+    private Set<Long> getOwnerIds(Collection<Long> interestIds) {
+        Set<Long> ownerIdSet = new HashSet<>();
+        for (Long interestId : interestIds) {
+            Long ownerId = this.matchIndex.getInterestOwner(interestId);
+            if (ownerId != null)
+                ownerIdSet.add(ownerId);
+        }
+        return ownerIdSet;
+    }
+
+    /**
+     * Put back credits of a failed flush unless the interest was updated again meanwhile
+     */
+    private void putBack(Map<Long, Integer> drainedMap) {
+        for (Map.Entry<Long, Integer> entry : drainedMap.entrySet()) {
+            Stripe stripe = this.stripeOf(entry.getKey());
+            synchronized (stripe) {
+                if (stripe.pendingMap.putIfAbsent(entry.getKey(), entry.getValue()) == null)
+                    this.pendingCount.incrementAndGet();
+            }
+        }
+    }
+
+    private Stripe stripeOf(Long interestId) {
+        return this.stripes[Long.hashCode(interestId) & (STRIPE_COUNT - 1)];
+    }
+
+    private static Stripe[] createStripes() {
+        Stripe[] stripes = new Stripe[STRIPE_COUNT];
+        for (int i = 0; i < STRIPE_COUNT; i++)
+            stripes[i] = new Stripe();
+        return stripes;
+    }
+
+    /**
+     * Pending credits of interests of one stripe, guarded by the stripe itself
+     */
+    private static final class Stripe {
+
+        private final Map<Long, Integer> pendingMap = new HashMap<>();
+    }
+}
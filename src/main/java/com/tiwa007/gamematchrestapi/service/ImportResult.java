@@ -0,0 +1,63 @@
+package com.tiwa007.gamematchrestapi.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk user import. At most MAX_REPORTED_ERRORS errors are listed, but all failures are counted.
+ */
+public class ImportResult {
+
+    public static final int MAX_REPORTED_ERRORS = 1000;
+
+    private int importedCount;
+
+    private int failedCount;
+
+    private List<RecordError> errors = new ArrayList<>();
+
+    public int getImportedCount() {
+        return importedCount;
+    }
+
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    public List<RecordError> getErrors() {
+        return errors;
+    }
+
+    void addImported(int count) {
+        this.importedCount += count;
+    }
+
+    void addError(int line, String message) {
+        this.failedCount++;
+        if (this.errors.size() < MAX_REPORTED_ERRORS)
+            this.errors.add(new RecordError(line, message));
+    }
+
+    /**
+     * Error of a record by its 1-based line number in the import body
+     */
+    public static class RecordError {
+
+        private final int line;
+
+        private final String message;
+
+        public RecordError(int line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
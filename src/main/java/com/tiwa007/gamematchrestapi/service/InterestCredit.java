@@ -0,0 +1,32 @@
+package com.tiwa007.gamematchrestapi.service;
+
+/**
+ * Credit of interest after a credit change
+ */
+public class InterestCredit {
+
+    private Long interestId;
+
+    private Integer credit;
+
+    public InterestCredit(Long interestId, Integer credit) {
+        this.interestId = interestId;
+        this.credit = credit;
+    }
+
+    public Long getInterestId() {
+        return interestId;
+    }
+
+    public void setInterestId(Long interestId) {
+        this.interestId = interestId;
+    }
+
+    public Integer getCredit() {
+        return credit;
+    }
+
+    public void setCredit(Integer credit) {
+        this.credit = credit;
+    }
+}
@@ -0,0 +1,67 @@
+package com.tiwa007.gamematchrestapi.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Consistency check of geography copied onto interests. Interests whose geography differs from geography
+ * of their user, e.g. after the users table was updated outside UserService, are found with one join and
+ * copied again from their user, every interest.geography-check.delay-millis. Caches are evicted after a repair.
+ * With sharding, every shard is checked on its own, users and their interests are in the same shard.
+ */
+@Component
+public class InterestGeographyCheck {
+
+    private static final String FIND_DRIFTED_SQL = "SELECT i.interest_id FROM interests i " +
+            "JOIN users u ON u.user_id = i.user_id WHERE i.geography IS DISTINCT FROM u.geography";
+
+    private static final String REPAIR_SQL = "UPDATE interests SET geography = " +
+            "(SELECT users.geography FROM users WHERE users.user_id = interests.user_id) WHERE interest_id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Autowired
+    private ShardTemplate shardTemplate;
+
+    /**
+     * Copy geography of user again onto interests where it drifted
+     * @return number of repaired interests
+     */
+    @Scheduled(fixedDelayString = "${interest.geography-check.delay-millis:3600000}",
+            initialDelayString = "${interest.geography-check.delay-millis:3600000}")
+    public int repairDriftedGeography() {
+        List<Long> interestIdList = new ArrayList<>();
+        for (String geography : this.shardTemplate.getShardGeographyList())
+            interestIdList.addAll(this.shardTemplate.execute(geography, this::repairShard));
+//      cached match results were selected by the drifted geography
+        if (!interestIdList.isEmpty())
+            this.cacheService.evictAll();
+        return interestIdList.size();
+    }
+
+//    Helper methods
+
+    private List<Long> repairShard() {
+        return this.transactionTemplate.execute(status -> {
+            List<Long> driftedIdList = this.jdbcTemplate.queryForList(FIND_DRIFTED_SQL, Long.class);
+            if (!driftedIdList.isEmpty())
+                this.jdbcTemplate.batchUpdate(REPAIR_SQL, driftedIdList.stream()
+                        .map(interestId -> new Object[]{interestId}).collect(Collectors.toList()));
+            return driftedIdList;
+        });
+    }
+}
@@ -1,16 +1,21 @@
 package com.tiwa007.gamematchrestapi.service;
 
 import com.tiwa007.gamematchrestapi.common.exception.InvalidRequestException;
+import com.tiwa007.gamematchrestapi.common.exception.PreconditionFailedException;
 import com.tiwa007.gamematchrestapi.common.exception.ResourceNotFoundException;
 import com.tiwa007.gamematchrestapi.entity.Interest;
 import com.tiwa007.gamematchrestapi.entity.User;
 import com.tiwa007.gamematchrestapi.repository.InterestRepository;
 import com.tiwa007.gamematchrestapi.repository.UserRepository;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.Arrays;
-import java.util.List;
+import java.util.*;
 
 @Service
 public class InterestService {
@@ -21,57 +26,148 @@ public class InterestService {
     @Autowired
     private InterestRepository interestRepository;
 
+    @Autowired
+    private MatchIndex matchIndex;
+
+    @Autowired
+    private CreditWriteBuffer creditWriteBuffer;
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ShardTemplate shardTemplate;
+
+    // interests of deleted users stay until they are purged and are neither read nor written
+    private static final String LIVE_OWNER_SQL = "EXISTS (SELECT users.user_id FROM users " +
+            "WHERE users.user_id = interests.user_id AND users.deleted = FALSE)";
+
+    // null credit counts as 0, and a change that would make credit negative updates no row
+    private static final String ADD_CREDIT_SQL = "UPDATE interests SET credit = COALESCE(credit, 0) + ?, " +
+            "version = version + 1 " +
+            "WHERE interest_id = ? AND COALESCE(credit, 0) + ? >= 0 AND " + LIVE_OWNER_SQL;
 
     // get interest by interestId
+    @Transactional(readOnly = true)
     public Interest getInterestByInterestId(Long userId, Long interestId){
-        Interest interest =  this.getInterestFromInterestId(interestId, userId);
+        Interest interest = this.shardTemplate.executeReadOnly(this.getShardGeography(userId), () -> {
+//          user is read from the entity cache, interests of deleted users are not returned
+            this.getUserFromUserId(userId);
+            return this.getInterestFromInterestId(interestId, userId);
+        });
+        if (this.creditWriteBuffer.isEnabled())
+            return this.creditWriteBuffer.withPendingCredit(interest);
         return interest;
     }
 
+    /**
+     * Create interest of user. One interest per game is enforced by the uk_interests_user_game constraint,
+     * so no query checks the game of existing interests first.
+     * @param interest
+     * @param userId
+     * @return created interest
+     * @throws InvalidRequestException
+     * if user already has interest with the game
+     */
     public Interest createUserInterest(Interest interest, Long userId){
-        User user =  this.getUserFromUserId(userId);
-        List<Interest> interestList = this.interestRepository.findInterestByUserAndGame(user, interest.getGame());
-//        post interest
-        if (interest.getInterestId() == null && interestList.size() > 0)
-            throw new InvalidRequestException("User already has interest with game: " + interest.getGame());
+        String shardGeography = this.getShardGeography(userId);
+        User user = this.shardTemplate.executeReadOnly(shardGeography, () -> this.getUserFromUserId(userId));
 
         interest.setUser(user);
-        Interest resInterest = interestRepository.save(interest);
+        interest.setGeography(user.getGeography());
+        Interest resInterest;
+        try {
+            // index is updated while the new row is uncommitted, so a write of the interest waits for it
+            resInterest = this.shardTemplate.execute(shardGeography, () ->
+                    this.transactionTemplate.execute(status -> {
+                        Interest savedInterest = interestRepository.saveAndFlush(interest);
+                        this.matchIndex.indexInterest(user, savedInterest);
+                        return savedInterest;
+                    }));
+        } catch (DataIntegrityViolationException exception) {
+            throw this.translateUserGameViolation(exception, interest.getGame());
+        }
         return resInterest;
     }
 
-    public void updateUserInterestByInterestId(Interest interest, Long userId, Long interestId){
-        if (interest.getInterestId() != interestId)
+    /**
+     * Replace game, level and credit of user interest. The ownership and version checks are part of the update
+     * statement and the same game check is the uk_interests_user_game constraint, so a successful update costs
+     * one statement.
+     * @param interest
+     * @param userId
+     * @param interestId
+     * @param expectedVersion version of If-Match, or null to update any version
+     * @throws ResourceNotFoundException
+     * if user or interest does not exist
+     * @throws InvalidRequestException
+     * if user with userId does not have the interest with interestId
+     * @throws PreconditionFailedException
+     * if the interest is not at expectedVersion
+     */
+    public void updateUserInterestByInterestId(Interest interest, Long userId, Long interestId, Long expectedVersion){
+        if (!Objects.equals(interest.getInterestId(), interestId))
             throw new InvalidRequestException("The interest has a different interestId: " + interest.getInterestId()
                     + " from path variable: " + interestId);
 
-        User user =  this.getUserFromUserId(userId);
-
-        Interest existingInterest = this.getInterestFromInterestId(interestId, userId);
-
-        if (existingInterest.getGame() != interest.getGame()) {
-            List<Interest> interestList = this.interestRepository.findInterestByUserAndGame(user, interest.getGame());
-            if (interestList.size() > 1 ||
-                    (interestList.size() == 1 && interestList.get(0).getInterestId().longValue() != interestId.longValue()))
-                throw new InvalidRequestException("User already has interest with game: " + interest.getGame());
+        if (this.creditWriteBuffer.isEnabled()) {
+            this.checkIndexedInterestOwner(userId, interestId);
+            this.creditWriteBuffer.discard(interestId);
         }
-
-        existingInterest.setCredit(interest.getCredit());
-        existingInterest.setGame(interest.getGame());
-        existingInterest.setLevel(interest.getLevel());
-        interestRepository.save(existingInterest);
+        Interest updatedInterest = new Interest(interest.getGame(), interest.getLevel(), interest.getCredit(), null);
+        updatedInterest.setInterestId(interestId);
+        this.shardTemplate.execute(this.getShardGeography(userId), () -> this.transactionTemplate.execute(status -> {
+            int updatedCount;
+            try {
+                updatedCount = this.interestRepository.updateUserInterest(userId, interestId, interest.getGame(),
+                        interest.getLevel(), interest.getCredit(), expectedVersion);
+            } catch (DataIntegrityViolationException exception) {
+                throw this.translateUserGameViolation(exception, interest.getGame());
+            }
+            if (updatedCount == 0) {
+                this.checkInterestOwner(userId, interestId);
+                // without If-Match, an interest the checks still find was missed because of a concurrent write
+                if (expectedVersion == null)
+                    throw new ResourceNotFoundException("Interest cannot be found with id: " + interestId);
+                throw new PreconditionFailedException("Interest with interestId: " + interestId +
+                        " is not at version of If-Match: " + expectedVersion);
+            }
+            // index is updated while the row is still locked, so it sees updates of the interest in commit order
+            this.matchIndex.indexInterest(userId, updatedInterest);
+            return null;
+        }));
     }
 
+    /**
+     * Delete user interest with one ownership-scoped statement
+     * @param userId
+     * @param interestId
+     */
     public void deleteUserInterestByInterestId(Long userId, Long interestId){
 
-        this.getUserFromUserId(userId);
-        this.getInterestFromInterestId(interestId, userId);
-
-        interestRepository.deleteById(interestId);
+        if (this.creditWriteBuffer.isEnabled()) {
+            this.checkIndexedInterestOwner(userId, interestId);
+            this.creditWriteBuffer.discard(interestId);
+        }
+        this.shardTemplate.execute(this.getShardGeography(userId), () -> this.transactionTemplate.execute(status -> {
+            if (this.interestRepository.deleteUserInterest(userId, interestId) == 0)
+                this.checkInterestOwner(userId, interestId);
+            this.matchIndex.removeInterest(interestId);
+            return null;
+        }));
     }
 
     /**
-     * Update user interest credit
+     * Update user interest credit. With credit write-behind, the credit is buffered once user and interest
+     * are checked against the match index, and is written to database by the next flush.
+     * The match index is updated in the same order as the buffer or the database.
+     * Otherwise the credit is written with one ownership-scoped statement.
      * @param userId
      * @param interestId
      * @param credit
@@ -81,10 +177,122 @@ public class InterestService {
         if (credit < 0)
             throw new InvalidRequestException("Credit should be zero or positive");
 
-        this.getUserFromUserId(userId);
-        this.getInterestFromInterestId(interestId, userId);
+        if (this.creditWriteBuffer.isEnabled()) {
+            this.checkIndexedInterestOwner(userId, interestId);
+            this.creditWriteBuffer.put(interestId, credit);
+            return;
+        }
+        this.shardTemplate.execute(this.getShardGeography(userId), () -> this.transactionTemplate.execute(status -> {
+            if (this.interestRepository.updateUserInterestCredit(userId, interestId, credit) == 0)
+                this.checkInterestOwner(userId, interestId);
+            // index is updated while the row is still locked, so it sees updates of the interest in commit order
+            this.matchIndex.updateCredit(interestId, credit);
+            return null;
+        }));
+    }
 
-        this.interestRepository.updateUserInterestCredit(interestId, credit);
+    /**
+     * Add delta to user interest credit in one atomic update
+     * @param userId
+     * @param interestId
+     * @param delta negative to subtract
+     * @return credit after the change
+     * @throws ResourceNotFoundException
+     * if user or interest does not exist
+     * @throws InvalidRequestException
+     * if user does not have the interest or credit would become negative
+     */
+    public InterestCredit addUserInterestCredit(Long userId, Long interestId, Integer delta) {
+        this.checkIndexedInterestOwner(userId, interestId);
+        return this.addInterestCredits(Collections.singletonMap(interestId, delta)).get(0);
+    }
+
+    /**
+     * Add deltas to credits of many interests in one transaction. Either all credits change or none does.
+     * Rows are updated in interestId order, so concurrent batches cannot deadlock.
+     * With sharding, all interests should belong to users of one shard.
+     * @param deltaMap interestId -> delta, negative to subtract
+     * @return credits after the change in order of deltaMap
+     * @throws ResourceNotFoundException
+     * if an interest does not exist
+     * @throws InvalidRequestException
+     * if a credit would become negative, or interests belong to users of different shards
+     */
+    public List<InterestCredit> addInterestCredits(Map<Long, Integer> deltaMap) {
+        List<Long> interestIdList = new ArrayList<>(deltaMap.keySet());
+        Collections.sort(interestIdList);
+        String shardGeography = this.getShardGeography(interestIdList);
+
+        // buffered absolute credits are written first, so deltas apply on top of them
+        if (this.creditWriteBuffer.isEnabled()) {
+            for (Long interestId : interestIdList) {
+                if (this.creditWriteBuffer.getPendingCredit(interestId) != null) {
+                    this.creditWriteBuffer.flush();
+                    break;
+                }
+            }
+        }
+
+        Map<Long, Integer> creditMap = this.shardTemplate.execute(shardGeography, () ->
+                this.transactionTemplate.execute(status -> {
+                    List<Object[]> argList = new ArrayList<>(interestIdList.size());
+                    for (Long interestId : interestIdList) {
+                        Integer delta = deltaMap.get(interestId);
+                        argList.add(new Object[]{delta, interestId, delta});
+                    }
+                    int[] updateCounts = this.jdbcTemplate.batchUpdate(ADD_CREDIT_SQL, argList);
+                    Map<Long, Integer> newCreditMap = this.findCredits(interestIdList);
+                    for (int i = 0; i < interestIdList.size(); i++) {
+                        if (updateCounts[i] == 0)
+                            throw this.createCreditDeltaException(interestIdList.get(i), deltaMap, newCreditMap);
+                    }
+                    // index is updated while rows are still locked,
+                    // so it sees changes of the same interest in commit order
+                    for (Long interestId : interestIdList)
+                        this.matchIndex.updateCredit(interestId, newCreditMap.get(interestId));
+                    return newCreditMap;
+                }));
+        // rows were updated without Hibernate, so cached interests are stale
+        this.cacheService.evictInterests(interestIdList);
+
+        List<InterestCredit> interestCreditList = new ArrayList<>(deltaMap.size());
+        for (Long interestId : deltaMap.keySet())
+            interestCreditList.add(new InterestCredit(interestId, creditMap.get(interestId)));
+        return interestCreditList;
+    }
+
+    // geography of shard of user from match index, null without sharding
+    private String getShardGeography(Long userId) {
+        if (!this.shardTemplate.isEnabled())
+            return null;
+        User user = this.matchIndex.getUser(userId);
+        if (user == null)
+            throw new ResourceNotFoundException("User cannot be found with id: " + userId);
+        return user.getGeography();
+    }
+
+    /**
+     * Get geography of the one shard of owners of interests from match index
+     * @return geography of shard, null without sharding
+     * @throws ResourceNotFoundException
+     * if an interest does not exist
+     * @throws InvalidRequestException
+     * if interests belong to users of different shards
+     */
+    private String getShardGeography(List<Long> interestIdList) {
+        if (!this.shardTemplate.isEnabled())
+            return null;
+        Set<String> geographySet = new TreeSet<>();
+        for (Long interestId : interestIdList) {
+            Long ownerId = this.matchIndex.getInterestOwner(interestId);
+            if (ownerId == null)
+                throw new ResourceNotFoundException("Interest cannot be found with id: " + interestId);
+            geographySet.add(this.getShardGeography(ownerId));
+        }
+        if (geographySet.size() > 1)
+            throw new InvalidRequestException("Interests should belong to users of one geography, but belong to: "
+                    + geographySet);
+        return geographySet.iterator().next();
     }
 
     /**
@@ -118,4 +326,84 @@ public class InterestService {
                     " does not have the interest with interestId : " + interestId);
         return interest;
     }
+
+    /**
+     * Explain an ownership-scoped write that changed no row. Only called on failure, so successful writes
+     * do not pay for the checks.
+     * @param userId
+     * @param interestId
+     * @throws ResourceNotFoundException
+     * if user or interest does not exist
+     * @throws InvalidRequestException
+     * if user with userId does not have the interest with interestId
+     */
+    private void checkInterestOwner(Long userId, Long interestId) {
+        if (!this.userRepository.existsById(userId))
+            throw new ResourceNotFoundException("User cannot be found with id: " + userId);
+        Long ownerId = this.interestRepository.findOwnerIdByInterestId(interestId)
+                .orElseThrow(() -> new ResourceNotFoundException("Interest cannot be found with id: " + interestId));
+        if (!ownerId.equals(userId))
+            throw new InvalidRequestException("User with userId: " + userId +
+                    " does not have the interest with interestId : " + interestId);
+    }
+
+    /**
+     * Check from match index whether user and interest exist and the userId of interest is the same as userId
+     * @param userId
+     * @param interestId
+     * @throws ResourceNotFoundException
+     * if user or interest does not exist
+     * @throws InvalidRequestException
+     * if user with userId does not have the interest with interestId
+     */
+    private void checkIndexedInterestOwner(Long userId, Long interestId) {
+        if (this.matchIndex.getUser(userId) == null)
+            throw new ResourceNotFoundException("User cannot be found with id: " + userId);
+        Long ownerId = this.matchIndex.getInterestOwner(interestId);
+        if (ownerId == null)
+            throw new ResourceNotFoundException("Interest cannot be found with id: " + interestId);
+        if (!ownerId.equals(userId))
+            throw new InvalidRequestException("User with userId: " + userId +
+                    " does not have the interest with interestId : " + interestId);
+    }
+
+    /**
+     * Translate violation of uk_interests_user_game into InvalidRequestException
+     * @param exception
+     * @param game
+     * @return InvalidRequestException, or the exception itself if another constraint is violated
+     */
+    private RuntimeException translateUserGameViolation(DataIntegrityViolationException exception, String game) {
+        Throwable cause = exception.getCause();
+        if (cause instanceof ConstraintViolationException) {
+            String constraintName = ((ConstraintViolationException) cause).getConstraintName();
+            if (constraintName != null &&
+                    constraintName.toLowerCase(Locale.ROOT).contains(Interest.USER_GAME_CONSTRAINT))
+                return new InvalidRequestException("User already has interest with game: " + game);
+        }
+        return exception;
+    }
+
+    private Map<Long, Integer> findCredits(List<Long> interestIdList) {
+        String placeholders = String.join(", ", Collections.nCopies(interestIdList.size(), "?"));
+        Map<Long, Integer> creditMap = new HashMap<>();
+        this.jdbcTemplate.query("SELECT interest_id, credit FROM interests WHERE interest_id IN (" + placeholders + ")"
+                        + " AND " + LIVE_OWNER_SQL,
+                resultSet -> {
+                    creditMap.put(resultSet.getLong("interest_id"), resultSet.getInt("credit"));
+                }, interestIdList.toArray());
+        return creditMap;
+    }
+
+    /**
+     * Explain why credit of interest was not changed
+     */
+    private RuntimeException createCreditDeltaException(Long interestId, Map<Long, Integer> deltaMap,
+                                                       Map<Long, Integer> creditMap) {
+        Integer credit = creditMap.get(interestId);
+        if (credit == null)
+            return new ResourceNotFoundException("Interest cannot be found with id: " + interestId);
+        return new InvalidRequestException("Credit of interest with interestId: " + interestId +
+                " should be zero or positive, but would be: " + ((long) credit + deltaMap.get(interestId)));
+    }
 }
@@ -0,0 +1,56 @@
+package com.tiwa007.gamematchrestapi.service;
+
+import com.tiwa007.gamematchrestapi.entity.User;
+
+/**
+ * Rank of a user interest in the credit leaderboard of its game and level
+ */
+public class LeaderboardEntry {
+
+    private int rank;
+
+    private Long interestId;
+
+    private Integer credit;
+
+    private User user;
+
+    public LeaderboardEntry(int rank, Long interestId, Integer credit, User user) {
+        this.rank = rank;
+        this.interestId = interestId;
+        this.credit = credit;
+        this.user = user;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public void setRank(int rank) {
+        this.rank = rank;
+    }
+
+    public Long getInterestId() {
+        return interestId;
+    }
+
+    public void setInterestId(Long interestId) {
+        this.interestId = interestId;
+    }
+
+    public Integer getCredit() {
+        return credit;
+    }
+
+    public void setCredit(Integer credit) {
+        this.credit = credit;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+}
@@ -0,0 +1,64 @@
+package com.tiwa007.gamematchrestapi.service;
+
+import java.util.List;
+
+/**
+ * Group of tickets assigned to one game by the matchmaking matcher.
+ * Level and geography are those of the first ticket by ticketId. With widening, other tickets of the match
+ * can have a different level or geography, which their own tickets report.
+ */
+public class Match {
+
+    private final Long matchId;
+
+    private final String game;
+
+    private final String level;
+
+    private final String geography;
+
+    private final List<Long> ticketIds;
+
+    private final List<Long> userIds;
+
+    private final long createdAt;
+
+    public Match(Long matchId, String game, String level, String geography, List<Long> ticketIds, List<Long> userIds,
+                 long createdAt) {
+        this.matchId = matchId;
+        this.game = game;
+        this.level = level;
+        this.geography = geography;
+        this.ticketIds = ticketIds;
+        this.userIds = userIds;
+        this.createdAt = createdAt;
+    }
+
+    public Long getMatchId() {
+        return matchId;
+    }
+
+    public String getGame() {
+        return game;
+    }
+
+    public String getLevel() {
+        return level;
+    }
+
+    public String getGeography() {
+        return geography;
+    }
+
+    public List<Long> getTicketIds() {
+        return ticketIds;
+    }
+
+    public List<Long> getUserIds() {
+        return userIds;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+}
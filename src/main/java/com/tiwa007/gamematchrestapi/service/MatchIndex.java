@@ -0,0 +1,435 @@
+package com.tiwa007.gamematchrestapi.service;
+
+import com.tiwa007.gamematchrestapi.entity.Interest;
+import com.tiwa007.gamematchrestapi.entity.User;
+import com.tiwa007.gamematchrestapi.repository.UserInterestRow;
+import com.tiwa007.gamematchrestapi.repository.UserRepository;
+import org.roaringbitmap.longlong.LongIterator;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of users by game, level and geography, together with the credit leaderboard
+ * of interests keyed by (game, level).
+ * Attribute values are dictionary encoded and matched through compressed 64-bit bitmaps of interestIds,
+ * so any attribute can be left out of a match query.
+ * Built from the users and interests tables at startup and kept current by the writes in
+ * UserService and InterestService, so match queries are answered without any SQL.
+ * Writes are serialized on the index and publish a new immutable user snapshot. Snapshot and owner lookups
+ * are lock-free, while a match query takes the read lock of the candidate bitmap index and a leaderboard
+ * query takes the read lock of the board of its (game, level), so reads only wait for a write to that structure.
+ * Snapshots returned by the index are read-only and must not be modified or persisted.
+ */
+@Component
+public class MatchIndex {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AttributeDictionary attributeDictionary;
+
+    @Autowired
+    private ShardTemplate shardTemplate;
+
+    // userId -> read-only snapshot of user with its interests
+    private volatile Map<Long, User> userMap = new ConcurrentHashMap<>();
+
+    // interestId -> userId of interest owner
+    private volatile Map<Long, Long> interestOwnerMap = new ConcurrentHashMap<>();
+
+    private volatile CandidateBitmapIndex candidateBitmapIndex;
+
+    private volatile CreditLeaderboard creditLeaderboard = new CreditLeaderboard();
+
+    /**
+     * Rebuild the whole index from database. Called once the application is ready, after the catalog is loaded,
+     * and whenever the tables were changed without going through the services.
+     * Users and interests are read as joined read-only rows in a single query, so no entity is loaded.
+     * The transaction is not read-only, so rows are read from the primary and no write already applied to the
+     * index is lost to replica lag. With sharding, rows are read from all shards in parallel.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(1)
+    @Transactional
+    public synchronized void rebuild() {
+        Map<Long, User> newUserMap = new ConcurrentHashMap<>();
+        Map<Long, Long> newInterestOwnerMap = new ConcurrentHashMap<>();
+        List<long[]> codeList = new ArrayList<>();
+        CreditLeaderboard newCreditLeaderboard = new CreditLeaderboard();
+
+        // rows of a user are consecutive within the rows of its shard
+        List<UserInterestRow> rowList = new ArrayList<>();
+        for (List<UserInterestRow> shardRowList : this.shardTemplate.executeOnEach(this.userRepository::findAllUserInterestRows))
+            rowList.addAll(shardRowList);
+        for (User snapshot : this.createSnapshots(rowList)) {
+            newUserMap.put(snapshot.getUserId(), snapshot);
+            for (Interest interest : snapshot.getInterestSet()) {
+                newInterestOwnerMap.put(interest.getInterestId(), snapshot.getUserId());
+                codeList.add(this.encode(interest, snapshot.getGeography()));
+                newCreditLeaderboard.put(interest.getInterestId(), snapshot.getUserId(), interest.getGame(),
+                        interest.getLevel(), interest.getCredit());
+            }
+        }
+        CandidateBitmapIndex newCandidateBitmapIndex = this.createCandidateBitmapIndex();
+        newCandidateBitmapIndex.replace(Collections.emptyList(), codeList);
+
+        this.userMap = newUserMap;
+        this.interestOwnerMap = newInterestOwnerMap;
+        this.candidateBitmapIndex = newCandidateBitmapIndex;
+        this.creditLeaderboard = newCreditLeaderboard;
+    }
+
+    /**
+     * Get a list of users having an interest with same game and level and having same geography, ordered by userId
+     * @param game game or null for any game
+     * @param level level or null for any level
+     * @param geography geography or null for any geography
+     * @return list of user snapshots
+     */
+    public List<User> findMatchUsers(String game, String level, String geography) {
+        int gameCode = game == null ? CandidateBitmapIndex.ANY : this.attributeDictionary.encodeGame(game);
+        int levelCode = level == null ? CandidateBitmapIndex.ANY : this.attributeDictionary.encodeLevel(level);
+        int geographyCode = geography == null ? CandidateBitmapIndex.ANY
+                : this.attributeDictionary.encodeGeography(geography);
+        if ((game != null && gameCode < 0) || (level != null && levelCode < 0) || (geography != null && geographyCode < 0))
+            return new ArrayList<>();
+
+        Roaring64Bitmap interestIdBitmap = this.getCandidateBitmapIndex().match(gameCode, levelCode, geographyCode);
+        Roaring64Bitmap userIdBitmap = new Roaring64Bitmap();
+        Map<Long, Long> ownerMap = this.interestOwnerMap;
+        LongIterator interestIdIterator = interestIdBitmap.getLongIterator();
+        while (interestIdIterator.hasNext()) {
+            Long userId = ownerMap.get(interestIdIterator.next());
+            if (userId != null)
+                userIdBitmap.addLong(userId);
+        }
+
+        List<User> userList = new ArrayList<>((int) userIdBitmap.getLongCardinality());
+        LongIterator userIdIterator = userIdBitmap.getLongIterator();
+        while (userIdIterator.hasNext()) {
+            User user = this.userMap.get(userIdIterator.next());
+            if (user != null)
+                userList.add(user);
+        }
+        return userList;
+    }
+
+    /**
+     * Get a list of users with maximum credit among users with same game and level
+     * @param game
+     * @param level
+     * @return list of user snapshots
+     */
+    public List<User> findMaxCreditUsers(String game, String level) {
+        return this.resolveUsers(this.creditLeaderboard.getMaxCreditUserIds(game, level));
+    }
+
+    /**
+     * Get leaderboard entries ranked from fromRank to toRank among interests with same game and level
+     * @param game
+     * @param level
+     * @param fromRank 1-based, inclusive
+     * @param toRank 1-based, inclusive
+     * @return list of leaderboard entries ordered by rank
+     */
+    public List<LeaderboardEntry> findRankRange(String game, String level, int fromRank, int toRank) {
+        List<LeaderboardEntry> leaderboardEntryList = new ArrayList<>();
+        for (CreditLeaderboard.Entry entry : this.creditLeaderboard.getRankRange(game, level, fromRank, toRank)) {
+            User user = this.userMap.get(entry.getUserId());
+            if (user != null)
+                leaderboardEntryList.add(new LeaderboardEntry(entry.getRank(), entry.getInterestId(),
+                        entry.getCredit(), user));
+        }
+        return leaderboardEntryList;
+    }
+
+    /**
+     * Get leaderboard entry of interest
+     * @param interestId
+     * @return leaderboard entry or null if interest is not ranked
+     */
+    public LeaderboardEntry findRank(Long interestId) {
+        CreditLeaderboard.Entry entry = this.creditLeaderboard.getEntry(interestId);
+        if (entry == null)
+            return null;
+        User user = this.userMap.get(entry.getUserId());
+        if (user == null)
+            return null;
+        return new LeaderboardEntry(entry.getRank(), entry.getInterestId(), entry.getCredit(), user);
+    }
+
+    /**
+     * Get snapshot of user by userId
+     * @param userId
+     * @return user snapshot or null if user is not indexed
+     */
+    public User getUser(Long userId) {
+        return this.userMap.get(userId);
+    }
+
+    /**
+     * Get userId of the owner of interest
+     * @param interestId
+     * @return userId or null if interest is not indexed
+     */
+    public Long getInterestOwner(Long interestId) {
+        return this.interestOwnerMap.get(interestId);
+    }
+
+    /**
+     * Index user together with all interests of user, replacing any previous entry
+     * @param user
+     */
+    public synchronized void indexUser(User user) {
+        this.publish(this.createSnapshot(user, user.getInterestSet()));
+    }
+
+    /**
+     * Update name, gender, nickname and geography of indexed user. Interests of user are kept.
+     * @param user
+     */
+    public synchronized void updateUserProfile(User user) {
+        User existing = this.userMap.get(user.getUserId());
+        Set<Interest> interestSet = existing != null ? existing.getInterestSet() : user.getInterestSet();
+        this.publish(this.createSnapshot(user, interestSet));
+    }
+
+    /**
+     * Remove user and all interests of user from index
+     * @param userId
+     */
+    public synchronized void removeUser(Long userId) {
+        User existing = this.userMap.remove(userId);
+        if (existing == null)
+            return;
+        this.unlink(existing);
+    }
+
+    /**
+     * Add or replace interest of user
+     * @param user owner of interest
+     * @param interest
+     */
+    public synchronized void indexInterest(User user, Interest interest) {
+        User existing = this.userMap.get(user.getUserId());
+        if (existing == null)
+            existing = this.createSnapshot(user, user.getInterestSet());
+        this.replaceInterest(existing, interest);
+    }
+
+    /**
+     * Add or replace interest of indexed user
+     * @param userId owner of interest
+     * @param interest
+     */
+    public synchronized void indexInterest(Long userId, Interest interest) {
+        User existing = this.userMap.get(userId);
+        // user was removed meanwhile, and its interests with it
+        if (existing == null)
+            return;
+        this.replaceInterest(existing, interest);
+    }
+
+    /**
+     * Remove interest from index
+     * @param interestId
+     */
+    public synchronized void removeInterest(Long interestId) {
+        Long userId = this.interestOwnerMap.get(interestId);
+        if (userId == null)
+            return;
+        User existing = this.userMap.get(userId);
+        Set<Interest> interestSet = new HashSet<>();
+        for (Interest existingInterest : existing.getInterestSet()) {
+            if (!existingInterest.getInterestId().equals(interestId))
+                interestSet.add(existingInterest);
+        }
+        this.publish(this.createSnapshot(existing, interestSet));
+    }
+
+    /**
+     * Update credit of indexed interest
+     * @param interestId
+     * @param credit
+     */
+    public synchronized void updateCredit(Long interestId, Integer credit) {
+        Long userId = this.interestOwnerMap.get(interestId);
+        if (userId == null)
+            return;
+        User existing = this.userMap.get(userId);
+        Set<Interest> interestSet = new HashSet<>();
+        for (Interest existingInterest : existing.getInterestSet()) {
+            if (existingInterest.getInterestId().equals(interestId)) {
+                Interest interest = new Interest(existingInterest.getGame(), existingInterest.getLevel(), credit, null);
+                interest.setInterestId(interestId);
+                interestSet.add(interest);
+            } else {
+                interestSet.add(existingInterest);
+            }
+        }
+        this.publish(this.createSnapshot(existing, interestSet));
+    }
+
+//    Helper methods
+
+    private void replaceInterest(User existing, Interest interest) {
+        Set<Interest> interestSet = new HashSet<>();
+        for (Interest existingInterest : existing.getInterestSet()) {
+            if (!existingInterest.getInterestId().equals(interest.getInterestId()))
+                interestSet.add(existingInterest);
+        }
+        interestSet.add(interest);
+        this.publish(this.createSnapshot(existing, interestSet));
+    }
+
+    private List<User> resolveUsers(Collection<Long> userIds) {
+        List<User> userList = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            User user = this.userMap.get(userId);
+            if (user != null)
+                userList.add(user);
+        }
+        return userList;
+    }
+
+    /**
+     * Replace the indexed snapshot of user. Must be called while holding the index lock.
+     * @param snapshot
+     */
+    private void publish(User snapshot) {
+        User existing = this.userMap.put(snapshot.getUserId(), snapshot);
+        if (existing != null)
+            this.unlink(existing, snapshot);
+
+        List<long[]> addedCodeList = new ArrayList<>();
+        for (Interest interest : snapshot.getInterestSet()) {
+            this.interestOwnerMap.put(interest.getInterestId(), snapshot.getUserId());
+            addedCodeList.add(this.encode(interest, snapshot.getGeography()));
+            this.creditLeaderboard.put(interest.getInterestId(), snapshot.getUserId(), interest.getGame(),
+                    interest.getLevel(), interest.getCredit());
+        }
+        List<long[]> removedCodeList = existing != null ? this.encode(existing) : Collections.emptyList();
+        this.getCandidateBitmapIndex().replace(removedCodeList, addedCodeList);
+    }
+
+    private void unlink(User existing) {
+        this.unlink(existing, null);
+    }
+
+    /**
+     * Remove owner and leaderboard entries of interests of an old snapshot that are not in the replacing snapshot.
+     * Without replacing snapshot, the interests are also removed from candidate bitmaps.
+     * @param existing old snapshot
+     * @param replacement new snapshot or null if user is removed
+     */
+    private void unlink(User existing, User replacement) {
+        Set<Long> keptInterestIdSet = new HashSet<>();
+        if (replacement != null) {
+            for (Interest interest : replacement.getInterestSet())
+                keptInterestIdSet.add(interest.getInterestId());
+        }
+        for (Interest interest : existing.getInterestSet()) {
+            if (!keptInterestIdSet.contains(interest.getInterestId())) {
+                this.interestOwnerMap.remove(interest.getInterestId());
+                this.creditLeaderboard.remove(interest.getInterestId());
+            }
+        }
+        if (replacement == null)
+            this.getCandidateBitmapIndex().replace(this.encode(existing), Collections.emptyList());
+    }
+
+    private List<long[]> encode(User user) {
+        List<long[]> codeList = new ArrayList<>();
+        for (Interest interest : user.getInterestSet())
+            codeList.add(this.encode(interest, user.getGeography()));
+        return codeList;
+    }
+
+    /**
+     * Encode interest as {interestId, game, level, geography} codes
+     */
+    private long[] encode(Interest interest, String geography) {
+        return new long[]{interest.getInterestId(), this.attributeDictionary.encodeGame(interest.getGame()),
+                this.attributeDictionary.encodeLevel(interest.getLevel()),
+                this.attributeDictionary.encodeGeography(geography)};
+    }
+
+    private CandidateBitmapIndex getCandidateBitmapIndex() {
+        if (this.candidateBitmapIndex == null) {
+            synchronized (this) {
+                if (this.candidateBitmapIndex == null)
+                    this.candidateBitmapIndex = this.createCandidateBitmapIndex();
+            }
+        }
+        return this.candidateBitmapIndex;
+    }
+
+    private CandidateBitmapIndex createCandidateBitmapIndex() {
+        return new CandidateBitmapIndex(this.attributeDictionary.getGameList().size(),
+                this.attributeDictionary.getLevelList().size(), this.attributeDictionary.getGeographyList().size());
+    }
+
+    /**
+     * Create a detached read-only copy of user with interests ordered by interestId
+     * @param user
+     * @param interestSet
+     * @return user snapshot
+     */
+    private User createSnapshot(User user, Set<Interest> interestSet) {
+        User snapshot = new User(user.getName(), user.getGender(), user.getNickname(), user.getGeography());
+        snapshot.setUserId(user.getUserId());
+
+        List<Interest> interestList = new ArrayList<>();
+        if (interestSet != null) {
+            for (Interest interest : interestSet) {
+                Interest copy = new Interest(interest.getGame(), interest.getLevel(), interest.getCredit(), snapshot);
+                copy.setInterestId(interest.getInterestId());
+                interestList.add(copy);
+            }
+        }
+        interestList.sort(Comparator.comparing(Interest::getInterestId, Comparator.nullsLast(Comparator.naturalOrder())));
+        snapshot.setInterestSet(Collections.unmodifiableSet(new LinkedHashSet<>(interestList)));
+        return snapshot;
+    }
+
+    /**
+     * Create user snapshots from rows ordered by userId, where rows of a user are consecutive
+     * @param rowList
+     * @return list of user snapshots
+     */
+    private List<User> createSnapshots(List<UserInterestRow> rowList) {
+        List<User> snapshotList = new ArrayList<>();
+        User user = null;
+        Set<Interest> interestSet = new HashSet<>();
+        for (UserInterestRow row : rowList) {
+            if (user == null || !user.getUserId().equals(row.getUserId())) {
+                if (user != null)
+                    snapshotList.add(this.createSnapshot(user, interestSet));
+                user = new User(row.getName(), row.getGender(), row.getNickname(), row.getGeography());
+                user.setUserId(row.getUserId());
+                interestSet = new HashSet<>();
+            }
+            if (row.getInterestId() != null) {
+                Interest interest = new Interest(row.getGame(), row.getLevel(), row.getCredit(), null);
+                interest.setInterestId(row.getInterestId());
+                interestSet.add(interest);
+            }
+        }
+        if (user != null)
+            snapshotList.add(this.createSnapshot(user, interestSet));
+        return snapshotList;
+    }
+
+    static String matchKey(String game, String level, String geography) {
+        return game + '|' + level + '|' + geography;
+    }
+}
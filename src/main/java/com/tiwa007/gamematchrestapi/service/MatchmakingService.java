@@ -0,0 +1,347 @@
+package com.tiwa007.gamematchrestapi.service;
+
+import com.tiwa007.gamematchrestapi.common.config.MatchmakingProperties;
+import com.tiwa007.gamematchrestapi.common.config.MatchmakingProperties.Step;
+import com.tiwa007.gamematchrestapi.common.exception.InvalidRequestException;
+import com.tiwa007.gamematchrestapi.common.exception.ResourceNotFoundException;
+import com.tiwa007.gamematchrestapi.entity.Interest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queue based matchmaking.
+ * Request threads only append tickets to a lock-free queue. A single matcher drains the queue on a fixed tick,
+ * buckets tickets by game, level and geography, the same rule as the match endpoints of UserService,
+ * and groups waiting tickets into matches of matchmaking.match-size players.
+ * With matchmaking.widening enabled, the accepted level distance and geographies of a ticket grow with its waiting
+ * time. A ticket is only re-evaluated on arrival and when it reaches its next widening step, which is found through
+ * a queue ordered by widening time, so a tick never rescans all waiting tickets.
+ * Two tickets are matched only if each one accepts the level and geography of the other.
+ * Clients poll the ticket until it is matched. A ticket still waiting after matchmaking.max-wait-millis expires.
+ */
+@Service
+public class MatchmakingService {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private MatchmakingProperties matchmakingProperties;
+
+    private final AtomicLong ticketSequence = new AtomicLong();
+
+    private final AtomicLong matchSequence = new AtomicLong();
+
+    private final MatchmakingStats matchmakingStats = new MatchmakingStats();
+
+    // tickets enqueued since last tick
+    private final Queue<Ticket> incomingQueue = new ConcurrentLinkedQueue<>();
+
+    // tickets cancelled since last tick
+    private final Queue<Ticket> cancelledQueue = new ConcurrentLinkedQueue<>();
+
+    // ticketId -> ticket, for polling
+    private final Map<Long, Ticket> ticketMap = new ConcurrentHashMap<>();
+
+    // interestId -> waiting ticket, one ticket per interest
+    private final Map<Long, Ticket> waitingTicketMap = new ConcurrentHashMap<>();
+
+    // game|level|geography -> waiting tickets in arrival order, only accessed by matcher
+    private final Map<String, Set<Ticket>> poolMap = new HashMap<>();
+
+    // waiting tickets ordered by time of next widening step, only accessed by matcher
+    private final PriorityQueue<Ticket> wideningQueue =
+            new PriorityQueue<>(Comparator.comparingLong(ticket -> ticket.nextWideningAt));
+
+    // tickets in arrival order until they expire or are found finished, only accessed by matcher
+    private final Deque<Ticket> arrivalQueue = new ArrayDeque<>();
+
+    // finished tickets in finish order, only accessed by matcher
+    private final Deque<Ticket> finishedQueue = new ArrayDeque<>();
+
+    // held while the tickets of a match are checked and matched, so a cancel never sees a partly matched group
+    private final Object matchLock = new Object();
+
+    /**
+     * Enqueue a ticket for user interest
+     * @param userId
+     * @param interestId
+     * @return waiting ticket
+     */
+    public Ticket enqueue(Long userId, Long interestId) {
+        Interest interest = this.userService.getUserMatchInterest(userId, interestId);
+
+        Ticket ticket = new Ticket(this.ticketSequence.incrementAndGet(), userId, interestId, interest.getGame(),
+                interest.getLevel(), interest.getUser().getGeography(), System.currentTimeMillis());
+        if (this.waitingTicketMap.putIfAbsent(interestId, ticket) != null)
+            throw new InvalidRequestException("Interest with interestId: " + interestId + " is already waiting for a match");
+
+        this.ticketMap.put(ticket.getTicketId(), ticket);
+        this.incomingQueue.offer(ticket);
+        return ticket;
+    }
+
+    /**
+     * Get ticket by ticketId
+     * @param ticketId
+     * @return ticket
+     */
+    public Ticket getTicket(Long ticketId) {
+        Ticket ticket = this.ticketMap.get(ticketId);
+        if (ticket == null)
+            throw new ResourceNotFoundException("Ticket cannot be found with id: " + ticketId);
+        return ticket;
+    }
+
+    /**
+     * Cancel waiting ticket
+     * @param ticketId
+     */
+    public void cancel(Long ticketId) {
+        Ticket ticket = this.getTicket(ticketId);
+        boolean cancelled;
+        synchronized (this.matchLock) {
+            cancelled = ticket.cancel(System.currentTimeMillis());
+        }
+        if (!cancelled)
+            throw new InvalidRequestException("Ticket with ticketId: " + ticketId + " is already " + ticket.getStatus());
+        this.waitingTicketMap.remove(ticket.getInterestId(), ticket);
+        this.cancelledQueue.offer(ticket);
+    }
+
+    /**
+     * Get number of waiting tickets and percentiles of time-to-match of recent matches
+     * @return map of statistic name to value
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> statMap = this.matchmakingStats.snapshot();
+        statMap.put("waitingCount", (long) this.waitingTicketMap.size());
+        return statMap;
+    }
+
+    /**
+     * One pass of the matcher: drain new and cancelled tickets, widen search windows that are due,
+     * form matches, expire tickets waiting too long and evict finished tickets
+     */
+    @Scheduled(fixedDelayString = "${matchmaking.tick-millis:100}")
+    public synchronized void tick() {
+        this.tick(System.currentTimeMillis());
+    }
+
+    synchronized void tick(long now) {
+        Ticket ticket;
+        while ((ticket = this.cancelledQueue.poll()) != null) {
+            this.removeFromPool(ticket);
+            this.finishedQueue.addLast(ticket);
+        }
+
+        while ((ticket = this.incomingQueue.poll()) != null) {
+            if (ticket.getStatus() != Ticket.Status.WAITING)
+                continue;
+            this.poolMap.computeIfAbsent(poolKey(ticket.getGame(), ticket.getLevel(), ticket.getGeography()),
+                    key -> new LinkedHashSet<>()).add(ticket);
+            this.arrivalQueue.addLast(ticket);
+            this.scheduleWidening(ticket);
+            this.tryMatch(ticket, now);
+        }
+
+        while (!this.wideningQueue.isEmpty() && this.wideningQueue.peek().nextWideningAt <= now) {
+            ticket = this.wideningQueue.poll();
+            if (ticket.getStatus() != Ticket.Status.WAITING)
+                continue;
+            ticket.wideningStep++;
+            this.scheduleWidening(ticket);
+            this.tryMatch(ticket, now);
+        }
+
+        this.expireWaitingTickets(now);
+        this.evictFinishedTickets(now);
+    }
+
+    /**
+     * Try to form a match around anchor ticket from the waiting tickets it accepts, oldest first
+     * and nearest level and geography first
+     * @param anchor
+     * @param now
+     */
+    private void tryMatch(Ticket anchor, long now) {
+        int matchSize = this.matchmakingProperties.getMatchSize();
+        List<Ticket> group = new ArrayList<>(matchSize);
+        group.add(anchor);
+
+        for (String key : this.searchKeys(anchor)) {
+            Set<Ticket> pool = this.poolMap.get(key);
+            if (pool == null)
+                continue;
+            for (Ticket candidate : pool) {
+                if (candidate != anchor && candidate.getStatus() == Ticket.Status.WAITING
+                        && this.accepts(candidate, anchor) && this.accepts(anchor, candidate))
+                    group.add(candidate);
+                if (group.size() == matchSize)
+                    break;
+            }
+            if (group.size() == matchSize)
+                break;
+        }
+        if (group.size() < matchSize)
+            return;
+        this.createMatch(group, now);
+    }
+
+    /**
+     * Match all tickets of group, or none of them if one was cancelled meanwhile.
+     * The cancelled ticket is dropped on next tick.
+     */
+    private void createMatch(List<Ticket> group, long now) {
+        group.sort(Comparator.comparing(Ticket::getTicketId));
+        List<Long> ticketIds = new ArrayList<>(group.size());
+        List<Long> userIds = new ArrayList<>(group.size());
+        for (Ticket ticket : group) {
+            ticketIds.add(ticket.getTicketId());
+            userIds.add(ticket.getUserId());
+        }
+        Ticket first = group.get(0);
+        Match match = new Match(this.matchSequence.incrementAndGet(), first.getGame(), first.getLevel(),
+                first.getGeography(), Collections.unmodifiableList(ticketIds), Collections.unmodifiableList(userIds), now);
+        synchronized (this.matchLock) {
+            for (Ticket ticket : group) {
+                if (ticket.getStatus() != Ticket.Status.WAITING)
+                    return;
+            }
+            // only cancel changes a waiting ticket outside the matcher, and it waits for this lock
+            for (Ticket ticket : group)
+                ticket.match(match, now);
+        }
+        for (Ticket ticket : group) {
+            this.removeFromPool(ticket);
+            this.waitingTicketMap.remove(ticket.getInterestId(), ticket);
+            this.finishedQueue.addLast(ticket);
+            this.matchmakingStats.record(now - ticket.getCreatedAt());
+        }
+    }
+
+    /**
+     * Whether ticket accepts the level and geography of other ticket within its current search window
+     */
+    private boolean accepts(Ticket ticket, Ticket other) {
+        Step step = this.currentStep(ticket);
+        if (step == null)
+            return ticket.getLevel().equals(other.getLevel()) && ticket.getGeography().equals(other.getGeography());
+
+        List<String> levelList = this.userService.getLevelList();
+        int levelDistance = Math.abs(levelList.indexOf(ticket.getLevel()) - levelList.indexOf(other.getLevel()));
+        if (!ticket.getLevel().equals(other.getLevel()) && levelDistance > step.getLevelDistance())
+            return false;
+        return ticket.getGeography().equals(other.getGeography())
+                || this.neighbors(ticket, step).contains(other.getGeography());
+    }
+
+    /**
+     * Get pool keys covered by current search window of ticket, own pool first
+     */
+    private List<String> searchKeys(Ticket ticket) {
+        Step step = this.currentStep(ticket);
+        if (step == null)
+            return Collections.singletonList(poolKey(ticket.getGame(), ticket.getLevel(), ticket.getGeography()));
+
+        List<String> geographyList = new ArrayList<>();
+        geographyList.add(ticket.getGeography());
+        geographyList.addAll(this.neighbors(ticket, step));
+
+        List<String> levelList = this.userService.getLevelList();
+        int levelIndex = levelList.indexOf(ticket.getLevel());
+        List<String> searchLevelList = new ArrayList<>();
+        searchLevelList.add(ticket.getLevel());
+        for (int distance = 1; levelIndex >= 0 && distance <= step.getLevelDistance(); distance++) {
+            if (levelIndex - distance >= 0)
+                searchLevelList.add(levelList.get(levelIndex - distance));
+            if (levelIndex + distance < levelList.size())
+                searchLevelList.add(levelList.get(levelIndex + distance));
+        }
+
+        List<String> keyList = new ArrayList<>();
+        for (String level : searchLevelList)
+            for (String geography : geographyList)
+                keyList.add(poolKey(ticket.getGame(), level, geography));
+        return keyList;
+    }
+
+    private List<String> neighbors(Ticket ticket, Step step) {
+        List<String> neighborList = this.matchmakingProperties.getWidening().getRegionNeighbors()
+                .getOrDefault(ticket.getGeography(), Collections.emptyList());
+        return neighborList.subList(0, Math.min(step.getRegionCount(), neighborList.size()));
+    }
+
+    /**
+     * Get widening step currently applied to ticket
+     * @return step or null if ticket only accepts its own level and geography
+     */
+    private Step currentStep(Ticket ticket) {
+        if (ticket.wideningStep == 0 || !this.matchmakingProperties.getWidening().isEnabled())
+            return null;
+        return this.matchmakingProperties.getWidening().getSteps().get(ticket.wideningStep - 1);
+    }
+
+    /**
+     * Queue ticket for its next widening step if there is one
+     */
+    private void scheduleWidening(Ticket ticket) {
+        MatchmakingProperties.Widening widening = this.matchmakingProperties.getWidening();
+        if (!widening.isEnabled() || ticket.wideningStep >= widening.getSteps().size())
+            return;
+        ticket.nextWideningAt = ticket.getCreatedAt() + widening.getSteps().get(ticket.wideningStep).getAfterMillis();
+        this.wideningQueue.offer(ticket);
+    }
+
+    private void removeFromPool(Ticket ticket) {
+        String key = poolKey(ticket.getGame(), ticket.getLevel(), ticket.getGeography());
+        Set<Ticket> pool = this.poolMap.get(key);
+        if (pool == null)
+            return;
+        pool.remove(ticket);
+        if (pool.isEmpty())
+            this.poolMap.remove(key);
+    }
+
+    /**
+     * Expire tickets still waiting after matchmaking.max-wait-millis and remove them from the pools
+     * @param now
+     */
+    private void expireWaitingTickets(long now) {
+        long maxWait = this.matchmakingProperties.getMaxWaitMillis();
+        while (!this.arrivalQueue.isEmpty() && now - this.arrivalQueue.peekFirst().getCreatedAt() >= maxWait) {
+            Ticket ticket = this.arrivalQueue.pollFirst();
+            boolean expired;
+            synchronized (this.matchLock) {
+                expired = ticket.expire(now);
+            }
+            // matched or cancelled tickets are already out of the pools
+            if (!expired)
+                continue;
+            this.removeFromPool(ticket);
+            this.waitingTicketMap.remove(ticket.getInterestId(), ticket);
+            this.finishedQueue.addLast(ticket);
+        }
+    }
+
+    /**
+     * Forget matched, cancelled or expired tickets once they are older than matchmaking.ticket-ttl-millis
+     * @param now
+     */
+    private void evictFinishedTickets(long now) {
+        long ttl = this.matchmakingProperties.getTicketTtlMillis();
+        while (!this.finishedQueue.isEmpty() && now - this.finishedQueue.peekFirst().getFinishedAt() >= ttl) {
+            this.ticketMap.remove(this.finishedQueue.pollFirst().getTicketId());
+        }
+    }
+
+    private static String poolKey(String game, String level, String geography) {
+        return MatchIndex.matchKey(game, level, geography);
+    }
+}
@@ -0,0 +1,51 @@
+package com.tiwa007.gamematchrestapi.service;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Time-to-match of the most recent matched tickets, kept in a fixed size ring buffer
+ */
+public class MatchmakingStats {
+
+    private static final int SAMPLE_SIZE = 10000;
+
+    private final long[] samples = new long[SAMPLE_SIZE];
+
+    private long matchedCount;
+
+    public synchronized void record(long timeToMatchMillis) {
+        this.samples[(int) (this.matchedCount % SAMPLE_SIZE)] = timeToMatchMillis;
+        this.matchedCount++;
+    }
+
+    /**
+     * Get number of matched tickets and p50, p90, p99 and max of time-to-match in milliseconds
+     * @return map of statistic name to value
+     */
+    public Map<String, Long> snapshot() {
+        long[] sorted;
+        long count;
+        synchronized (this) {
+            count = this.matchedCount;
+            sorted = Arrays.copyOf(this.samples, (int) Math.min(count, SAMPLE_SIZE));
+        }
+        Arrays.sort(sorted);
+
+        Map<String, Long> statMap = new LinkedHashMap<>();
+        statMap.put("matchedCount", count);
+        statMap.put("p50Millis", percentile(sorted, 50));
+        statMap.put("p90Millis", percentile(sorted, 90));
+        statMap.put("p99Millis", percentile(sorted, 99));
+        statMap.put("maxMillis", sorted.length == 0 ? 0L : sorted[sorted.length - 1]);
+        return statMap;
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0)
+            return 0L;
+        int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(index, 0)];
+    }
+}
@@ -0,0 +1,136 @@
+package com.tiwa007.gamematchrestapi.service;
+
+import com.tiwa007.gamematchrestapi.common.config.ShardProperties;
+import com.tiwa007.gamematchrestapi.common.config.ShardRoutingDataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Runs persistence work on the shard of a geography when shard.enabled is true. Work on a shard runs in its own
+ * transaction on the connection of the shard, entities it returns are detached. Work on all shards runs in
+ * parallel, one transaction per shard. Without sharding the work runs as it is, in the caller's transaction.
+ */
+@Component
+public class ShardTemplate {
+
+    @Autowired(required = false)
+    private ShardProperties shardProperties;
+
+    @Autowired(required = false)
+    private PlatformTransactionManager transactionManager;
+
+    private volatile ExecutorService scatterExecutor;
+
+    public boolean isEnabled() {
+        return this.shardProperties != null && this.shardProperties.isEnabled();
+    }
+
+    /**
+     * Get geographies of shards
+     * @return geographies of shards, or a single null geography without sharding
+     */
+    public List<String> getShardGeographyList() {
+        if (!this.isEnabled())
+            return Collections.singletonList(null);
+        return new ArrayList<>(this.shardProperties.getShards().keySet());
+    }
+
+    /**
+     * Run work in a transaction on the shard of geography
+     * @param geography geography of shard, ignored without sharding
+     * @param action
+     * @return result of action
+     */
+    public <T> T execute(String geography, Supplier<T> action) {
+        return this.execute(geography, action, false);
+    }
+
+    /**
+     * Run work in a read-only transaction on the shard of geography
+     * @param geography geography of shard, ignored without sharding
+     * @param action
+     * @return result of action
+     */
+    public <T> T executeReadOnly(String geography, Supplier<T> action) {
+        return this.execute(geography, action, true);
+    }
+
+    /**
+     * Run read-only work on every shard in parallel and gather the results
+     * @param action
+     * @return results in order of getShardGeographyList
+     */
+    public <T> List<T> executeOnEach(Supplier<T> action) {
+        if (!this.isEnabled())
+            return Collections.singletonList(action.get());
+        List<Future<T>> futureList = new ArrayList<>();
+        for (String geography : this.getShardGeographyList())
+            futureList.add(this.getScatterExecutor().submit(() -> this.executeReadOnly(geography, action)));
+        List<T> resultList = new ArrayList<>(futureList.size());
+        try {
+            for (Future<T> future : futureList)
+                resultList.add(future.get());
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for shards", exception);
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof RuntimeException)
+                throw (RuntimeException) exception.getCause();
+            throw new IllegalStateException(exception.getCause());
+        } finally {
+            for (Future<T> future : futureList)
+                future.cancel(true);
+        }
+        return resultList;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (this.scatterExecutor != null)
+            this.scatterExecutor.shutdownNow();
+    }
+
+//    Helper methods
+
+    private <T> T execute(String geography, Supplier<T> action, boolean readOnly) {
+        if (!this.isEnabled())
+            return action.get();
+        if (geography == null || !this.shardProperties.getShards().containsKey(geography))
+            throw new IllegalStateException("No shard for geography: " + geography);
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(this.transactionManager);
+        // a transaction of another shard or of the global database is suspended
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transactionTemplate.setReadOnly(readOnly);
+        String previousGeography = ShardRoutingDataSource.getCurrentShard();
+        ShardRoutingDataSource.setCurrentShard(geography);
+        try {
+            return transactionTemplate.execute(status -> action.get());
+        } finally {
+            ShardRoutingDataSource.setCurrentShard(previousGeography);
+        }
+    }
+
+    private ExecutorService getScatterExecutor() {
+        if (this.scatterExecutor == null) {
+            synchronized (this) {
+                if (this.scatterExecutor == null)
+                    this.scatterExecutor = Executors.newFixedThreadPool(this.shardProperties.getScatterThreads());
+            }
+        }
+        return this.scatterExecutor;
+    }
+}
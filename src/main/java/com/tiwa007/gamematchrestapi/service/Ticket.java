@@ -0,0 +1,145 @@
+package com.tiwa007.gamematchrestapi.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Matchmaking ticket of a user interest.
+ * Status, match and finish time are published together by one compare-and-set, so a ticket is never seen MATCHED
+ * without its match. Status only moves away from WAITING once, so cancel, expiry and matcher never both win.
+ */
+// status is read before match, so a MATCHED ticket is always written with its match
+@JsonPropertyOrder({"status", "match"})
+public class Ticket {
+
+    public enum Status {
+        WAITING, MATCHED, CANCELLED, EXPIRED
+    }
+
+    private final Long ticketId;
+
+    private final Long userId;
+
+    private final Long interestId;
+
+    private final String game;
+
+    private final String level;
+
+    private final String geography;
+
+    private final long createdAt;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.WAITING);
+
+    // number of widening steps applied, only accessed by matcher
+    int wideningStep;
+
+    // time of next widening step, only accessed by matcher
+    long nextWideningAt;
+
+    public Ticket(Long ticketId, Long userId, Long interestId, String game, String level, String geography,
+                  long createdAt) {
+        this.ticketId = ticketId;
+        this.userId = userId;
+        this.interestId = interestId;
+        this.game = game;
+        this.level = level;
+        this.geography = geography;
+        this.createdAt = createdAt;
+    }
+
+    public Long getTicketId() {
+        return ticketId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public Long getInterestId() {
+        return interestId;
+    }
+
+    public String getGame() {
+        return game;
+    }
+
+    public String getLevel() {
+        return level;
+    }
+
+    public String getGeography() {
+        return geography;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public Status getStatus() {
+        return state.get().status;
+    }
+
+    // null unless status is MATCHED
+    public Match getMatch() {
+        return state.get().match;
+    }
+
+    @JsonIgnore
+    public long getFinishedAt() {
+        return state.get().finishedAt;
+    }
+
+    /**
+     * Move ticket from WAITING to MATCHED with its match
+     * @return false if ticket is no longer waiting
+     */
+    boolean match(Match match, long now) {
+        return this.finish(new State(Status.MATCHED, match, now));
+    }
+
+    /**
+     * Move ticket from WAITING to CANCELLED
+     * @return false if ticket is no longer waiting
+     */
+    boolean cancel(long now) {
+        return this.finish(new State(Status.CANCELLED, null, now));
+    }
+
+    /**
+     * Move ticket from WAITING to EXPIRED
+     * @return false if ticket is no longer waiting
+     */
+    boolean expire(long now) {
+        return this.finish(new State(Status.EXPIRED, null, now));
+    }
+
+//    Helper methods
+
+    private boolean finish(State finishedState) {
+        return this.state.compareAndSet(State.WAITING, finishedState);
+    }
+
+    /**
+     * Status with the match and finish time it was reached with
+     */
+    private static final class State {
+
+        static final State WAITING = new State(Status.WAITING, null, 0L);
+
+        final Status status;
+
+        final Match match;
+
+        final long finishedAt;
+
+        State(Status status, Match match, long finishedAt) {
+            this.status = status;
+            this.match = match;
+            this.finishedAt = finishedAt;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.tiwa007.gamematchrestapi.service;
+
+import com.tiwa007.gamematchrestapi.entity.User;
+
+import java.util.List;
+
+/**
+ * Users found by a list of userIds in order of the list, with the userIds that were not found
+ */
+public class UserBatch {
+
+    private List<User> users;
+
+    private List<Long> missingIds;
+
+    public UserBatch(List<User> users, List<Long> missingIds) {
+        this.users = users;
+        this.missingIds = missingIds;
+    }
+
+    public List<User> getUsers() {
+        return users;
+    }
+
+    public void setUsers(List<User> users) {
+        this.users = users;
+    }
+
+    public List<Long> getMissingIds() {
+        return missingIds;
+    }
+
+    public void setMissingIds(List<Long> missingIds) {
+        this.missingIds = missingIds;
+    }
+}
@@ -0,0 +1,150 @@
+package com.tiwa007.gamematchrestapi.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Export of all users with their interests as NDJSON, one user per line in the same shape as GET /api/user/{userId}.
+ * Rows are read from a forward-only, read-only JDBC cursor ordered by userId and written to the output stream
+ * as they arrive, so memory use does not depend on the number of users.
+ * With sharding, shards are exported one after another, users are ordered by userId within each shard.
+ */
+@Service
+public class UserExportService {
+
+    private static final String EXPORT_SQL = "SELECT u.user_id, u.name, u.gender, u.nickname, u.geography, " +
+            "i.interest_id, i.game, i.level, i.credit " +
+            "FROM users u LEFT JOIN interests i ON i.user_id = u.user_id " +
+            "WHERE u.deleted = FALSE ORDER BY u.user_id, i.interest_id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AttributeDictionary attributeDictionary;
+
+    @Autowired
+    private ShardTemplate shardTemplate;
+
+    // rows fetched from database per round trip
+    @Value("${export.fetch-size:1000}")
+    private int fetchSize;
+
+    /**
+     * Write all users with their interests to output stream as NDJSON
+     * @param outputStream
+     * @throws IOException
+     */
+    @Transactional(readOnly = true)
+    public void exportUsers(OutputStream outputStream) throws IOException {
+        JsonGenerator generator = this.objectMapper.getFactory().createGenerator(outputStream);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // lines are separated by the writer, not by the generator
+        generator.setRootValueSeparator(null);
+        UserRowWriter userRowWriter = new UserRowWriter(generator);
+        try {
+            for (String geography : this.shardTemplate.getShardGeographyList()) {
+                this.shardTemplate.executeReadOnly(geography, () -> {
+                    this.jdbcTemplate.query(connection -> {
+                        PreparedStatement statement = connection.prepareStatement(EXPORT_SQL,
+                                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                        statement.setFetchSize(this.fetchSize);
+                        return statement;
+                    }, userRowWriter);
+                    return null;
+                });
+            }
+            userRowWriter.finish();
+        } catch (UncheckedIOException exception) {
+            throw exception.getCause();
+        }
+        generator.close();
+    }
+
+    /**
+     * Write joined rows as one JSON line per user. Rows of a user are consecutive because they are ordered by userId.
+     */
+    private class UserRowWriter implements RowCallbackHandler {
+
+        private final JsonGenerator generator;
+
+        // userId of the user whose line is open, or null
+        private Long currentUserId;
+
+        private UserRowWriter(JsonGenerator generator) {
+            this.generator = generator;
+        }
+
+        @Override
+        public void processRow(ResultSet resultSet) throws SQLException {
+            try {
+                long userId = resultSet.getLong("user_id");
+                if (this.currentUserId == null || this.currentUserId != userId) {
+                    this.finish();
+                    this.startUser(userId, resultSet);
+                }
+                long interestId = resultSet.getLong("interest_id");
+                if (!resultSet.wasNull())
+                    this.writeInterest(interestId, resultSet);
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+
+        private void startUser(long userId, ResultSet resultSet) throws SQLException, IOException {
+            this.currentUserId = userId;
+            this.generator.writeStartObject();
+            this.generator.writeNumberField("userId", userId);
+            this.generator.writeStringField("name", resultSet.getString("name"));
+            this.generator.writeStringField("gender", resultSet.getString("gender"));
+            this.generator.writeStringField("nickname", resultSet.getString("nickname"));
+            short geography = resultSet.getShort("geography");
+            this.generator.writeStringField("geography",
+                    resultSet.wasNull() ? null : attributeDictionary.decodeGeography(geography));
+            this.generator.writeArrayFieldStart("interestSet");
+        }
+
+        private void writeInterest(long interestId, ResultSet resultSet) throws SQLException, IOException {
+            this.generator.writeStartObject();
+            this.generator.writeNumberField("interestId", interestId);
+            short game = resultSet.getShort("game");
+            this.generator.writeStringField("game", resultSet.wasNull() ? null : attributeDictionary.decodeGame(game));
+            short level = resultSet.getShort("level");
+            this.generator.writeStringField("level", resultSet.wasNull() ? null : attributeDictionary.decodeLevel(level));
+            int credit = resultSet.getInt("credit");
+            if (resultSet.wasNull())
+                this.generator.writeNullField("credit");
+            else
+                this.generator.writeNumberField("credit", credit);
+            this.generator.writeEndObject();
+        }
+
+        /**
+         * Close the open user line if there is one
+         */
+        private void finish() throws IOException {
+            if (this.currentUserId == null)
+                return;
+            this.generator.writeEndArray();
+            this.generator.writeEndObject();
+            this.generator.writeRaw('\n');
+            this.currentUserId = null;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.tiwa007.gamematchrestapi.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tiwa007.gamematchrestapi.common.exception.InvalidRequestException;
+import com.tiwa007.gamematchrestapi.controller.InterestRequest;
+import com.tiwa007.gamematchrestapi.controller.UserRequest;
+import com.tiwa007.gamematchrestapi.entity.Interest;
+import com.tiwa007.gamematchrestapi.entity.User;
+import com.tiwa007.gamematchrestapi.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Bulk import of users with their interests from a streamed NDJSON or CSV body.
+ * Records are read one line at a time, validated like POST /api/user and inserted in chunks of
+ * import.chunk-size users, one transaction per chunk. Ids come from pooled sequences and inserts are sent as
+ * Hibernate JDBC batches, so a chunk costs a few round trips instead of 2+N per user.
+ * Invalid records are skipped and reported with their line number.
+ * With sharding, users of a chunk are inserted in one transaction per shard of their geography.
+ */
+@Service
+public class UserImportService {
+
+    public static final String FORMAT_NDJSON = "ndjson";
+
+    public static final String FORMAT_CSV = "csv";
+
+    // header of CSV body, interests are "game:level:credit" separated by ';'
+    private static final String CSV_HEADER = "name,gender,nickname,geography,interests";
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MatchIndex matchIndex;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ShardTemplate shardTemplate;
+
+    @Value("${import.chunk-size:500}")
+    private int chunkSize;
+
+    /**
+     * Import users from NDJSON or CSV input
+     * @param inputStream UTF-8 encoded body
+     * @param format ndjson or csv
+     * @return number of imported and failed records with errors of failed records
+     * @throws IOException
+     * @throws InvalidRequestException
+     * if format is unknown or CSV header is missing
+     */
+    public ImportResult importUsers(InputStream inputStream, String format) throws IOException {
+        if (!FORMAT_NDJSON.equals(format) && !FORMAT_CSV.equals(format))
+            throw new InvalidRequestException("Import format should be one of [ndjson, csv], but was: " + format);
+
+        ImportResult importResult = new ImportResult();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        List<User> chunk = new ArrayList<>(this.chunkSize);
+        List<Integer> chunkLineList = new ArrayList<>(this.chunkSize);
+
+        int lineNumber = 0;
+        String line;
+        if (FORMAT_CSV.equals(format)) {
+            line = reader.readLine();
+            lineNumber++;
+            if (line == null || !CSV_HEADER.equals(line.trim()))
+                throw new InvalidRequestException("CSV body should start with header: " + CSV_HEADER);
+        }
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty())
+                continue;
+            try {
+                UserRequest userRequest = FORMAT_CSV.equals(format) ? parseCsv(line) : this.parseJson(line);
+                chunk.add(this.createUser(userRequest));
+                chunkLineList.add(lineNumber);
+            } catch (InvalidRequestException exception) {
+                importResult.addError(lineNumber, exception.getMessage());
+            }
+            if (chunk.size() == this.chunkSize)
+                this.saveChunk(chunk, chunkLineList, importResult);
+        }
+        this.saveChunk(chunk, chunkLineList, importResult);
+        return importResult;
+    }
+
+//    Helper methods
+
+    /**
+     * Insert users of chunk in one transaction per shard and index them once committed. Chunk is cleared afterwards.
+     */
+    private void saveChunk(List<User> chunk, List<Integer> chunkLineList, ImportResult importResult) {
+        if (chunk.isEmpty())
+            return;
+        Map<String, List<Integer>> shardIndexListMap = new LinkedHashMap<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            String geography = this.shardTemplate.isEnabled() ? chunk.get(i).getGeography() : null;
+            shardIndexListMap.computeIfAbsent(geography, key -> new ArrayList<>()).add(i);
+        }
+        for (Map.Entry<String, List<Integer>> entry : shardIndexListMap.entrySet()) {
+            List<User> shardChunk = new ArrayList<>(entry.getValue().size());
+            for (Integer index : entry.getValue())
+                shardChunk.add(chunk.get(index));
+            try {
+                List<User> savedUserList = this.shardTemplate.execute(entry.getKey(),
+                        () -> this.transactionTemplate.execute(status -> this.userRepository.saveAll(shardChunk)));
+                for (User user : savedUserList)
+                    this.matchIndex.indexUser(user);
+                importResult.addImported(savedUserList.size());
+            } catch (RuntimeException exception) {
+                for (Integer index : entry.getValue())
+                    importResult.addError(chunkLineList.get(index), "User cannot be saved: " + exception.getMessage());
+            }
+        }
+        chunk.clear();
+        chunkLineList.clear();
+    }
+
+    private UserRequest parseJson(String line) {
+        try {
+            return this.objectMapper.readValue(line, UserRequest.class);
+        } catch (JsonProcessingException exception) {
+            throw new InvalidRequestException("Invalid JSON: " + exception.getOriginalMessage());
+        }
+    }
+
+    private static UserRequest parseCsv(String line) {
+        String[] columns = line.split(",", -1);
+        if (columns.length != 5)
+            throw new InvalidRequestException("CSV record should have 5 columns, but has: " + columns.length);
+
+        Set<InterestRequest> interestSet = new HashSet<>();
+        if (!columns[4].trim().isEmpty()) {
+            for (String interestColumn : columns[4].split(";")) {
+                String[] interestFields = interestColumn.split(":", -1);
+                if (interestFields.length < 2 || interestFields.length > 3)
+                    throw new InvalidRequestException("CSV interest should be game:level:credit, but was: " + interestColumn);
+                Integer credit = null;
+                if (interestFields.length == 3 && !interestFields[2].trim().isEmpty()) {
+                    try {
+                        credit = Integer.valueOf(interestFields[2].trim());
+                    } catch (NumberFormatException exception) {
+                        throw new InvalidRequestException("Invalid credit: " + interestFields[2]);
+                    }
+                }
+                interestSet.add(new InterestRequest(interestFields[0].trim(), interestFields[1].trim(), credit));
+            }
+        }
+        return new UserRequest(columns[0].trim(), columns[1].trim(), columns[2].trim(), columns[3].trim(), interestSet);
+    }
+
+    /**
+     * Validate user request like POST /api/user and create user with interests linked to the user
+     * @throws InvalidRequestException
+     * if user request is invalid or has different interests with same game
+     */
+    private User createUser(UserRequest userRequest) {
+        Set<ConstraintViolation<UserRequest>> violationSet = this.validator.validate(userRequest);
+        if (!violationSet.isEmpty()) {
+            List<String> messageList = new ArrayList<>();
+            for (ConstraintViolation<UserRequest> violation : violationSet)
+                messageList.add(violation.getPropertyPath() + ": " + violation.getMessage());
+            Collections.sort(messageList);
+            throw new InvalidRequestException(String.join("; ", messageList));
+        }
+
+        User user = new User(userRequest.getName(), userRequest.getGender(), userRequest.getNickname(),
+                userRequest.getGeography());
+        Set<String> gameSet = new HashSet<>();
+        Set<Interest> interestSet = new HashSet<>();
+        for (InterestRequest interestRequest : userRequest.getInterestSet()) {
+            if (!gameSet.add(interestRequest.getGame()))
+                throw new InvalidRequestException("User has different interests with same game");
+            Interest interest = new Interest(interestRequest.getGame(), interestRequest.getLevel(),
+                    interestRequest.getCredit(), user);
+            interest.setGeography(user.getGeography());
+            interestSet.add(interest);
+        }
+        user.setInterestSet(interestSet);
+        return user;
+    }
+}
@@ -0,0 +1,108 @@
+package com.tiwa007.gamematchrestapi.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Removal of users soft deleted by UserService, every user.purge.delay-millis. Interests of deleted users are
+ * removed first and a deleted user once it has no interests left. Each batch of at most user.purge.batch-size rows
+ * is deleted in its own transaction, with a pause of user.purge.pause-millis between batches, so a deletion wave
+ * neither holds locks for long nor takes the database from requests.
+ * With sharding, every shard is purged on its own, users and their interests are in the same shard.
+ */
+@Component
+public class UserPurger {
+
+    private static final String FIND_INTERESTS_SQL = "SELECT i.interest_id FROM users u " +
+            "JOIN interests i ON i.user_id = u.user_id WHERE u.deleted = TRUE LIMIT ?";
+
+    // an interest created while its user was purged keeps the user until the next batch of interests
+    private static final String FIND_USERS_SQL = "SELECT u.user_id FROM users u WHERE u.deleted = TRUE " +
+            "AND NOT EXISTS (SELECT i.interest_id FROM interests i WHERE i.user_id = u.user_id) LIMIT ?";
+
+    private static final String DELETE_INTEREST_SQL = "DELETE FROM interests WHERE interest_id = ?";
+
+    private static final String DELETE_USER_SQL = "DELETE FROM users WHERE user_id = ? AND deleted = TRUE";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Autowired
+    private ShardTemplate shardTemplate;
+
+    // rows deleted per transaction
+    @Value("${user.purge.batch-size:500}")
+    private int batchSize;
+
+    // pause between batches
+    @Value("${user.purge.pause-millis:50}")
+    private long pauseMillis;
+
+    /**
+     * Remove deleted users with their interests in batches
+     * @return number of removed users
+     */
+    @Scheduled(fixedDelayString = "${user.purge.delay-millis:60000}",
+            initialDelayString = "${user.purge.delay-millis:60000}")
+    public int purgeDeletedUsers() {
+        int purgedCount = 0;
+        for (String geography : this.shardTemplate.getShardGeographyList()) {
+            this.purgeInBatches(geography, FIND_INTERESTS_SQL, DELETE_INTEREST_SQL, true);
+            purgedCount += this.purgeInBatches(geography, FIND_USERS_SQL, DELETE_USER_SQL, false);
+        }
+        return purgedCount;
+    }
+
+//    Helper methods
+
+    /**
+     * Delete rows found by findSql batch by batch until a batch is not full
+     * @return number of deleted rows
+     */
+    private int purgeInBatches(String geography, String findSql, String deleteSql, boolean interests) {
+        int deletedCount = 0;
+        while (true) {
+            List<Long> idList = this.shardTemplate.execute(geography, () ->
+                    this.transactionTemplate.execute(status -> {
+                        List<Long> batchIdList = this.jdbcTemplate.queryForList(findSql, Long.class, this.batchSize);
+                        if (!batchIdList.isEmpty())
+                            this.jdbcTemplate.batchUpdate(deleteSql, batchIdList.stream()
+                                    .map(id -> new Object[]{id}).collect(Collectors.toList()));
+                        return batchIdList;
+                    }));
+//          rows were deleted without Hibernate, so cached interests are stale
+            if (interests && !idList.isEmpty())
+                this.cacheService.evictInterests(idList);
+            deletedCount += idList.size();
+            if (idList.size() < this.batchSize || !this.pause())
+                return deletedCount;
+        }
+    }
+
+    /**
+     * Pause between batches
+     * @return false if interrupted
+     */
+    private boolean pause() {
+        try {
+            Thread.sleep(this.pauseMillis);
+            return true;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
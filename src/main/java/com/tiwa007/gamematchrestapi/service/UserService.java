@@ -3,16 +3,20 @@ package com.tiwa007.gamematchrestapi.service;
 import com.tiwa007.gamematchrestapi.entity.Interest;
 import com.tiwa007.gamematchrestapi.entity.User;
 import com.tiwa007.gamematchrestapi.common.exception.InvalidRequestException;
+import com.tiwa007.gamematchrestapi.common.exception.PreconditionFailedException;
 import com.tiwa007.gamematchrestapi.common.exception.ResourceNotFoundException;
 import com.tiwa007.gamematchrestapi.repository.InterestRepository;
 import com.tiwa007.gamematchrestapi.repository.UserRepository;
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Supplier;
 
 @Service
 public class UserService {
@@ -23,23 +27,157 @@ public class UserService {
     @Autowired
     private InterestRepository interestRepository;
 
-    private final List<String> GAME_LIST = Arrays.asList("fortnite", "call of duty", "dota", "valhalla", "among us");
-    private final List<String> LEVEL_LIST = Arrays.asList("noob", "pro", "invincible");
-    private final List<String> GEO_LIST = Arrays.asList("Europe","Asia", "USA");
+    @Autowired
+    private MatchIndex matchIndex;
 
+    @Autowired
+    private AttributeDictionary attributeDictionary;
 
-    // get all users
-    public List<User> getAllUsers(){
-        List<User> userList = userRepository.findAll();
-        return userList;
+    @Autowired
+    private CreditWriteBuffer creditWriteBuffer;
+
+    @Autowired
+    private ShardTemplate shardTemplate;
+
+    private static final int MAX_RANK_RANGE = 100;
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private static final String CURSOR_PREFIX = "user:";
+
+    private static final int MAX_BATCH_IDS = 1000;
+
+    // userIds per IN query of getUsersByIds
+    private static final int IN_QUERY_SIZE = 100;
+
+
+    /**
+     * Get levels ordered from lowest to highest
+     * @return list of levels
+     */
+    public List<String> getLevelList() {
+        return this.attributeDictionary.getLevelList();
+    }
+
+    /**
+     * Get a page of users ordered by userId. Pages are found by keyset on userId, so every page costs the same.
+     * With sharding, every shard finds its own page in parallel, or only the shard of geography if given,
+     * and the pages are merged by userId.
+     * @param cursor nextCursor of previous page or null for first page
+     * @param size number of users in page
+     * @param geography geography of users or null for any geography
+     * @param game game of interests of users or null for any game
+     * @return page of users
+     * @throws InvalidRequestException
+     * if cursor, size, geography or game is invalid
+     */
+    @Transactional(readOnly = true)
+    public UserPage getUsers(String cursor, int size, String geography, String game) {
+        if (size < 1 || size > MAX_PAGE_SIZE)
+            throw new InvalidRequestException("Page size should be between 1 and " + MAX_PAGE_SIZE + ", but was: " + size);
+        this.checkGameAndLevelAndGeography(game, null, geography);
+        Long afterUserId = cursor == null ? 0L : decodeCursor(cursor);
+
+        Supplier<UserPage> shardPageSupplier = () -> this.findUserPage(afterUserId, size, geography, game);
+        List<UserPage> shardPageList = geography != null && this.shardTemplate.isEnabled()
+                ? Collections.singletonList(this.shardTemplate.executeReadOnly(geography, shardPageSupplier))
+                : this.shardTemplate.executeOnEach(shardPageSupplier);
+
+        List<User> userList = new ArrayList<>();
+        boolean hasNext = false;
+        for (UserPage shardPage : shardPageList) {
+            userList.addAll(shardPage.getUsers());
+            hasNext |= shardPage.getNextCursor() != null;
+        }
+        if (shardPageList.size() > 1)
+            userList.sort(Comparator.comparing(User::getUserId));
+        if (userList.size() > size) {
+            hasNext = true;
+            userList = new ArrayList<>(userList.subList(0, size));
+        }
+        if (userList.isEmpty())
+            return new UserPage(userList, null);
+
+        if (this.creditWriteBuffer.isEnabled())
+            userList.replaceAll(this.creditWriteBuffer::withPendingCredits);
+        String nextCursor = hasNext ? encodeCursor(userList.get(userList.size() - 1).getUserId()) : null;
+        return new UserPage(userList, nextCursor);
+    }
+
+    /**
+     * Get users with their interests by a list of userIds. Users are fetched with their interests by IN queries
+     * of at most IN_QUERY_SIZE userIds, so a batch costs a bounded number of queries instead of one per user.
+     * With sharding, userIds are grouped by the shard of their geography in the match index and userIds
+     * unknown to the index are missing.
+     * @param userIdList
+     * @return users in order of userIdList without duplicates, with userIds that do not exist
+     * @throws InvalidRequestException
+     * if userIdList is empty, too long or contains null
+     */
+    @Transactional(readOnly = true)
+    public UserBatch getUsersByIds(List<Long> userIdList) {
+        if (userIdList == null || userIdList.isEmpty() || userIdList.size() > MAX_BATCH_IDS)
+            throw new InvalidRequestException("Ids should have 1 to " + MAX_BATCH_IDS + " entries");
+        if (userIdList.contains(null))
+            throw new InvalidRequestException("Ids cannot contain null");
+        Set<Long> userIdSet = new LinkedHashSet<>(userIdList);
+
+        Map<String, List<Long>> shardUserIdMap = new LinkedHashMap<>();
+        for (Long userId : userIdSet) {
+            User indexedUser = this.shardTemplate.isEnabled() ? this.matchIndex.getUser(userId) : null;
+            if (this.shardTemplate.isEnabled() && indexedUser == null)
+                continue;
+            String geography = indexedUser == null ? null : indexedUser.getGeography();
+            shardUserIdMap.computeIfAbsent(geography, key -> new ArrayList<>()).add(userId);
+        }
+
+        Map<Long, User> userMap = new HashMap<>();
+        for (Map.Entry<String, List<Long>> entry : shardUserIdMap.entrySet()) {
+            List<Long> shardUserIdList = entry.getValue();
+            this.shardTemplate.executeReadOnly(entry.getKey(), () -> {
+                for (int from = 0; from < shardUserIdList.size(); from += IN_QUERY_SIZE) {
+                    List<Long> chunk = shardUserIdList.subList(from,
+                            Math.min(from + IN_QUERY_SIZE, shardUserIdList.size()));
+                    for (User user : this.userRepository.findWithInterestsByUserIdIn(chunk))
+                        userMap.put(user.getUserId(), user);
+                }
+                return null;
+            });
+        }
+
+        List<User> userList = new ArrayList<>(userMap.size());
+        List<Long> missingIdList = new ArrayList<>();
+        for (Long userId : userIdSet) {
+            User user = userMap.get(userId);
+            if (user == null)
+                missingIdList.add(userId);
+            else
+                userList.add(this.creditWriteBuffer.isEnabled() ? this.creditWriteBuffer.withPendingCredits(user) : user);
+        }
+        return new UserBatch(userList, missingIdList);
     }
 
     // get user by id
+    @Transactional(readOnly = true)
     public User getUserById(Long userId){
-        return this.getUserFromUserId(userId);
+        User user = this.shardTemplate.executeReadOnly(this.getShardGeography(userId), () -> {
+            User shardUser = this.getUserFromUserId(userId);
+            Hibernate.initialize(shardUser.getInterestSet());
+            return shardUser;
+        });
+        if (this.creditWriteBuffer.isEnabled())
+            return this.creditWriteBuffer.withPendingCredits(user);
+        return user;
     }
 
-    // create user
+    /**
+     * Create user with interests in one cascaded persist. Interests are linked to the user before saving,
+     * so user and interests are inserted in JDBC batches and the saved user is returned without reading it back.
+     * @param user
+     * @return created user
+     * @throws InvalidRequestException
+     * if user has different interests with same game
+     */
     public User createUser(User user) {
 
 //        check whether game more than one
@@ -50,56 +188,80 @@ public class UserService {
             gameSet.add(interest.getGame());
         }
 
-//      post user
-        User registeredUser = userRepository.save(user);
-
-//      update userId of interest
-        if (registeredUser.getInterestSet() != null) {
-            Set<Interest> interestSet = registeredUser.getInterestSet();
-            for (Interest interest : interestSet) {
-                interest.setUser(registeredUser);
-                interestRepository.save(interest);
-            }
+//      link interests to user, they are persisted by cascade
+        for (Interest interest : user.getInterestSet()) {
+            interest.setUser(user);
+            interest.setGeography(user.getGeography());
         }
-        return this.userRepository.findById(registeredUser.getUserId()).get();
+
+        User createdUser = this.shardTemplate.execute(user.getGeography(), () -> userRepository.save(user));
+        this.matchIndex.indexUser(createdUser);
+        return createdUser;
     }
 
     /**
-     * Update user by userId. Interest of user will not be updated.
+     * Update user by userId. Interest of user will not be updated, except for the geography copied onto them,
+     * which is updated in the same transaction when the user moves. With sharding, a user whose geography
+     * changes is moved to the shard of the new geography.
+     * The update is checked against the version of the user when it is written, so a user written by
+     * another request since it was read fails with OptimisticLockingFailureException.
      * @param user
      * @param userId
-     * @return User
+     * @param expectedVersion version of If-Match, or null to update any version
+     * @throws PreconditionFailedException
+     * if the user is not at expectedVersion
      */
-    public void updateUserById(User user, Long userId) {
-        User existingUser = this.getUserFromUserId(userId);
-//      update user
-        existingUser.setGender(user.getGender());
-        existingUser.setGeography(user.getGeography());
-        existingUser.setName(user.getName());
-        existingUser.setNickname(user.getNickname());
-        userRepository.save(existingUser);
+    @Transactional
+    public void updateUserById(User user, Long userId, Long expectedVersion) {
+        String shardGeography = this.getShardGeography(userId);
+        if (shardGeography != null && !shardGeography.equals(user.getGeography())) {
+            this.moveUser(user, userId, shardGeography, expectedVersion);
+            return;
+        }
+        User existingUser = this.shardTemplate.execute(shardGeography, () -> {
+            User shardUser = this.getUserFromUserId(userId);
+            checkVersion(shardUser, expectedVersion);
+            if (!Objects.equals(shardUser.getGeography(), user.getGeography()))
+                this.interestRepository.updateGeographyByUserId(userId, user.getGeography());
+//          update user
+            copyProfile(user, shardUser);
+            userRepository.save(shardUser);
+            return shardUser;
+        });
+        this.matchIndex.updateUserProfile(existingUser);
     }
 
     /**
-     * Delete user and interest of the user by userId
+     * Soft delete user by userId with one update. The user and its interests are hidden from queries and
+     * the match index at once, and rows are removed later by UserPurger.
      * @param userId
+     * @throws ResourceNotFoundException
+     * if user does not exist with userId
      */
     public void deleteUserById(Long userId){
-        this.getUserFromUserId(userId);
-        interestRepository.deleteInterestsByUserId(userId);
-        userRepository.deleteById(userId);
+        this.shardTemplate.execute(this.getShardGeography(userId), () -> {
+            if (this.userRepository.softDeleteById(userId) == 0)
+                throw new ResourceNotFoundException("User cannot be found with id: " + userId);
+            return null;
+        });
+        this.matchIndex.removeUser(userId);
     }
 
     /**
-     * Get a list of matched users with same game, level and geography
+     * Get a list of matched users with same game, level and geography from match index.
+     * Null game, level or geography matches any value.
      * @param game
      * @param level
      * @param geography,
      * @return List<User>
+     * @throws InvalidRequestException
+     * if game, level and geography are all null
      */
     public List<User> getMatchUserByGameAndLevelAndGeography(String game, String level, String geography){
+        if (game == null && level == null && geography == null)
+            throw new InvalidRequestException("At least one of game, level and geography should be given");
         this.checkGameAndLevelAndGeography(game, level, geography);
-        List<User> matchUserList = userRepository.findMatchUserByGameAndLevelAndGeography(game, level, geography);
+        List<User> matchUserList = this.matchIndex.findMatchUsers(game, level, geography);
         return matchUserList;
     }
 
@@ -111,29 +273,90 @@ public class UserService {
      */
     public List<User> getOtherUserMatchUserInterest(Long userId, Long interestId){
 
-        User user = this.getUserFromUserId(userId);
-        Interest userMatchInterest = this.getInterestFromInterestId(interestId, userId);
-        List<User> matchUserList = userRepository.findMatchUserByGameAndLevelAndGeography(userMatchInterest.getGame(),
+        Interest userMatchInterest = this.getUserMatchInterest(userId, interestId);
+        User user = userMatchInterest.getUser();
+        List<User> matchUserList = this.matchIndex.findMatchUsers(userMatchInterest.getGame(),
                 userMatchInterest.getLevel(), user.getGeography());
 
-        matchUserList.remove(user);
+        matchUserList.removeIf(matchUser -> matchUser.getUserId().equals(userId));
 
         return matchUserList;
     }
 
     /**
-     * Get list of users with maximum credit among users with same game and level
+     * Get user interest used for matching from match index. User of the returned interest holds the geography.
+     * @param userId
+     * @param interestId
+     * @return interest snapshot
+     * @throws ResourceNotFoundException
+     * if user or interest does not exist
+     * @throws InvalidRequestException
+     * if user with userId does not have the interest with interestId
+     */
+    public Interest getUserMatchInterest(Long userId, Long interestId) {
+        User user = this.getIndexedUser(userId);
+        return this.getIndexedInterest(user, interestId);
+    }
+
+    /**
+     * Get list of users with maximum credit among users with same game and level from credit leaderboard
      * @return list of users
      */
     public List<User> getUserWithMaxCreditByGameAndLevel(String game, String level){
 
         this.checkGameAndLevelAndGeography(game, level, null);
 
-        List<User> userList = this.userRepository.findUserWithMaxCreditByGameAndLevel(game, level);
+        List<User> userList = this.matchIndex.findMaxCreditUsers(game, level);
 
         return userList;
     }
 
+    /**
+     * Get top k users with highest credit among users with same game and level
+     * @param game
+     * @param level
+     * @param k
+     * @return list of leaderboard entries ordered by rank
+     */
+    public List<LeaderboardEntry> getTopUsersByCredit(String game, String level, int k) {
+        return this.getUsersByCreditRank(game, level, 1, k);
+    }
+
+    /**
+     * Get users ranked from fromRank to toRank by credit among users with same game and level.
+     * Users with same credit are ranked by interestId.
+     * @param game
+     * @param level
+     * @param fromRank 1-based, inclusive
+     * @param toRank 1-based, inclusive
+     * @return list of leaderboard entries ordered by rank
+     */
+    public List<LeaderboardEntry> getUsersByCreditRank(String game, String level, int fromRank, int toRank) {
+        this.checkGameAndLevelAndGeography(game, level, null);
+        if (fromRank < 1 || toRank < fromRank)
+            throw new InvalidRequestException("Rank range should satisfy 1 <= from <= to, but was from: " + fromRank
+                    + " to: " + toRank);
+        if (toRank - fromRank + 1 > MAX_RANK_RANGE)
+            throw new InvalidRequestException("Rank range should contain at most " + MAX_RANK_RANGE + " ranks");
+
+        return this.matchIndex.findRankRange(game, level, fromRank, toRank);
+    }
+
+    /**
+     * Get credit rank of user interest among users with same game and level
+     * @param userId
+     * @param interestId
+     * @return leaderboard entry of user interest
+     */
+    public LeaderboardEntry getUserInterestCreditRank(Long userId, Long interestId) {
+        User user = this.getIndexedUser(userId);
+        this.getIndexedInterest(user, interestId);
+
+        LeaderboardEntry leaderboardEntry = this.matchIndex.findRank(interestId);
+        if (leaderboardEntry == null)
+            throw new InvalidRequestException("Interest with interestId: " + interestId + " has no credit to be ranked");
+        return leaderboardEntry;
+    }
 
     /**
      * Check game, level and geography whether belongs corresponding list
@@ -144,24 +367,147 @@ public class UserService {
      */
     private void checkGameAndLevelAndGeography(String game, String level, String geography) {
         StringBuilder message = new StringBuilder();
-        if (game != null && !this.GAME_LIST.contains(game)) {
+        if (game != null && this.attributeDictionary.encodeGame(game) < 0) {
             message.append("Invalid ").append("game: ").append(game).append(" and it should be one of ")
-                    .append(GAME_LIST.toString());
+                    .append(this.attributeDictionary.getGameList().toString());
         }
-        if (level != null && !this.LEVEL_LIST.contains(level)) {
+        if (level != null && this.attributeDictionary.encodeLevel(level) < 0) {
             if (message.length() != 0) message.append("; ");
             message.append("Invalid ").append("level: ").append(level).append(" and it should be one of ")
-                    .append(LEVEL_LIST.toString());
+                    .append(this.attributeDictionary.getLevelList().toString());
         }
-        if (geography != null && !this.GEO_LIST.contains(geography)) {
+        if (geography != null && this.attributeDictionary.encodeGeography(geography) < 0) {
             if (message.length() != 0) message.append("; ");
             message.append("Invalid ").append("geography: ").append(geography).append(" and it should be one of ")
-                    .append(GEO_LIST.toString());
+                    .append(this.attributeDictionary.getGeographyList().toString());
         }
         if (message.length() > 0)
             throw new InvalidRequestException(message.toString());
     }
 
+    private static String encodeCursor(Long userId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((CURSOR_PREFIX + userId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode cursor to last userId of previous page
+     * @param cursor
+     * @return userId
+     * @throws InvalidRequestException
+     * if cursor is not created by getUsers
+     */
+    private static Long decodeCursor(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (decoded.startsWith(CURSOR_PREFIX))
+                return Long.parseLong(decoded.substring(CURSOR_PREFIX.length()));
+        } catch (IllegalArgumentException exception) {
+            // not base64 or not a number
+        }
+        throw new InvalidRequestException("Invalid cursor: " + cursor);
+    }
+
+    /**
+     * Find a page of users in one shard, with nextCursor set if the shard has more users
+     */
+    private UserPage findUserPage(Long afterUserId, int size, String geography, String game) {
+        // one extra id tells whether there is a next page
+        List<Long> userIdList = this.userRepository.findUserIdPage(afterUserId, geography, game,
+                PageRequest.of(0, size + 1));
+        boolean hasNext = userIdList.size() > size;
+        if (hasNext)
+            userIdList = userIdList.subList(0, size);
+        if (userIdList.isEmpty())
+            return new UserPage(new ArrayList<>(), null);
+        List<User> userList = this.userRepository.findWithInterestsByUserIdIn(userIdList);
+        return new UserPage(userList, hasNext ? encodeCursor(userIdList.get(userIdList.size() - 1)) : null);
+    }
+
+    /**
+     * Move user with interests to the shard of new geography. The user is copied to the new shard with the same
+     * ids and then deleted from the old shard if it is still at the version that was copied. If the delete fails,
+     * the copy is deleted again, so only one shard holds the user. The match index routes requests to the new
+     * shard once both steps succeeded, until then the user cannot be found for an instant.
+     * Shards share no transaction, so if deleting the copy fails as well, an unrouted copy is left in the new shard.
+     * @throws ObjectOptimisticLockingFailureException
+     * if the user was written in the old shard since it was read
+     */
+    private void moveUser(User user, Long userId, String oldGeography, Long expectedVersion) {
+        User movedUser = this.shardTemplate.executeReadOnly(oldGeography, () -> {
+            User shardUser = this.getUserFromUserId(userId);
+            Hibernate.initialize(shardUser.getInterestSet());
+            return shardUser;
+        });
+        checkVersion(movedUser, expectedVersion);
+        long oldVersion = movedUser.getVersion();
+        copyProfile(user, movedUser);
+        // the copy is a write of the user and of its interests, whose geography changes
+        movedUser.setVersion(oldVersion + 1);
+        int geographyCode = this.attributeDictionary.encodeGeography(movedUser.getGeography());
+        this.shardTemplate.execute(movedUser.getGeography(), () -> {
+            this.userRepository.insertUser(userId, movedUser.getName(), movedUser.getGender(),
+                    movedUser.getNickname(), geographyCode, movedUser.getVersion());
+            for (Interest interest : movedUser.getInterestSet())
+                this.interestRepository.insertInterest(interest.getInterestId(),
+                        this.attributeDictionary.encodeGame(interest.getGame()),
+                        this.attributeDictionary.encodeLevel(interest.getLevel()), interest.getCredit(), userId,
+                        geographyCode, interest.getVersion() + 1);
+            return null;
+        });
+        try {
+            this.shardTemplate.execute(oldGeography, () -> {
+                this.deleteMovedUser(userId, oldVersion);
+                return null;
+            });
+        } catch (RuntimeException exception) {
+            // compensate the copy, the user stays in the old shard
+            this.shardTemplate.execute(movedUser.getGeography(), () -> {
+                this.deleteMovedUser(userId, movedUser.getVersion());
+                return null;
+            });
+            throw exception;
+        }
+        this.matchIndex.updateUserProfile(movedUser);
+    }
+
+    /**
+     * Delete user with its interests from the shard it was moved from or to
+     * @throws ObjectOptimisticLockingFailureException
+     * if the user is not at version
+     */
+    private void deleteMovedUser(Long userId, long version) {
+        this.interestRepository.deleteInterestsByUserId(userId);
+        // rolls back the interest delete of the transaction of the shard
+        if (this.userRepository.deleteByUserIdAndVersion(userId, version) == 0)
+            throw new ObjectOptimisticLockingFailureException(User.class, userId);
+    }
+
+    /**
+     * Check version of user against version of If-Match
+     * @param user
+     * @param expectedVersion version of If-Match, or null
+     * @throws PreconditionFailedException
+     * if expectedVersion is given and the user is at another version
+     */
+    private static void checkVersion(User user, Long expectedVersion) {
+        if (expectedVersion != null && expectedVersion != user.getVersion())
+            throw new PreconditionFailedException("User with userId: " + user.getUserId() + " is at version: "
+                    + user.getVersion() + ", not at version of If-Match: " + expectedVersion);
+    }
+
+    private static void copyProfile(User user, User existingUser) {
+        existingUser.setGender(user.getGender());
+        existingUser.setGeography(user.getGeography());
+        existingUser.setName(user.getName());
+        existingUser.setNickname(user.getNickname());
+    }
+
+    // geography of shard of user from match index, null without sharding
+    private String getShardGeography(Long userId) {
+        return this.shardTemplate.isEnabled() ? this.getIndexedUser(userId).getGeography() : null;
+    }
+
     /**
      * Get user by userId and check whether user exists
      * @param userId
@@ -176,21 +522,37 @@ public class UserService {
     }
 
     /**
-     * Get interest by interestId and check whether interest exists and the userId of interest is the same as userId
-     * @param interestId
+     * Get user snapshot from match index and check whether user exists
      * @param userId
+     * @return User
+     * @throws ResourceNotFoundException
+     * if user does not exist with userId
+     */
+    private User getIndexedUser(Long userId) {
+        User user = this.matchIndex.getUser(userId);
+        if (user == null)
+            throw new ResourceNotFoundException("User cannot be found with id: " + userId);
+        return user;
+    }
+
+    /**
+     * Get interest from user snapshot and check whether interest exists and belongs to the user
+     * @param user
+     * @param interestId
      * @return Interest
      * @throws ResourceNotFoundException
      * if interest does not exist with interestId
      * @throws InvalidRequestException
-     * if user with userId does not have the interest with interestId
+     * if user does not have the interest with interestId
      */
-    private Interest getInterestFromInterestId(Long interestId, Long userId) {
-        Interest interest = interestRepository.findById(interestId)
-                .orElseThrow(() -> new ResourceNotFoundException("Interest cannot be found with id: " + interestId));
-        if (interest.getUser() == null || interest.getUser().getUserId() != userId)
-            throw new InvalidRequestException("User with userId: " + userId +
-                    " does not have the interest with interestId : " + interestId);
-        return interest;
+    private Interest getIndexedInterest(User user, Long interestId) {
+        for (Interest interest : user.getInterestSet()) {
+            if (interest.getInterestId().equals(interestId))
+                return interest;
+        }
+        if (this.matchIndex.getInterestOwner(interestId) == null)
+            throw new ResourceNotFoundException("Interest cannot be found with id: " + interestId);
+        throw new InvalidRequestException("User with userId: " + user.getUserId() +
+                " does not have the interest with interestId : " + interestId);
     }
 }
@@ -0,0 +1,39 @@
+-- Schema of users, interests and catalog entries as mapped by the entities
+-- geography, game and level are smallint codes of AttributeDictionary
+
+-- pooled sequences, ids are allocated 50 at a time
+CREATE SEQUENCE user_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE interest_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE users (
+    user_id BIGINT NOT NULL,
+    name VARCHAR(255),
+    gender VARCHAR(255),
+    nickname VARCHAR(255),
+    geography SMALLINT,
+    CONSTRAINT pk_users PRIMARY KEY (user_id)
+);
+
+CREATE TABLE interests (
+    interest_id BIGINT NOT NULL,
+    game SMALLINT,
+    level SMALLINT,
+    credit INTEGER DEFAULT 0,
+    user_id BIGINT,
+    CONSTRAINT pk_interests PRIMARY KEY (interest_id),
+    CONSTRAINT uk_interests_user_game UNIQUE (user_id, game),
+    CONSTRAINT fk_interests_user FOREIGN KEY (user_id) REFERENCES users (user_id)
+);
+
+-- allowed values of game, level and geography with their codes
+CREATE SEQUENCE hibernate_sequence START WITH 1 INCREMENT BY 1;
+
+CREATE TABLE catalog_entries (
+    entry_id BIGINT NOT NULL,
+    attribute VARCHAR(255) NOT NULL,
+    code SMALLINT NOT NULL,
+    value VARCHAR(255) NOT NULL,
+    CONSTRAINT pk_catalog_entries PRIMARY KEY (entry_id),
+    CONSTRAINT uk_catalog_entries_attribute_code UNIQUE (attribute, code),
+    CONSTRAINT uk_catalog_entries_attribute_value UNIQUE (attribute, value)
+);
@@ -0,0 +1,5 @@
+-- Covering index of match and leaderboard queries
+-- Interests with same game and level are consecutive and ordered by credit, so the max-credit subquery reads the
+-- last entry, and owners of matching interests are read from the index without reading the table.
+-- Users are then looked up by primary key. Geography matches a third of users, so no index on it is added.
+CREATE INDEX ix_interests_game_level_credit_user ON interests (game, level, credit, user_id);
@@ -0,0 +1,9 @@
+-- Copy geography of users onto their interests, so interests are matched by game, level and geography
+-- from one table and one index without a join to users
+-- The copy is set on insert and updated with the user, InterestGeographyCheck repairs rows that drifted
+
+ALTER TABLE interests ADD COLUMN geography SMALLINT;
+
+UPDATE interests SET geography = (SELECT users.geography FROM users WHERE users.user_id = interests.user_id);
+
+CREATE INDEX ix_interests_game_level_geography_user ON interests (game, level, geography, user_id);
@@ -0,0 +1,7 @@
+-- Soft delete of users, a deleted user is hidden from every query at once and removed later with its interests
+-- by UserPurger in bounded batches
+
+ALTER TABLE users ADD COLUMN deleted BOOLEAN DEFAULT FALSE NOT NULL;
+
+-- UserPurger finds deleted users without scanning users
+CREATE INDEX ix_users_deleted_user ON users (deleted, user_id);
@@ -0,0 +1,6 @@
+-- Versions of users and interests for optimistic locking, incremented by every write of the row
+-- and sent to clients as part of the ETag of GET /api/user/{userId} and GET /api/user/{userId}/interest/{interestId}
+
+ALTER TABLE users ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
+
+ALTER TABLE interests ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
@@ -0,0 +1,10 @@
+-- Heartbeat written to the primary by ReplicaLagMonitor and read back from the replica,
+-- the replicated time tells how far the replica lags behind the primary
+
+CREATE TABLE replica_heartbeat (
+    heartbeat_id INTEGER NOT NULL,
+    beat_millis BIGINT DEFAULT 0 NOT NULL,
+    CONSTRAINT pk_replica_heartbeat PRIMARY KEY (heartbeat_id)
+);
+
+INSERT INTO replica_heartbeat (heartbeat_id, beat_millis) VALUES (1, 0);
@@ -0,0 +1,4 @@
+-- Match and leaderboard queries are answered by MatchIndex without SQL, so their covering indexes
+-- only slow down writes of interests
+DROP INDEX ix_interests_game_level_credit_user;
+DROP INDEX ix_interests_game_level_geography_user;
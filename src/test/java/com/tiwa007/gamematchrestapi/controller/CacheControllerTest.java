@@ -0,0 +1,59 @@
+package com.tiwa007.gamematchrestapi.controller;
+
+import com.tiwa007.gamematchrestapi.service.CacheService;
+import com.tiwa007.gamematchrestapi.service.CacheStatistics;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.internal.verification.VerificationModeFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(value = CacheController.class)
+public class CacheControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private CacheService cacheService;
+
+    @Test
+    public void givenCacheStatistics_whenGetStatistics_thenReturnHitAndMissCounts() throws Exception {
+//        given
+        given(cacheService.getStatistics()).willReturn(Arrays.asList(
+                new CacheStatistics("com.tiwa007.gamematchrestapi.entity.User", 5, 2, 2),
+                new CacheStatistics("com.tiwa007.gamematchrestapi.entity.Interest", 1, 1, 1)));
+
+//      when and then
+        mockMvc.perform(get("/api/admin/cache"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].region", is("com.tiwa007.gamematchrestapi.entity.User")))
+                .andExpect(jsonPath("$[0].hitCount", is(5)))
+                .andExpect(jsonPath("$[0].missCount", is(2)))
+                .andExpect(jsonPath("$[1].region", is("com.tiwa007.gamematchrestapi.entity.Interest")));
+    }
+
+    @Test
+    public void whenEvictAll_thenNoContent() throws Exception {
+//      when and then
+        mockMvc.perform(post("/api/admin/cache/evict"))
+                .andExpect(status().isNoContent());
+        verify(cacheService, VerificationModeFactory.times(1)).evictAll();
+    }
+}
@@ -0,0 +1,75 @@
+package com.tiwa007.gamematchrestapi.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tiwa007.gamematchrestapi.service.CatalogService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.internal.verification.VerificationModeFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.*;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(value = CatalogController.class)
+public class CatalogControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private CatalogService catalogService;
+
+    @Test
+    public void givenNewGame_whenAddValue_thenReturnCatalog() throws Exception {
+//        given
+        Map<String, List<String>> catalog = new LinkedHashMap<>();
+        catalog.put("game", Arrays.asList("dota", "minecraft"));
+        given(catalogService.addValue("game", "minecraft")).willReturn(catalog);
+
+//      when and then
+        mockMvc.perform(post("/api/admin/catalog/{attribute}", "game")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsString(new CatalogRequest("minecraft"))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.game", hasSize(2)))
+                .andExpect(jsonPath("$.game[1]", is("minecraft")));
+        verify(catalogService, VerificationModeFactory.times(1)).addValue("game", "minecraft");
+    }
+
+    @Test
+    public void givenEmptyValue_whenAddValue_thenBadRequest() throws Exception {
+//      when and then
+        mockMvc.perform(post("/api/admin/catalog/{attribute}", "game")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsString(new CatalogRequest(""))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.details.value", is("Value cannot be empty")));
+    }
+
+    @Test
+    public void whenReload_thenReturnCatalog() throws Exception {
+//        given
+        Map<String, List<String>> catalog = new LinkedHashMap<>();
+        catalog.put("level", Arrays.asList("noob", "pro"));
+        given(catalogService.getCatalog()).willReturn(catalog);
+
+//      when and then
+        mockMvc.perform(post("/api/admin/catalog/reload"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.level[1]", is("pro")));
+        verify(catalogService, VerificationModeFactory.times(1)).reload();
+    }
+}
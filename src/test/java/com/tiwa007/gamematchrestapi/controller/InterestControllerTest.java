@@ -1,15 +1,18 @@
 package com.tiwa007.gamematchrestapi.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tiwa007.gamematchrestapi.service.InterestCredit;
 import com.tiwa007.gamematchrestapi.service.InterestService;
 import com.tiwa007.gamematchrestapi.entity.Interest;
 import com.tiwa007.gamematchrestapi.entity.User;
+import com.tiwa007.gamematchrestapi.service.AttributeDictionary;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.internal.verification.VerificationModeFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
@@ -18,6 +21,7 @@ import java.util.*;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.hamcrest.CoreMatchers.is;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -27,6 +31,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 @RunWith(SpringRunner.class)
 @WebMvcTest(value = InterestController.class)
+@Import(AttributeDictionary.class)
 public class InterestControllerTest {
 
     @Autowired
@@ -90,6 +95,21 @@ public class InterestControllerTest {
                 .createUserInterest(interest, userList.get(0).getUserId());
     }
 
+    @Test
+    public void givenGameNotInCatalog_whenCreateUserInterest_thenBadRequest() throws Exception {
+
+//        given
+        Interest interest = new Interest("minecraft", "pro", 1, null);
+
+//      when & then
+        mockMvc.perform(post("/api/user/{userId}/interest", 1L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(interest)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.details.game",
+                        is("Game should be one of [fortnite, call of duty, dota, valhalla, among us]")));
+    }
+
     //  updateUserInterestByInterestId
     @Test
     public void givenInterestAndInterestId_whenUpdateUserInterestByInterestId_thenReturnInterest() throws Exception {
@@ -139,6 +159,61 @@ public class InterestControllerTest {
                 .andExpect(jsonPath("$").doesNotExist());
     }
 
+    //  addUserInterestCredit
+    @Test
+    public void givenDelta_whenAddUserInterestCredit_thenReturnNewCredit() throws Exception {
+
+//        given
+        given(interestService.addUserInterestCredit(1L, 1L, -5)).willReturn(new InterestCredit(1L, 15));
+
+//      when & then
+        mockMvc.perform(post("/api/user/{userId}/interest/{interestId}/credit/delta", 1L, 1L)
+                .param("delta", "-5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.interestId", is(1)))
+                .andExpect(jsonPath("$.credit", is(15)));
+
+        verify(interestService, VerificationModeFactory.times(1)).addUserInterestCredit(1L, 1L, -5);
+    }
+
+    //  addInterestCredits
+    @Test
+    public void givenDeltasOfSameInterest_whenAddInterestCredits_thenSumDeltas() throws Exception {
+
+//        given
+        Map<Long, Integer> deltaMap = new LinkedHashMap<>();
+        deltaMap.put(2L, 6);
+        deltaMap.put(1L, -3);
+        given(interestService.addInterestCredits(deltaMap))
+                .willReturn(Arrays.asList(new InterestCredit(2L, 16), new InterestCredit(1L, 5)));
+        CreditDeltaBatchRequest creditDeltaBatchRequest = new CreditDeltaBatchRequest(Arrays.asList(
+                new CreditDeltaRequest(2L, 5), new CreditDeltaRequest(1L, -3), new CreditDeltaRequest(2L, 1)));
+
+//      when & then
+        mockMvc.perform(post("/api/user/interest/credit/delta")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(creditDeltaBatchRequest)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].interestId", is(2)))
+                .andExpect(jsonPath("$[0].credit", is(16)))
+                .andExpect(jsonPath("$[1].interestId", is(1)))
+                .andExpect(jsonPath("$[1].credit", is(5)));
+
+        verify(interestService, VerificationModeFactory.times(1)).addInterestCredits(deltaMap);
+    }
+
+    @Test
+    public void givenEmptyDeltas_whenAddInterestCredits_thenBadRequest() throws Exception {
+
+//      when & then
+        mockMvc.perform(post("/api/user/interest/credit/delta")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(new CreditDeltaBatchRequest(Collections.emptyList()))))
+                .andExpect(status().isBadRequest());
+
+        verify(interestService, VerificationModeFactory.times(0)).addInterestCredits(any());
+    }
+
     private User produceUser(Long userId, String name, String gender, String nickname, String geography, Integer credit,
                              Long interestId, String game, String level) {
         User user = new User(name, gender, nickname, geography, null);
@@ -0,0 +1,73 @@
+package com.tiwa007.gamematchrestapi.controller;
+
+import com.tiwa007.gamematchrestapi.service.MatchmakingService;
+import com.tiwa007.gamematchrestapi.service.Ticket;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.internal.verification.VerificationModeFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(value = MatchmakingController.class)
+public class MatchmakingControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private MatchmakingService matchmakingService;
+
+    @Test
+    public void givenUserIdAndInterestId_whenEnqueue_thenReturnWaitingTicket() throws Exception {
+//        given
+        Ticket ticket = new Ticket(1L, 1L, 1L, "dota", "noob", "USA", 0L);
+        given(matchmakingService.enqueue(1L, 1L)).willReturn(ticket);
+
+//      when and then
+        mockMvc.perform(post("/api/matchmaking/{userId}/ticket/{interestId}", 1L, 1L)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.ticketId", is(1)))
+                .andExpect(jsonPath("$.status", is("WAITING")));
+        verify(matchmakingService, VerificationModeFactory.times(1)).enqueue(1L, 1L);
+    }
+
+    @Test
+    public void givenTicketId_whenGetTicket_thenReturnTicket() throws Exception {
+//        given
+        Ticket ticket = new Ticket(1L, 1L, 1L, "dota", "noob", "USA", 0L);
+        given(matchmakingService.getTicket(1L)).willReturn(ticket);
+
+//      when and then
+        mockMvc.perform(get("/api/matchmaking/ticket/{ticketId}", 1L)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.ticketId", is(1)))
+                .andExpect(jsonPath("$.game", is("dota")))
+                .andExpect(jsonPath("$.level", is("noob")))
+                .andExpect(jsonPath("$.geography", is("USA")))
+                .andExpect(jsonPath("$.status", is("WAITING")));
+        verify(matchmakingService, VerificationModeFactory.times(1)).getTicket(1L);
+    }
+
+    @Test
+    public void givenTicketId_whenCancel_thenSuccess() throws Exception {
+//      when and then
+        mockMvc.perform(delete("/api/matchmaking/ticket/{ticketId}", 1L)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        verify(matchmakingService, VerificationModeFactory.times(1)).cancel(1L);
+    }
+}
@@ -1,15 +1,21 @@
 package com.tiwa007.gamematchrestapi.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tiwa007.gamematchrestapi.service.LeaderboardEntry;
+import com.tiwa007.gamematchrestapi.service.UserExportService;
+import com.tiwa007.gamematchrestapi.service.UserImportService;
+import com.tiwa007.gamematchrestapi.service.UserPage;
 import com.tiwa007.gamematchrestapi.service.UserService;
 import com.tiwa007.gamematchrestapi.entity.Interest;
 import com.tiwa007.gamematchrestapi.entity.User;
+import com.tiwa007.gamematchrestapi.service.AttributeDictionary;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.internal.verification.VerificationModeFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
@@ -27,6 +33,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 @RunWith(SpringRunner.class)
 @WebMvcTest(value = UserController.class)
+@Import(AttributeDictionary.class)
 public class UserControllerTest {
 
     @Autowired
@@ -35,6 +42,12 @@ public class UserControllerTest {
     @MockBean
     private UserService userService;
 
+    @MockBean
+    private UserExportService userExportService;
+
+    @MockBean
+    private UserImportService userImportService;
+
 
     @Test
     public void contextLoads() throws Exception {
@@ -42,40 +55,58 @@ public class UserControllerTest {
         assertThat(userService).isNotNull();
     }
 
-    //    getAllUsers
+    //    getUsers
 
     @Test
-    public void givenUsers_whenGetAllUsers_thenReturnUserList() throws Exception {
+    public void givenUsers_whenGetUsers_thenReturnUserPage() throws Exception {
 //        given
         List<User> userList = createUserList();
-        given(userService.getAllUsers()).willReturn(userList);
+        given(userService.getUsers(null, 20, null, null)).willReturn(new UserPage(userList, "bmV4dA"));
 
 //      when and then
         mockMvc.perform(get("/api/user").contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$", hasSize(2)))
-                .andExpect(jsonPath("$[0].userId", is(1)))
-                .andExpect(jsonPath("$[0].name", is("name1")))
-                .andExpect(jsonPath("$[0].gender", is("male")))
-                .andExpect(jsonPath("$[0].nickname", is("nkname1")))
-                .andExpect(jsonPath("$[0].geography", is("USA")))
-                .andExpect(jsonPath("$[0].interestSet", hasSize(1)))
-                .andExpect(jsonPath("$[0].interestSet[0].interestId", is(1)))
-                .andExpect(jsonPath("$[0].interestSet[0].game", is("dota")))
-                .andExpect(jsonPath("$[0].interestSet[0].level", is("noob")))
-                .andExpect(jsonPath("$[0].interestSet[0].credit", is(0)))
-                .andExpect(jsonPath("$[1].userId", is(2)))
-                .andExpect(jsonPath("$[1].name", is("name2")))
-                .andExpect(jsonPath("$[1].gender", is("male")))
-                .andExpect(jsonPath("$[1].nickname", is("nkname2")))
-                .andExpect(jsonPath("$[1].geography", is("USA")))
-                .andExpect(jsonPath("$[1].interestSet", hasSize(1)))
-                .andExpect(jsonPath("$[1].interestSet[0].interestId", is(2)))
-                .andExpect(jsonPath("$[1].interestSet[0].game", is("dota")))
-                .andExpect(jsonPath("$[1].interestSet[0].level", is("noob")))
-                .andExpect(jsonPath("$[1].interestSet[0].credit", is(0)));
+                .andExpect(jsonPath("$.users", hasSize(2)))
+                .andExpect(jsonPath("$.users[0].userId", is(1)))
+                .andExpect(jsonPath("$.users[0].name", is("name1")))
+                .andExpect(jsonPath("$.users[0].gender", is("male")))
+                .andExpect(jsonPath("$.users[0].nickname", is("nkname1")))
+                .andExpect(jsonPath("$.users[0].geography", is("USA")))
+                .andExpect(jsonPath("$.users[0].interestSet", hasSize(1)))
+                .andExpect(jsonPath("$.users[0].interestSet[0].interestId", is(1)))
+                .andExpect(jsonPath("$.users[0].interestSet[0].game", is("dota")))
+                .andExpect(jsonPath("$.users[0].interestSet[0].level", is("noob")))
+                .andExpect(jsonPath("$.users[0].interestSet[0].credit", is(0)))
+                .andExpect(jsonPath("$.users[1].userId", is(2)))
+                .andExpect(jsonPath("$.users[1].name", is("name2")))
+                .andExpect(jsonPath("$.users[1].gender", is("male")))
+                .andExpect(jsonPath("$.users[1].nickname", is("nkname2")))
+                .andExpect(jsonPath("$.users[1].geography", is("USA")))
+                .andExpect(jsonPath("$.users[1].interestSet", hasSize(1)))
+                .andExpect(jsonPath("$.users[1].interestSet[0].interestId", is(2)))
+                .andExpect(jsonPath("$.users[1].interestSet[0].game", is("dota")))
+                .andExpect(jsonPath("$.users[1].interestSet[0].level", is("noob")))
+                .andExpect(jsonPath("$.users[1].interestSet[0].credit", is(0)))
+                .andExpect(jsonPath("$.nextCursor", is("bmV4dA")));
+
+        verify(userService, VerificationModeFactory.times(1)).getUsers(null, 20, null, null);
+    }
+
+    @Test
+    public void givenCursorAndFilters_whenGetUsers_thenPassToService() throws Exception {
+//        given
+        given(userService.getUsers("bmV4dA", 5, "USA", "dota")).willReturn(new UserPage(new ArrayList<>(), null));
 
-        verify(userService, VerificationModeFactory.times(1)).getAllUsers();
+//      when and then
+        mockMvc.perform(get("/api/user")
+                .param("cursor", "bmV4dA")
+                .param("size", "5")
+                .param("geography", "USA")
+                .param("game", "dota"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users", hasSize(0)));
+
+        verify(userService, VerificationModeFactory.times(1)).getUsers("bmV4dA", 5, "USA", "dota");
     }
 
     @Test
@@ -297,6 +328,72 @@ public class UserControllerTest {
                 .getUserWithMaxCreditByGameAndLevel("dota", "noob");
     }
 
+    //    getTopUsersByCredit
+    @Test
+    public void givenGameAndLevelAndK_whenGetTopUsersByCredit_thenReturnLeaderboardEntryList() throws Exception {
+//        given
+        List<User> userList = createUserList();
+        List<LeaderboardEntry> leaderboardEntryList = Arrays.asList(
+                new LeaderboardEntry(1, 1L, 0, userList.get(0)),
+                new LeaderboardEntry(2, 2L, 0, userList.get(1)));
+        given(userService.getTopUsersByCredit("dota", "noob", 2)).willReturn(leaderboardEntryList);
+
+//      when and then
+        mockMvc.perform(get("/api/user/interest/credit/top")
+                .contentType(MediaType.APPLICATION_JSON)
+                .param("game", "dota")
+                .param("level", "noob")
+                .param("k", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].rank", is(1)))
+                .andExpect(jsonPath("$[0].interestId", is(1)))
+                .andExpect(jsonPath("$[0].user.userId", is(1)))
+                .andExpect(jsonPath("$[1].rank", is(2)))
+                .andExpect(jsonPath("$[1].interestId", is(2)))
+                .andExpect(jsonPath("$[1].user.userId", is(2)));
+        verify(userService, VerificationModeFactory.times(1)).getTopUsersByCredit("dota", "noob", 2);
+    }
+
+    //    getUsersByCreditRank
+    @Test
+    public void givenGameAndLevelAndRankRange_whenGetUsersByCreditRank_thenReturnLeaderboardEntryList() throws Exception {
+//        given
+        List<User> userList = createUserList();
+        List<LeaderboardEntry> leaderboardEntryList = Arrays.asList(new LeaderboardEntry(2, 2L, 0, userList.get(1)));
+        given(userService.getUsersByCreditRank("dota", "noob", 2, 3)).willReturn(leaderboardEntryList);
+
+//      when and then
+        mockMvc.perform(get("/api/user/interest/credit/rank")
+                .contentType(MediaType.APPLICATION_JSON)
+                .param("game", "dota")
+                .param("level", "noob")
+                .param("from", "2")
+                .param("to", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].rank", is(2)))
+                .andExpect(jsonPath("$[0].user.userId", is(2)));
+        verify(userService, VerificationModeFactory.times(1)).getUsersByCreditRank("dota", "noob", 2, 3);
+    }
+
+    //    getUserInterestCreditRank
+    @Test
+    public void givenUserIdAndInterestId_whenGetUserInterestCreditRank_thenReturnLeaderboardEntry() throws Exception {
+//        given
+        List<User> userList = createUserList();
+        given(userService.getUserInterestCreditRank(2L, 2L)).willReturn(new LeaderboardEntry(2, 2L, 0, userList.get(1)));
+
+//      when and then
+        mockMvc.perform(get("/api/user/{userId}/interest/{interestId}/credit/rank", 2L, 2L)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rank", is(2)))
+                .andExpect(jsonPath("$.credit", is(0)))
+                .andExpect(jsonPath("$.user.userId", is(2)));
+        verify(userService, VerificationModeFactory.times(1)).getUserInterestCreditRank(2L, 2L);
+    }
+
     private User produceUser(Long userId, String name, String gender, String nickname, String geography, Integer credit,
                              Long interestId, String game, String level) {
         User user = new User(name, gender, nickname, geography, null);
@@ -0,0 +1,140 @@
+package com.tiwa007.gamematchrestapi.integration;
+
+import com.tiwa007.gamematchrestapi.GameMatchRestApiApplication;
+import com.tiwa007.gamematchrestapi.controller.InterestRequest;
+import com.tiwa007.gamematchrestapi.repository.InterestRepository;
+import com.tiwa007.gamematchrestapi.repository.UserRepository;
+import com.tiwa007.gamematchrestapi.service.CacheService;
+import com.tiwa007.gamematchrestapi.service.CreditWriteBuffer;
+import com.tiwa007.gamematchrestapi.service.MatchIndex;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static com.tiwa007.gamematchrestapi.integration.InterestControllerIntegrationTest.asJsonString;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, classes = GameMatchRestApiApplication.class,
+        properties = {"credit.write-behind.enabled=true", "credit.write-behind.flush-millis=600000"})
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+public class CreditWriteBehindIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private InterestRepository interestRepository;
+
+    @Autowired
+    private MatchIndex matchIndex;
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Autowired
+    private CreditWriteBuffer creditWriteBuffer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Before
+    public void initDb() {
+//        @Sql scripts write to database directly, so match index is rebuilt and cache is evicted
+        matchIndex.rebuild();
+        cacheService.evictAll();
+    }
+
+    @After
+    public void resetDb() {
+        creditWriteBuffer.flush();
+        userRepository.deleteAll();
+        interestRepository.deleteAll();
+    }
+
+    @Test
+    @Sql({"/h2_integration_test.sql"})
+    public void givenBufferedCredit_whenGetInterest_thenReturnPendingCreditUntilFlushed() throws Exception {
+//      when credit is updated twice before a flush
+        mockMvc.perform(put("/api/user/{userId}/interest/{interestId}/credit", 1001, 1001)
+                .param("credit", "500"))
+                .andExpect(status().isOk());
+        mockMvc.perform(put("/api/user/{userId}/interest/{interestId}/credit", 1001, 1001)
+                .param("credit", "1000"))
+                .andExpect(status().isOk());
+
+//      then reads see the pending credit while database still has the old one
+        assertThat(readCredit(1001L)).isEqualTo(10);
+        mockMvc.perform(get("/api/user/{userId}/interest/{interestId}", 1001, 1001))
+                .andExpect(jsonPath("$.credit", is(1000)));
+        mockMvc.perform(get("/api/user/{userId}", 1001))
+                .andExpect(jsonPath("$.interestSet[?(@.interestId == 1001)].credit").value(1000));
+        mockMvc.perform(get("/api/user/interest/credit/max")
+                .param("game", "fortnite")
+                .param("level", "noob"))
+                .andExpect(jsonPath("$[0].userId", is(1001)));
+
+//      when flushed, then the last credit is written
+        creditWriteBuffer.flush();
+        assertThat(readCredit(1001L)).isEqualTo(1000);
+        mockMvc.perform(get("/api/user/{userId}/interest/{interestId}", 1001, 1001))
+                .andExpect(jsonPath("$.credit", is(1000)));
+    }
+
+    @Test
+    @Sql({"/h2_integration_test.sql"})
+    public void givenBufferedCredit_whenUpdateInterest_thenBufferedCreditIsDiscarded() throws Exception {
+//        given
+        mockMvc.perform(put("/api/user/{userId}/interest/{interestId}/credit", 1001, 1001)
+                .param("credit", "1000"))
+                .andExpect(status().isOk());
+
+//      when
+        mockMvc.perform(put("/api/user/{userId}/interest/{interestId}", 1001, 1001)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(new InterestRequest("fortnite", "pro", 7))))
+                .andExpect(status().isOk());
+        creditWriteBuffer.flush();
+
+//      then
+        assertThat(readCredit(1001L)).isEqualTo(7);
+    }
+
+    @Test
+    @Sql({"/h2_integration_test.sql"})
+    public void givenOtherUserInterest_whenUpdateCredit_thenBadRequest() throws Exception {
+//      when and then
+        mockMvc.perform(put("/api/user/{userId}/interest/{interestId}/credit", 1002, 1001)
+                .param("credit", "1000"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message",
+                        is("User with userId: 1002 does not have the interest with interestId : 1001")));
+        assertThat(creditWriteBuffer.getPendingCredit(1001L)).isNull();
+    }
+
+//    Helper methods
+
+    private Integer readCredit(Long interestId) {
+        return jdbcTemplate.queryForObject("SELECT credit FROM interests WHERE interest_id = ?", Integer.class,
+                interestId);
+    }
+}
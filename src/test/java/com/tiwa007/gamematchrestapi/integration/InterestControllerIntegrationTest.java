@@ -2,10 +2,18 @@ package com.tiwa007.gamematchrestapi.integration;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tiwa007.gamematchrestapi.GameMatchRestApiApplication;
+import com.tiwa007.gamematchrestapi.controller.CreditDeltaBatchRequest;
+import com.tiwa007.gamematchrestapi.controller.CreditDeltaRequest;
 import com.tiwa007.gamematchrestapi.controller.InterestRequest;
 import com.tiwa007.gamematchrestapi.entity.Interest;
+import com.tiwa007.gamematchrestapi.entity.User;
 import com.tiwa007.gamematchrestapi.repository.InterestRepository;
 import com.tiwa007.gamematchrestapi.repository.UserRepository;
+import com.tiwa007.gamematchrestapi.service.CacheService;
+import com.tiwa007.gamematchrestapi.service.InterestService;
+import com.tiwa007.gamematchrestapi.service.MatchIndex;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -14,14 +22,29 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.Matchers.hasSize;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -39,8 +62,26 @@ public class InterestControllerIntegrationTest {
     @Autowired
     private InterestRepository interestRepository;
 
+    @Autowired
+    private MatchIndex matchIndex;
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private InterestService interestService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @Before
     public void initDb() {
+//        @Sql scripts write to database directly, so match index is rebuilt and cache is evicted
+        matchIndex.rebuild();
+        cacheService.evictAll();
     }
 
     @After
@@ -128,6 +169,38 @@ public class InterestControllerIntegrationTest {
                 .andExpect(jsonPath("$.message").value("User already has interest with game: " + updateInterest.getGame()));
     }
 
+    //  updateUserInterestByInterestId
+    @Test
+    @Sql({"/h2_integration_test.sql"})
+    public void givenStaleIfMatch_whenUpdateUserInterestByInterestId_thenPreconditionFailed() throws Exception {
+
+//        given
+        String eTag = mockMvc.perform(get("/api/user/{userId}/interest/{interestId}", 1001, 1001))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(put("/api/user/{userId}/interest/{interestId}", 1001, 1001)
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(new InterestRequest("among us", "pro", 1))))
+                .andExpect(status().isOk());
+
+//      when & then
+        mockMvc.perform(get("/api/user/{userId}/interest/{interestId}", 1001, 1001)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(eTag)));
+        mockMvc.perform(put("/api/user/{userId}/interest/{interestId}", 1001, 1001)
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(new InterestRequest("dota", "pro", 2))))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.message").value("Interest with interestId: 1001 is not at version of If-Match: 0"));
+
+        Interest interest = interestRepository.findById(1001L).get();
+        assertThat(interest.getGame()).isEqualTo("among us");
+    }
+
     //  deleteUserInterestByInterestId
     @Test
     @Sql({"/h2_integration_test.sql"})
@@ -161,6 +234,301 @@ public class InterestControllerIntegrationTest {
     }
 
 
+    //  second-level cache
+    @Test
+    @Sql({"/h2_integration_test.sql"})
+    public void givenCachedInterest_whenUpdateUserInterestCredit_thenReturnNewCredit() throws Exception {
+//        given interest read twice, the second read is a cache hit
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        mockMvc.perform(get("/api/user/{userId}/interest/{interestId}", 1001, 1001))
+                .andExpect(jsonPath("$.credit", is(10)));
+        long hitCount = statistics.getSecondLevelCacheHitCount();
+        mockMvc.perform(get("/api/user/{userId}/interest/{interestId}", 1001, 1001))
+                .andExpect(jsonPath("$.credit", is(10)));
+        assertThat(statistics.getSecondLevelCacheHitCount()).isGreaterThan(hitCount);
+
+//      when credit is updated by bulk JPQL update
+        mockMvc.perform(put("/api/user/{userId}/interest/{interestId}/credit", 1001, 1001)
+                .param("credit", "1000"))
+                .andExpect(status().isOk());
+
+//      then cached interest was evicted
+        mockMvc.perform(get("/api/user/{userId}/interest/{interestId}", 1001, 1001))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.credit", is(1000)));
+    }
+
+    @Test
+    @Sql({"/h2_integration_test.sql"})
+    public void givenCachedUser_whenCreateUserInterest_thenReturnUserWithNewInterest() throws Exception {
+//        given user with 2 interests in cache
+        mockMvc.perform(get("/api/user/{userId}", 1001))
+                .andExpect(jsonPath("$.interestSet", hasSize(2)));
+
+//      when
+        mockMvc.perform(post("/api/user/{userId}/interest", 1001)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(new InterestRequest("dota", "pro", 1))))
+                .andExpect(status().isOk());
+
+//      then cached interest set of user was evicted
+        mockMvc.perform(get("/api/user/{userId}", 1001))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.interestSet", hasSize(3)));
+    }
+
+    @Test
+    @Sql({"/h2_integration_test.sql"})
+    public void givenConcurrentInterestsWithSameGame_whenCreateUserInterest_thenOnlyOneIsCreated() throws Exception {
+//        given
+        int threadCount = 16;
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        List<Future<Integer>> futureList = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            futureList.add(executorService.submit(() -> {
+                startLatch.await();
+                return mockMvc.perform(post("/api/user/{userId}/interest", 1001)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(new InterestRequest("dota", "pro", 1))))
+                        .andReturn().getResponse().getStatus();
+            }));
+        }
+
+//      when
+        startLatch.countDown();
+        int createdCount = 0;
+        int rejectedCount = 0;
+        for (Future<Integer> future : futureList) {
+            int status = future.get(30, TimeUnit.SECONDS);
+            if (status == 200)
+                createdCount++;
+            else if (status == 400)
+                rejectedCount++;
+        }
+        executorService.shutdown();
+
+//      then
+        assertThat(createdCount).isEqualTo(1);
+        assertThat(rejectedCount).isEqualTo(threadCount - 1);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM interests WHERE user_id = 1001 AND game = 2", Integer.class)).isEqualTo(1);
+        mockMvc.perform(get("/api/user/{userId}", 1001))
+                .andExpect(jsonPath("$.interestSet", hasSize(3)));
+    }
+
+    @Test
+    @Sql({"/h2_integration_test.sql"})
+    public void givenInterestWithSameGame_whenCreateUserInterest_thenBadRequest() throws Exception {
+//      when and then
+        mockMvc.perform(post("/api/user/{userId}/interest", 1001)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(new InterestRequest("fortnite", "pro", 1))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("User already has interest with game: fortnite")));
+    }
+
+    //  ownership-scoped writes
+    @Test
+    @Sql({"/h2_integration_test.sql"})
+    public void givenOwnInterest_whenUpdateOrDeleteUserInterest_thenOneStatementEach() throws Exception {
+//        given
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+//      when and then
+        statistics.clear();
+        mockMvc.perform(put("/api/user/{userId}/interest/{interestId}", 1001, 1001)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(new InterestRequest("dota", "pro", 1))))
+                .andExpect(status().isOk());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        statistics.clear();
+        mockMvc.perform(put("/api/user/{userId}/interest/{interestId}/credit", 1001, 1001)
+                .param("credit", "20"))
+                .andExpect(status().isOk());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        statistics.clear();
+        mockMvc.perform(delete("/api/user/{userId}/interest/{interestId}", 1001, 1002))
+                .andExpect(status().isOk());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        mockMvc.perform(get("/api/user/{userId}", 1001))
+                .andExpect(jsonPath("$.interestSet", hasSize(1)))
+                .andExpect(jsonPath("$.interestSet[0].game", is("dota")))
+                .andExpect(jsonPath("$.interestSet[0].credit", is(20)));
+        mockMvc.perform(get("/api/user/match")
+                .param("game", "dota")
+                .param("level", "pro")
+                .param("geography", "Europe"))
+                .andExpect(jsonPath("$[?(@.userId == 1001)]").exists());
+    }
+
+    @Test
+    @Sql({"/h2_integration_test.sql"})
+    public void givenOtherUserInterest_whenUpdateOrDeleteUserInterest_thenBadRequest() throws Exception {
+//      when and then
+        mockMvc.perform(put("/api/user/{userId}/interest/{interestId}", 1002, 1001)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(new InterestRequest("dota", "pro", 1))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message",
+                        is("User with userId: 1002 does not have the interest with interestId : 1001")));
+        mockMvc.perform(delete("/api/user/{userId}/interest/{interestId}", 1002, 1001))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(delete("/api/user/{userId}/interest/{interestId}", 9999, 1001))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message", is("User cannot be found with id: 9999")));
+        mockMvc.perform(put("/api/user/{userId}/interest/{interestId}/credit", 1001, 9999)
+                .param("credit", "20"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message", is("Interest cannot be found with id: 9999")));
+
+        mockMvc.perform(get("/api/user/{userId}/interest/{interestId}", 1001, 1001))
+                .andExpect(jsonPath("$.game", is("fortnite")));
+    }
+
+    //  credit delta
+    @Test
+    @Sql({"/h2_integration_test.sql"})
+    public void givenDelta_whenAddUserInterestCredit_thenReturnNewCredit() throws Exception {
+//      when and then
+        mockMvc.perform(post("/api/user/{userId}/interest/{interestId}/credit/delta", 1001, 1001)
+                .param("delta", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.interestId", is(1001)))
+                .andExpect(jsonPath("$.credit", is(15)));
+        mockMvc.perform(get("/api/user/{userId}/interest/{interestId}", 1001, 1001))
+                .andExpect(jsonPath("$.credit", is(15)));
+        mockMvc.perform(get("/api/user/interest/credit/max")
+                .param("game", "fortnite")
+                .param("level", "noob"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].userId", is(1001)));
+    }
+
+    @Test
+    @Sql({"/h2_integration_test.sql"})
+    public void givenDeltaMakingCreditNegative_whenAddUserInterestCredit_thenBadRequest() throws Exception {
+//      when and then
+        mockMvc.perform(post("/api/user/{userId}/interest/{interestId}/credit/delta", 1001, 1001)
+                .param("delta", "-20"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message",
+                        is("Credit of interest with interestId: 1001 should be zero or positive, but would be: -10")));
+        mockMvc.perform(get("/api/user/{userId}/interest/{interestId}", 1001, 1001))
+                .andExpect(jsonPath("$.credit", is(10)));
+    }
+
+    @Test
+    @Sql({"/h2_integration_test.sql"})
+    public void givenDeltasOfSameInterest_whenAddInterestCredits_thenReturnSummedCredits() throws Exception {
+//        given
+        CreditDeltaBatchRequest creditDeltaBatchRequest = new CreditDeltaBatchRequest(Arrays.asList(
+                new CreditDeltaRequest(1001L, 5), new CreditDeltaRequest(1002L, -3), new CreditDeltaRequest(1001L, 1)));
+
+//      when and then
+        mockMvc.perform(post("/api/user/interest/credit/delta")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(creditDeltaBatchRequest)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].interestId", is(1001)))
+                .andExpect(jsonPath("$[0].credit", is(16)))
+                .andExpect(jsonPath("$[1].interestId", is(1002)))
+                .andExpect(jsonPath("$[1].credit", is(5)));
+    }
+
+    @Test
+    @Sql({"/h2_integration_test.sql"})
+    public void givenMissingInterest_whenAddInterestCredits_thenNotFoundAndNoCreditChanged() throws Exception {
+//        given
+        CreditDeltaBatchRequest creditDeltaBatchRequest = new CreditDeltaBatchRequest(Arrays.asList(
+                new CreditDeltaRequest(1001L, 5), new CreditDeltaRequest(9999L, 1)));
+
+//      when and then
+        mockMvc.perform(post("/api/user/interest/credit/delta")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(creditDeltaBatchRequest)))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message", is("Interest cannot be found with id: 9999")));
+        mockMvc.perform(get("/api/user/{userId}/interest/{interestId}", 1001, 1001))
+                .andExpect(jsonPath("$.credit", is(10)));
+    }
+
+    @Test
+    @Sql({"/h2_integration_test.sql"})
+    public void givenConcurrentDeltas_whenAddUserInterestCredit_thenNoUpdateIsLost() throws Exception {
+//        given
+        int threadCount = 8;
+        int deltaCount = 50;
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        List<Future<?>> futureList = new ArrayList<>();
+
+//      when
+        for (int i = 0; i < threadCount; i++) {
+            futureList.add(executorService.submit(() -> {
+                for (int j = 0; j < deltaCount; j++)
+                    interestService.addUserInterestCredit(1001L, 1001L, 1);
+            }));
+        }
+        for (Future<?> future : futureList)
+            future.get(30, TimeUnit.SECONDS);
+        executorService.shutdown();
+
+//      then
+        mockMvc.perform(get("/api/user/{userId}/interest/{interestId}", 1001, 1001))
+                .andExpect(jsonPath("$.credit", is(10 + threadCount * deltaCount)));
+    }
+
+    @Test
+    @Sql({"/h2_integration_test.sql"})
+    public void givenConcurrentUpdates_whenUpdateUserInterest_thenMatchIndexAgreesWithDatabase() throws Exception {
+//        given
+        int threadCount = 8;
+        int updateCount = 25;
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        List<Future<?>> futureList = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            int thread = i;
+            futureList.add(executorService.submit(() -> {
+                startLatch.await();
+                for (int j = 0; j < updateCount; j++) {
+                    int credit = thread * updateCount + j;
+                    if (j % 2 == 0) {
+                        mockMvc.perform(put("/api/user/{userId}/interest/{interestId}", 1001, 1001)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(asJsonString(new InterestRequest("fortnite",
+                                        thread % 2 == 0 ? "noob" : "pro", credit))))
+                                .andExpect(status().isOk());
+                    } else {
+                        mockMvc.perform(put("/api/user/{userId}/interest/{interestId}/credit", 1001, 1001)
+                                .param("credit", String.valueOf(credit)))
+                                .andExpect(status().isOk());
+                    }
+                }
+                return null;
+            }));
+        }
+
+//      when
+        startLatch.countDown();
+        for (Future<?> future : futureList)
+            future.get(60, TimeUnit.SECONDS);
+        executorService.shutdown();
+
+//      then
+        cacheService.evictAll();
+        Interest interest = interestRepository.findById(1001L).get();
+        Interest indexedInterest = matchIndex.getUser(1001L).getInterestSet().stream()
+                .filter(candidate -> candidate.getInterestId().equals(1001L)).findFirst().get();
+        assertThat(indexedInterest.getLevel()).isEqualTo(interest.getLevel());
+        assertThat(indexedInterest.getCredit()).isEqualTo(interest.getCredit());
+        assertThat(matchIndex.findRank(1001L).getCredit()).isEqualTo(interest.getCredit());
+    }
+
     //  Helper method
     static String asJsonString(final Object obj) {
         try {
@@ -0,0 +1,257 @@
+package com.tiwa007.gamematchrestapi.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tiwa007.gamematchrestapi.GameMatchRestApiApplication;
+import com.tiwa007.gamematchrestapi.common.config.ReadYourWritesInterceptor;
+import com.tiwa007.gamematchrestapi.common.config.ReplicaLagMonitor;
+import com.tiwa007.gamematchrestapi.controller.UserRequestWithoutInterest;
+import com.tiwa007.gamematchrestapi.service.CacheService;
+import com.tiwa007.gamematchrestapi.service.CreditWriteBuffer;
+import com.tiwa007.gamematchrestapi.service.MatchIndex;
+import org.flywaydb.core.Flyway;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Two H2 databases stand in for primary and replica. The replica is migrated but never replicated to,
+ * so rows that differ between the two tell which database served a read. The test replicates the heartbeat
+ * of ReplicaLagMonitor by hand to tell how far the replica has caught up.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, classes = GameMatchRestApiApplication.class)
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {"spring.datasource.url=" + ReplicaRoutingIntegrationTest.PRIMARY_URL,
+        "replica.datasource.url=" + ReplicaRoutingIntegrationTest.REPLICA_URL, "replica.max-lag-millis=60000",
+        "replica.heartbeat-millis=3600000", "credit.write-behind.enabled=true",
+        "credit.write-behind.flush-millis=3600000"})
+public class ReplicaRoutingIntegrationTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1";
+
+    static final String REPLICA_URL = "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1";
+
+    private static final String INSERT_USER_SQL =
+            "INSERT INTO users(user_id, name, gender, nickname, geography) VALUES (?, ?, 'male', ?, 0)";
+
+    private static final String INSERT_INTEREST_SQL =
+            "INSERT INTO interests(interest_id, game, level, credit, user_id, geography) VALUES (?, 0, 0, 10, ?, 0)";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MatchIndex matchIndex;
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Autowired
+    private ReplicaLagMonitor replicaLagMonitor;
+
+    @Autowired
+    private CreditWriteBuffer creditWriteBuffer;
+
+    private JdbcTemplate primaryJdbcTemplate;
+
+    private JdbcTemplate replicaJdbcTemplate;
+
+    @Before
+    public void initDb() {
+//        connections of the test share the in-memory databases of the application
+        DataSource replicaDataSource = new DriverManagerDataSource(REPLICA_URL, "sa", "");
+        Flyway.configure().dataSource(replicaDataSource).load().migrate();
+        this.primaryJdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(PRIMARY_URL, "sa", ""));
+        this.replicaJdbcTemplate = new JdbcTemplate(replicaDataSource);
+//        the replica lags behind the primary with older names
+        for (long userId = 3001L; userId <= 3002L; userId++) {
+            this.primaryJdbcTemplate.update(INSERT_USER_SQL, userId, "Primary" + userId, "nickname" + userId);
+            this.replicaJdbcTemplate.update(INSERT_USER_SQL, userId, "Replica" + userId, "nickname" + userId);
+        }
+        matchIndex.rebuild();
+        cacheService.evictAll();
+        this.replicateHeartbeat();
+    }
+
+    @After
+    public void resetDb() {
+        this.primaryJdbcTemplate.update("DELETE FROM interests");
+        this.primaryJdbcTemplate.update("DELETE FROM users");
+        this.replicaJdbcTemplate.update("DELETE FROM interests");
+        this.replicaJdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    public void givenUser_whenGetUserById_thenReadFromReplica() throws Exception {
+//      when and then
+        mockMvc.perform(get("/api/user/{userId}", 3001L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is("Replica3001")));
+    }
+
+    @Test
+    public void givenUpdatedUser_whenGetUserById_thenReadOwnWriteFromPrimary() throws Exception {
+//        given
+        UserRequestWithoutInterest userRB = new UserRequestWithoutInterest("Updated3001", "male", "nickname3001", "Europe");
+        mockMvc.perform(put("/api/user/{userId}", 3001L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(userRB)))
+                .andExpect(status().isOk());
+        cacheService.evictAll();
+
+//      when and then
+        assertThat(this.primaryJdbcTemplate.queryForObject(
+                "SELECT name FROM users WHERE user_id = 3001", String.class)).isEqualTo("Updated3001");
+        assertThat(this.replicaJdbcTemplate.queryForObject(
+                "SELECT name FROM users WHERE user_id = 3001", String.class)).isEqualTo("Replica3001");
+        mockMvc.perform(get("/api/user/{userId}", 3001L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is("Updated3001")));
+//        other users still read from replica
+        mockMvc.perform(get("/api/user/{userId}", 3002L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is("Replica3002")));
+
+//        when the replica has caught up with the write, then user reads from replica again
+        this.replicateHeartbeat();
+        cacheService.evictAll();
+        mockMvc.perform(get("/api/user/{userId}", 3001L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is("Replica3001")));
+    }
+
+    @Test
+    public void givenCreatedUser_whenSameClientGetsUserById_thenReadOwnWriteFromPrimary() throws Exception {
+//        given
+        String response = mockMvc.perform(post("/api/user")
+                .header(ReadYourWritesInterceptor.CLIENT_ID_HEADER, "client1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"name1\",\"gender\":\"male\",\"nickname\":\"nkname1\"," +
+                        "\"geography\":\"Europe\",\"interestSet\":[]}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        long userId = new ObjectMapper().readTree(response).get("userId").asLong();
+        cacheService.evictAll();
+
+//      when and then
+        mockMvc.perform(get("/api/user/{userId}", userId)
+                .header(ReadYourWritesInterceptor.CLIENT_ID_HEADER, "client1"))
+                .andExpect(status().isOk());
+        cacheService.evictAll();
+//        other clients read from replica, which does not have the user yet
+        mockMvc.perform(get("/api/user/{userId}", userId)
+                .header(ReadYourWritesInterceptor.CLIENT_ID_HEADER, "client2"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void givenFlushedCredit_whenGetUserById_thenReadOwnWriteFromPrimary() throws Exception {
+//        given
+        this.primaryJdbcTemplate.update(INSERT_INTEREST_SQL, 3001L, 3001L);
+        this.replicaJdbcTemplate.update(INSERT_INTEREST_SQL, 3001L, 3001L);
+        matchIndex.rebuild();
+        mockMvc.perform(put("/api/user/{userId}/interest/{interestId}/credit", 3001L, 3001L)
+                .param("credit", "500"))
+                .andExpect(status().isOk());
+//        the replica catches up with the request while the credit is still buffered
+        this.replicateHeartbeat();
+        mockMvc.perform(get("/api/user/{userId}", 3001L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is("Replica3001")));
+        Thread.sleep(10);
+
+//      when
+        creditWriteBuffer.flush();
+
+//      then
+        mockMvc.perform(get("/api/user/{userId}", 3001L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is("Primary3001")))
+                .andExpect(jsonPath("$.interestSet[0].credit", is(500)));
+    }
+
+    @Test
+    public void givenLaggingReplica_whenGetUserById_thenReadFromPrimary() throws Exception {
+//        given heartbeat of the replica older than replica.max-lag-millis
+        this.replicaJdbcTemplate.update("UPDATE replica_heartbeat SET beat_millis = ?",
+                System.currentTimeMillis() - 120000);
+        this.replicaLagMonitor.beat();
+
+//      when and then
+        mockMvc.perform(get("/api/user/{userId}", 3001L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is("Primary3001")));
+    }
+
+    @Test
+    public void givenUserReadFromReplica_whenReadFromPrimary_thenReplicaRowIsNotCached() throws Exception {
+//        given
+        mockMvc.perform(get("/api/user/{userId}", 3001L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is("Replica3001")));
+        this.replicaJdbcTemplate.update("UPDATE replica_heartbeat SET beat_millis = ?",
+                System.currentTimeMillis() - 120000);
+        this.replicaLagMonitor.beat();
+
+//      when and then
+        mockMvc.perform(get("/api/user/{userId}", 3001L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is("Primary3001")));
+//        the row read from the primary is cached and served to replica reads
+        this.replicateHeartbeat();
+        mockMvc.perform(get("/api/user/{userId}", 3001L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is("Primary3001")));
+    }
+
+    @Test
+    public void givenUsers_whenGetUsers_thenReadFromReplica() throws Exception {
+//      when and then
+        mockMvc.perform(get("/api/user").param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users[0].name", is("Replica3001")))
+                .andExpect(jsonPath("$.users[1].name", is("Replica3002")));
+    }
+
+    @Test
+    public void givenUsers_whenRebuildMatchIndex_thenReadFromPrimary() throws Exception {
+//      when and then
+        assertThat(this.matchIndex.getUser(3001L).getName()).isEqualTo("Primary3001");
+    }
+
+//    Helper methods
+
+    // copy the last heartbeat of the primary to the replica, as replication would
+    private void replicateHeartbeat() {
+        this.replicaLagMonitor.beat();
+        Long beatMillis = this.primaryJdbcTemplate.queryForObject("SELECT beat_millis FROM replica_heartbeat", Long.class);
+        this.replicaJdbcTemplate.update("UPDATE replica_heartbeat SET beat_millis = ?", beatMillis);
+        this.replicaLagMonitor.beat();
+    }
+
+    static String asJsonString(final Object obj) {
+        try {
+            return new ObjectMapper().writeValueAsString(obj);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.tiwa007.gamematchrestapi.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tiwa007.gamematchrestapi.GameMatchRestApiApplication;
+import com.tiwa007.gamematchrestapi.common.config.ShardDataSourceConfig;
+import com.tiwa007.gamematchrestapi.controller.InterestRequest;
+import com.tiwa007.gamematchrestapi.controller.UserRequest;
+import com.tiwa007.gamematchrestapi.controller.UserRequestWithoutInterest;
+import com.tiwa007.gamematchrestapi.service.CacheService;
+import com.tiwa007.gamematchrestapi.service.MatchIndex;
+import com.tiwa007.gamematchrestapi.service.UserPurger;
+import org.h2.api.Trigger;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Three H2 databases stand in for the shards of Europe, Asia and USA next to the global database of the catalog.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, classes = GameMatchRestApiApplication.class)
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {"spring.datasource.url=jdbc:h2:mem:global;DB_CLOSE_DELAY=-1",
+        "shard.enabled=true",
+        "shard.shards.Europe.number=1", "shard.shards.Europe.url=" + ShardingIntegrationTest.EUROPE_URL,
+        "shard.shards.Asia.number=2", "shard.shards.Asia.url=" + ShardingIntegrationTest.ASIA_URL,
+        "shard.shards.USA.number=3", "shard.shards.USA.url=" + ShardingIntegrationTest.USA_URL})
+public class ShardingIntegrationTest {
+
+    static final String EUROPE_URL = "jdbc:h2:mem:shard_europe;DB_CLOSE_DELAY=-1";
+
+    static final String ASIA_URL = "jdbc:h2:mem:shard_asia;DB_CLOSE_DELAY=-1";
+
+    static final String USA_URL = "jdbc:h2:mem:shard_usa;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MatchIndex matchIndex;
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Autowired
+    private UserPurger userPurger;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private JdbcTemplate europeJdbcTemplate;
+
+    private JdbcTemplate asiaJdbcTemplate;
+
+    private JdbcTemplate usaJdbcTemplate;
+
+    @Before
+    public void initDb() {
+//        connections of the test share the in-memory databases of the application
+        this.europeJdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(EUROPE_URL, "sa", ""));
+        this.asiaJdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(ASIA_URL, "sa", ""));
+        this.usaJdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(USA_URL, "sa", ""));
+    }
+
+    @After
+    public void resetDb() {
+        for (JdbcTemplate jdbcTemplate : new JdbcTemplate[]{europeJdbcTemplate, asiaJdbcTemplate, usaJdbcTemplate}) {
+            jdbcTemplate.update("DELETE FROM interests");
+            jdbcTemplate.update("DELETE FROM users");
+        }
+        matchIndex.rebuild();
+        cacheService.evictAll();
+    }
+
+    @Test
+    public void givenShards_whenStart_thenQueryCacheIsDisabled() {
+//      when and then
+        assertThat(entityManagerFactory.unwrap(SessionFactoryImplementor.class).getSessionFactoryOptions()
+                .isQueryCacheEnabled()).isFalse();
+    }
+
+    @Test
+    public void givenUser_whenCreateUser_thenInsertIntoShardOfGeography() throws Exception {
+//      when
+        long userId = this.createUser("name1", "Asia", "dota", "noob");
+
+//        then
+        assertThat(userId).isGreaterThanOrEqualTo(2L << ShardDataSourceConfig.SHARD_ID_SHIFT);
+        assertThat(userId).isGreaterThan(Integer.MAX_VALUE);
+        assertThat(this.countUsers(asiaJdbcTemplate, userId)).isEqualTo(1);
+        assertThat(this.countUsers(europeJdbcTemplate, userId)).isEqualTo(0);
+        assertThat(this.countUsers(usaJdbcTemplate, userId)).isEqualTo(0);
+        assertThat(asiaJdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM interests WHERE user_id = ?", Integer.class, userId)).isEqualTo(1);
+        mockMvc.perform(get("/api/user/{userId}", userId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.geography", is("Asia")))
+                .andExpect(jsonPath("$.interestSet", hasSize(1)));
+    }
+
+    @Test
+    public void givenUsersOfShards_whenGetUsers_thenMergeShardsInOrderOfUserId() throws Exception {
+//        given
+        long usaUserId = this.createUser("name1", "USA", "dota", "noob");
+        long europeUserId = this.createUser("name2", "Europe", "dota", "noob");
+        long asiaUserId = this.createUser("name3", "Asia", "dota", "noob");
+        long[] userIds = {usaUserId, europeUserId, asiaUserId};
+        Arrays.sort(userIds);
+
+//      when and then
+        mockMvc.perform(get("/api/user").param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users", hasSize(2)))
+                .andExpect(jsonPath("$.users[0].userId").value(userIds[0]))
+                .andExpect(jsonPath("$.users[1].userId").value(userIds[1]))
+                .andExpect(jsonPath("$.nextCursor").exists());
+        mockMvc.perform(get("/api/user").param("geography", "USA"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users", hasSize(1)))
+                .andExpect(jsonPath("$.users[0].userId").value(usaUserId));
+    }
+
+    @Test
+    public void givenUsersOfShards_whenGetUsersByIds_thenGatherShardsInOrderOfIds() throws Exception {
+//        given
+        long europeUserId = this.createUser("name1", "Europe", "dota", "noob");
+        long asiaUserId = this.createUser("name2", "Asia", "dota", "noob");
+
+//      when and then
+        mockMvc.perform(get("/api/user").param("ids", asiaUserId + ",1," + europeUserId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users", hasSize(2)))
+                .andExpect(jsonPath("$.users[0].userId").value(asiaUserId))
+                .andExpect(jsonPath("$.users[0].interestSet", hasSize(1)))
+                .andExpect(jsonPath("$.users[1].userId").value(europeUserId))
+                .andExpect(jsonPath("$.missingIds[0]", is(1)));
+    }
+
+    @Test
+    public void givenUser_whenUpdateGeography_thenMoveUserAndInterestsToShard() throws Exception {
+//        given
+        long userId = this.createUser("name1", "Europe", "dota", "noob");
+        long interestId = europeJdbcTemplate.queryForObject(
+                "SELECT interest_id FROM interests WHERE user_id = ?", Long.class, userId);
+        UserRequestWithoutInterest userRB = new UserRequestWithoutInterest("name1", "male", "nkname1", "USA");
+
+//      when
+        mockMvc.perform(put("/api/user/{userId}", userId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(userRB)))
+                .andExpect(status().isOk());
+
+//        then ids are kept in the new shard
+        assertThat(this.countUsers(europeJdbcTemplate, userId)).isEqualTo(0);
+        assertThat(this.countUsers(usaJdbcTemplate, userId)).isEqualTo(1);
+        assertThat(usaJdbcTemplate.queryForObject(
+                "SELECT user_id FROM interests WHERE interest_id = ?", Long.class, interestId)).isEqualTo(userId);
+//        the new geography is a write of the interest
+        assertThat(usaJdbcTemplate.queryForObject(
+                "SELECT version FROM interests WHERE interest_id = ?", Long.class, interestId)).isEqualTo(1L);
+        cacheService.evictAll();
+        mockMvc.perform(get("/api/user/{userId}", userId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.geography", is("USA")));
+        mockMvc.perform(get("/api/user/{userId}/interest/{interestId}", userId, interestId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.game", is("dota")));
+        mockMvc.perform(get("/api/user/match")
+                .param("game", "dota").param("level", "noob").param("geography", "USA"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].userId").value(userId));
+    }
+
+    @Test
+    public void givenFailingDeleteFromOldShard_whenUpdateGeography_thenKeepUserInOldShardOnly() throws Exception {
+//        given
+        long userId = this.createUser("name1", "Europe", "dota", "noob");
+        UserRequestWithoutInterest userRB = new UserRequestWithoutInterest("name1", "male", "nkname1", "USA");
+        europeJdbcTemplate.execute("CREATE TRIGGER fail_user_delete BEFORE DELETE ON users FOR EACH ROW CALL \"" +
+                FailingTrigger.class.getName() + "\"");
+
+//      when
+        try {
+            mockMvc.perform(put("/api/user/{userId}", userId)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(asJsonString(userRB)))
+                    .andExpect(status().isInternalServerError());
+        } finally {
+            europeJdbcTemplate.execute("DROP TRIGGER fail_user_delete");
+        }
+
+//        then copy is deleted again and the index still routes to the old shard
+        assertThat(this.countUsers(europeJdbcTemplate, userId)).isEqualTo(1);
+        assertThat(europeJdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM interests WHERE user_id = ?", Integer.class, userId)).isEqualTo(1);
+        assertThat(this.countUsers(usaJdbcTemplate, userId)).isEqualTo(0);
+        assertThat(usaJdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM interests WHERE user_id = ?", Integer.class, userId)).isEqualTo(0);
+        assertThat(matchIndex.getUser(userId).getGeography()).isEqualTo("Europe");
+    }
+
+    @Test
+    public void givenUser_whenDeleteUser_thenDeleteFromShard() throws Exception {
+//        given
+        long userId = this.createUser("name1", "Asia", "dota", "noob");
+
+//      when
+        mockMvc.perform(delete("/api/user/{userId}", userId))
+                .andExpect(status().isOk());
+
+//        then
+        assertThat(asiaJdbcTemplate.queryForObject(
+                "SELECT deleted FROM users WHERE user_id = ?", Boolean.class, userId)).isTrue();
+        mockMvc.perform(get("/api/user/{userId}", userId))
+                .andExpect(status().isNotFound());
+        assertThat(userPurger.purgeDeletedUsers()).isEqualTo(1);
+        assertThat(this.countUsers(asiaJdbcTemplate, userId)).isEqualTo(0);
+    }
+
+    @Test
+    public void givenUsersOfShards_whenRebuildMatchIndex_thenIndexAllShards() throws Exception {
+//        given
+        long europeUserId = this.createUser("name1", "Europe", "dota", "noob");
+        long usaUserId = this.createUser("name2", "USA", "dota", "noob");
+
+//      when
+        matchIndex.rebuild();
+
+//        then
+        assertThat(matchIndex.getUser(europeUserId).getGeography()).isEqualTo("Europe");
+        assertThat(matchIndex.getUser(usaUserId).getGeography()).isEqualTo("USA");
+    }
+
+    @Test
+    public void givenInterestsOfShards_whenAddInterestCredits_thenBadRequest() throws Exception {
+//        given
+        this.createUser("name1", "Europe", "dota", "noob");
+        this.createUser("name2", "USA", "dota", "noob");
+        long europeInterestId = europeJdbcTemplate.queryForObject("SELECT interest_id FROM interests", Long.class);
+        long usaInterestId = usaJdbcTemplate.queryForObject("SELECT interest_id FROM interests", Long.class);
+
+//      when and then
+        mockMvc.perform(post("/api/user/interest/credit/delta")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"deltas\":[{\"interestId\":" + europeInterestId + ",\"delta\":1}," +
+                        "{\"interestId\":" + usaInterestId + ",\"delta\":1}]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").exists());
+    }
+
+//    Helper methods
+
+    private long createUser(String name, String geography, String game, String level) throws Exception {
+        UserRequest userRB = new UserRequest(name, "male", "nkname1", geography, new HashSet<>());
+        userRB.getInterestSet().add(new InterestRequest(game, level, 0));
+        String response = mockMvc.perform(post("/api/user")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(userRB)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        JsonNode userNode = new ObjectMapper().readTree(response);
+        return userNode.get("userId").asLong();
+    }
+
+    private int countUsers(JdbcTemplate jdbcTemplate, long userId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users WHERE user_id = ?", Integer.class, userId);
+    }
+
+    /**
+     * H2 trigger failing every statement it is created on
+     */
+    public static class FailingTrigger implements Trigger {
+
+        @Override
+        public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before,
+                         int type) {
+        }
+
+        @Override
+        public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+            throw new SQLException("Shard is unavailable");
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void remove() {
+        }
+    }
+
+    static String asJsonString(final Object obj) {
+        try {
+            return new ObjectMapper().writeValueAsString(obj);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
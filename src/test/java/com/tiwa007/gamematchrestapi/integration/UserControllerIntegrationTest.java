@@ -1,5 +1,6 @@
 package com.tiwa007.gamematchrestapi.integration;
 
+import com.jayway.jsonpath.JsonPath;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tiwa007.gamematchrestapi.GameMatchRestApiApplication;
 import com.tiwa007.gamematchrestapi.controller.InterestRequest;
@@ -8,6 +9,12 @@ import com.tiwa007.gamematchrestapi.controller.UserRequestWithoutInterest;
 import com.tiwa007.gamematchrestapi.entity.User;
 import com.tiwa007.gamematchrestapi.repository.InterestRepository;
 import com.tiwa007.gamematchrestapi.repository.UserRepository;
+import com.tiwa007.gamematchrestapi.service.CacheService;
+import com.tiwa007.gamematchrestapi.service.InterestGeographyCheck;
+import com.tiwa007.gamematchrestapi.service.MatchIndex;
+import com.tiwa007.gamematchrestapi.service.UserPurger;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -16,18 +23,25 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import javax.persistence.EntityManagerFactory;
 import java.util.*;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.Matchers.hasSize;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -45,12 +59,35 @@ public class UserControllerIntegrationTest {
     @Autowired
     private InterestRepository interestRepository;
 
+    @Autowired
+    private MatchIndex matchIndex;
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private InterestGeographyCheck interestGeographyCheck;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserPurger userPurger;
+
     @Before
     public void initDb() {
+//        @Sql scripts write to database directly, so match index is rebuilt and cache is evicted
+        matchIndex.rebuild();
+        cacheService.evictAll();
     }
 
     @After
     public void resetDb() {
+//        deleted users are hidden from userRepository
+        userPurger.purgeDeletedUsers();
         userRepository.deleteAll();
         interestRepository.deleteAll();
     }
@@ -62,25 +99,184 @@ public class UserControllerIntegrationTest {
         assertThat(interestRepository).isNotNull();
     }
 
-//    getAllUsers
+//    getUsers
     @Test
     @Sql({"/h2_integration_test.sql"})
-    public void givenUsers_whenGetAllUsers_thenReturnUserList() throws Exception {
+    public void givenUsers_whenGetUsers_thenReturnFirstPage() throws Exception {
 
 //      when and then
         mockMvc.perform(get("/api/user").contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$", hasSize(10)))
-                .andExpect(jsonPath("$[0].userId", is(1001)))
-                .andExpect(jsonPath("$[1].userId", is(1002)))
-                .andExpect(jsonPath("$[2].userId", is(1003)))
-                .andExpect(jsonPath("$[3].userId", is(1004)))
-                .andExpect(jsonPath("$[4].userId", is(1005)))
-                .andExpect(jsonPath("$[5].userId", is(1006)))
-                .andExpect(jsonPath("$[6].userId", is(1007)))
-                .andExpect(jsonPath("$[7].userId", is(1008)))
-                .andExpect(jsonPath("$[8].userId", is(1009)))
-                .andExpect(jsonPath("$[9].userId", is(1010)));
+                .andExpect(jsonPath("$.users", hasSize(10)))
+                .andExpect(jsonPath("$.users[0].userId", is(1001)))
+                .andExpect(jsonPath("$.users[0].interestSet", hasSize(2)))
+                .andExpect(jsonPath("$.users[1].userId", is(1002)))
+                .andExpect(jsonPath("$.users[2].userId", is(1003)))
+                .andExpect(jsonPath("$.users[3].userId", is(1004)))
+                .andExpect(jsonPath("$.users[4].userId", is(1005)))
+                .andExpect(jsonPath("$.users[5].userId", is(1006)))
+                .andExpect(jsonPath("$.users[6].userId", is(1007)))
+                .andExpect(jsonPath("$.users[7].userId", is(1008)))
+                .andExpect(jsonPath("$.users[8].userId", is(1009)))
+                .andExpect(jsonPath("$.users[9].userId", is(1010)))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    @Sql({"/h2_integration_test.sql"})
+    public void givenFilters_whenGetUsersByCursor_thenReturnNextPages() throws Exception {
+
+//      when
+        MvcResult firstPage = mockMvc.perform(get("/api/user")
+                .param("size", "1")
+                .param("geography", "Europe")
+                .param("game", "fortnite"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users", hasSize(1)))
+                .andExpect(jsonPath("$.users[0].userId", is(1001)))
+                .andReturn();
+        String nextCursor = JsonPath.read(firstPage.getResponse().getContentAsString(), "$.nextCursor");
+
+//      then last page
+        mockMvc.perform(get("/api/user")
+                .param("cursor", nextCursor)
+                .param("size", "1")
+                .param("geography", "Europe")
+                .param("game", "fortnite"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users", hasSize(1)))
+                .andExpect(jsonPath("$.users[0].userId", is(1003)))
+                .andExpect(jsonPath("$.users[0].interestSet", hasSize(2)))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+//    getUsersByIds
+    @Test
+    @Sql({"/h2_integration_test.sql"})
+    public void givenUserIds_whenGetUsersByIds_thenReturnUsersWithMissingIds() throws Exception {
+//        given
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+//      when and then
+        mockMvc.perform(get("/api/user").param("ids", "1003,9999,1001"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users", hasSize(2)))
+                .andExpect(jsonPath("$.users[0].userId", is(1003)))
+                .andExpect(jsonPath("$.users[0].interestSet", hasSize(2)))
+                .andExpect(jsonPath("$.users[1].userId", is(1001)))
+                .andExpect(jsonPath("$.users[1].interestSet", hasSize(2)))
+                .andExpect(jsonPath("$.missingIds", hasSize(1)))
+                .andExpect(jsonPath("$.missingIds[0]", is(9999)));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1L);
+    }
+
+    @Test
+    @Sql({"/h2_integration_test.sql"})
+    public void givenUserIdsInBody_whenGetUsersByIdsInBody_thenReturnUsersWithMissingIds() throws Exception {
+//      when and then
+        mockMvc.perform(post("/api/user/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"ids\":[1002,1010,1]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users", hasSize(2)))
+                .andExpect(jsonPath("$.users[0].userId", is(1002)))
+                .andExpect(jsonPath("$.users[1].userId", is(1010)))
+                .andExpect(jsonPath("$.missingIds[0]", is(1)));
+        mockMvc.perform(post("/api/user/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"ids\":[]}"))
+                .andExpect(status().isBadRequest());
+    }
+
+//    exportUsers
+    @Test
+    @Sql({"/h2_integration_test.sql"})
+    public void givenUsers_whenExportUsers_thenStreamOneLinePerUser() throws Exception {
+
+//      when
+        MvcResult asyncResult = mockMvc.perform(get("/api/user/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String content = mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+//      then
+        String[] lines = content.split("\n");
+        assertThat(lines.length).isEqualTo(10);
+        User firstUser = new ObjectMapper().readValue(lines[0], User.class);
+        assertThat(firstUser.getUserId()).isEqualTo(1001L);
+        assertThat(firstUser.getGeography()).isEqualTo("Europe");
+        assertThat(firstUser.getInterestSet().size()).isEqualTo(2);
+        assertThat(JsonPath.<String>read(lines[0], "$.interestSet[1].game")).isEqualTo("call of duty");
+        assertThat(JsonPath.<Integer>read(lines[9], "$.userId")).isEqualTo(1010);
+        assertThat(JsonPath.<String>read(lines[9], "$.interestSet[0].level")).isEqualTo("noob");
+    }
+
+//    importUsers
+    @Test
+    public void givenNdjsonBody_whenImportUsers_thenImportValidRecordsAndReportErrors() throws Exception {
+
+//        given
+        String body = "{\"name\":\"Name1\",\"gender\":\"male\",\"nickname\":\"nk1\",\"geography\":\"USA\"," +
+                "\"interestSet\":[{\"game\":\"dota\",\"level\":\"pro\",\"credit\":3}]}\n" +
+                "{\"name\":\"Name2\",\"gender\":\"male\",\"nickname\":\"nk2\",\"geography\":\"Mars\"}\n" +
+                "not json\n" +
+                "{\"name\":\"Name3\",\"gender\":\"female\",\"nickname\":\"nk3\",\"geography\":\"USA\"," +
+                "\"interestSet\":[{\"game\":\"dota\",\"level\":\"pro\"},{\"game\":\"dota\",\"level\":\"noob\"}]}\n";
+
+//      when and then
+        mockMvc.perform(post("/api/user/import")
+                .contentType("application/x-ndjson")
+                .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.importedCount", is(1)))
+                .andExpect(jsonPath("$.failedCount", is(3)))
+                .andExpect(jsonPath("$.errors[0].line", is(2)))
+                .andExpect(jsonPath("$.errors[0].message",
+                        is("geography: Geography should be one of [Europe, Asia, USA]")))
+                .andExpect(jsonPath("$.errors[1].line", is(3)))
+                .andExpect(jsonPath("$.errors[2].line", is(4)))
+                .andExpect(jsonPath("$.errors[2].message", is("User has different interests with same game")));
+
+        List<User> matchUserList = matchIndex.findMatchUsers("dota", "pro", "USA");
+        assertThat(matchUserList.size()).isEqualTo(1);
+        assertThat(matchUserList.get(0).getName()).isEqualTo("Name1");
+    }
+
+    @Test
+    public void givenCsvBody_whenImportUsers_thenImportUsersWithInterests() throws Exception {
+
+//        given
+        String body = "name,gender,nickname,geography,interests\n" +
+                "Name1,male,nk1,Asia,fortnite:noob:1;call of duty:pro:\n" +
+                "Name2,female,nk2,Asia,\n" +
+                "Name3,female,nk3\n";
+
+//      when and then
+        mockMvc.perform(post("/api/user/import")
+                .contentType("text/csv")
+                .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.importedCount", is(2)))
+                .andExpect(jsonPath("$.failedCount", is(1)))
+                .andExpect(jsonPath("$.errors[0].line", is(4)))
+                .andExpect(jsonPath("$.errors[0].message", is("CSV record should have 5 columns, but has: 3")));
+
+        assertThat(userRepository.count()).isEqualTo(2);
+        assertThat(interestRepository.count()).isEqualTo(2);
+        assertThat(matchIndex.findMatchUsers("call of duty", "pro", "Asia").size()).isEqualTo(1);
+    }
+
+    @Test
+    public void givenCsvBodyWithoutHeader_whenImportUsers_thenBadRequest() throws Exception {
+
+//      when and then
+        mockMvc.perform(post("/api/user/import")
+                .contentType("text/csv")
+                .content("Name1,male,nk1,Asia,\n"))
+                .andExpect(status().isBadRequest());
     }
 
 //    getUserById
@@ -107,6 +303,46 @@ public class UserControllerIntegrationTest {
                 .andExpect(jsonPath("$.interestSet[1].credit", is(8)));
     }
 
+    @Test
+    @Sql({"/h2_integration_test.sql"})
+    public void givenCachedUser_whenGetUserById_thenNoStatement() throws Exception {
+//        given user and interests in cache
+        mockMvc.perform(get("/api/user/{userId}", 1001L))
+                .andExpect(status().isOk());
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+//      when
+        mockMvc.perform(get("/api/user/{userId}", 1001L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.interestSet", hasSize(2)));
+
+//      then
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(0L);
+        assertThat(statistics.getSecondLevelCacheHitCount()).isGreaterThan(0L);
+        assertThat(statistics.getSecondLevelCacheMissCount()).isEqualTo(0L);
+    }
+
+    @Test
+    @Sql({"/h2_integration_test.sql"})
+    public void givenETag_whenGetUserByIdIfNoneMatch_thenNotModifiedUntilInterestChanges() throws Exception {
+//        given
+        String eTag = mockMvc.perform(get("/api/user/{userId}", 1001L))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+//      when and then
+        mockMvc.perform(get("/api/user/{userId}", 1001L).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(put("/api/user/{userId}/interest/{interestId}/credit", 1001L, 1001L)
+                .param("credit", "11"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/user/{userId}", 1001L).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(eTag)));
+    }
+
     //    createUser()
     @Test
     public void givenUserWithoutInterest_whenCreateUser_thenReturnUser() throws Exception {
@@ -147,6 +383,33 @@ public class UserControllerIntegrationTest {
                 .andExpect(jsonPath("$.interestSet[0].game", is("dota")))
                 .andExpect(jsonPath("$.interestSet[0].level", is("noob")))
                 .andExpect(jsonPath("$.interestSet[0].credit", is(0)));
+
+        assertThat(this.jdbcTemplate.queryForObject(
+                "SELECT geography FROM interests", Integer.class)).isEqualTo(2);
+    }
+
+    @Test
+    public void givenUserWithInterests_whenCreateUser_thenInsertWithoutSelect() throws Exception {
+        //        given
+        UserRequest userRB = produceTestUser("name1", "male", "nkname1", "USA", 0,
+                "dota", "noob");
+        userRB.getInterestSet().add(new InterestRequest("fortnite", "pro", 5));
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        //      when
+        mockMvc.perform(post("/api/user")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(userRB)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.interestSet", hasSize(2)));
+
+        //      then one batched insert per table, at most one sequence call per table and no select
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(3L);
+        assertThat(statistics.getEntityLoadCount()).isEqualTo(0L);
+        assertThat(statistics.getCollectionFetchCount()).isEqualTo(0L);
+        assertThat(statistics.getQueryExecutionCount()).isEqualTo(0L);
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(4L);
     }
 
     //    createUser() with exception
@@ -200,6 +463,72 @@ public class UserControllerIntegrationTest {
         assertThat(user.getNickname()).isEqualTo(userRB.getNickname());
     }
 
+    @Test
+    @Sql({"/h2_integration_test.sql"})
+    public void givenStaleIfMatch_whenUpdateUserById_thenPreconditionFailed() throws Exception {
+//        given
+        String eTag = mockMvc.perform(get("/api/user/{userId}", 1001L))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(put("/api/user/{userId}", 1001L)
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(new UserRequestWithoutInterest("name1", "female", "nkname1", "Europe"))))
+                .andExpect(status().isOk());
+
+//      when and then
+        mockMvc.perform(put("/api/user/{userId}", 1001L)
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(new UserRequestWithoutInterest("name2", "female", "nkname2", "Europe"))))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.message").value(
+                        "User with userId: 1001 is at version: 1, not at version of If-Match: 0"));
+        mockMvc.perform(put("/api/user/{userId}", 1001L)
+                .header(HttpHeaders.IF_MATCH, "\"unknown\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(new UserRequestWithoutInterest("name2", "female", "nkname2", "Europe"))))
+                .andExpect(status().isPreconditionFailed());
+
+        assertThat(this.userRepository.findById(1001L).get().getName()).isEqualTo("name1");
+    }
+
+    @Test
+    @Sql({"/h2_integration_test.sql"})
+    public void givenUserWithNewGeography_whenUpdateUserById_thenMatchByNewGeography() throws Exception {
+        //        given
+        UserRequestWithoutInterest userRB = new UserRequestWithoutInterest("Name1002", "male", "nickname1002", "Europe");
+
+        //      when
+        mockMvc.perform(put("/api/user/{userId}", 1002L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(userRB)))
+                .andExpect(status().isOk());
+
+        //      then
+        assertThat(this.jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM interests WHERE user_id = 1002 AND geography = 0", Integer.class)).isEqualTo(3);
+        assertThat(this.matchIndex.findMatchUsers("dota", "noob", "Asia").stream()
+                .map(User::getUserId).toArray()).containsExactly(1005L);
+        assertThat(this.matchIndex.findMatchUsers("dota", "noob", "Europe").stream()
+                .map(User::getUserId).toArray()).containsExactly(1002L);
+    }
+
+    @Test
+    @Sql({"/h2_integration_test.sql"})
+    public void givenDriftedGeography_whenRepairDriftedGeography_thenCopyGeographyOfUser() throws Exception {
+        //        given
+        this.jdbcTemplate.update("UPDATE interests SET geography = 2 WHERE interest_id = 1004");
+
+        //      when
+        int repairedCount = this.interestGeographyCheck.repairDriftedGeography();
+
+        //      then
+        assertThat(repairedCount).isEqualTo(1);
+        assertThat(this.jdbcTemplate.queryForObject(
+                "SELECT geography FROM interests WHERE interest_id = 1004", Integer.class)).isEqualTo(1);
+        assertThat(this.interestGeographyCheck.repairDriftedGeography()).isEqualTo(0);
+    }
+
     //      deleteUserById
     @Test
     @Sql({"/h2_integration_test.sql"})
@@ -209,11 +538,29 @@ public class UserControllerIntegrationTest {
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk());
 
-
+        //      then user and interests are hidden, rows stay until they are purged
         assertThat(this.userRepository.findById(1001L).isPresent()).isFalse();
+        assertThat(this.jdbcTemplate.queryForObject(
+                "SELECT deleted FROM users WHERE user_id = 1001", Boolean.class)).isTrue();
+        mockMvc.perform(get("/api/user/{userId}", 1001L))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/user/{userId}/interest/{interestId}", 1001L, 1001L))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(put("/api/user/{userId}/interest/{interestId}/credit", 1001L, 1001L)
+                .param("credit", "7"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(delete("/api/user/{userId}", 1001L))
+                .andExpect(status().isNotFound());
+
+        //      when purged
+        assertThat(this.userPurger.purgeDeletedUsers()).isEqualTo(1);
+
+        //      then
+        assertThat(this.jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM users WHERE user_id = 1001", Integer.class)).isEqualTo(0);
         assertThat(this.interestRepository.findById(1001L).isPresent()).isFalse();
         assertThat(this.interestRepository.findById(1002L).isPresent()).isFalse();
-
+        assertThat(this.userPurger.purgeDeletedUsers()).isEqualTo(0);
     }
 
     //    getMatchUserByGameAndLevelAndGeography
@@ -247,6 +594,37 @@ public class UserControllerIntegrationTest {
     }
 
 
+    @Test
+    @Sql({"/h2_integration_test.sql"})
+    public void givenUsers_whenRebuildAndMatch_thenFixedStatementCount() throws Exception {
+        //        given
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        //      when rebuild, users and interests are read as rows in one query
+        matchIndex.rebuild();
+
+        //      then
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1L);
+        assertThat(statistics.getEntityLoadCount()).isEqualTo(0L);
+
+        //      when match and max credit, both are served from index
+        mockMvc.perform(get("/api/user/match")
+                .param("game", "dota"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].interestSet").exists());
+        mockMvc.perform(get("/api/user/interest/credit/max")
+                .param("game", "dota")
+                .param("level", "noob"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+
+        //      then no more statement
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1L);
+        assertThat(statistics.getEntityLoadCount()).isEqualTo(0L);
+        assertThat(statistics.getCollectionFetchCount()).isEqualTo(0L);
+    }
+
     //    getOtherUserMatchUserInterest
     @Test
     @Sql({"/h2_integration_test.sql"})
@@ -275,6 +653,39 @@ public class UserControllerIntegrationTest {
                 .andExpect(jsonPath("$[0].userId", is(1005)));
     }
 
+//        getTopUsersByCredit
+    @Test
+    @Sql({"/h2_integration_test.sql"})
+    public void givenGameAndLevel_whenGetTopUsersByCredit_thenReturnLeaderboardEntryList() throws Exception {
+
+//      when and then
+        mockMvc.perform(get("/api/user/interest/credit/top")
+                .contentType(MediaType.APPLICATION_JSON)
+                .param("game", "fortnite")
+                .param("level", "noob")
+                .param("k", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].rank", is(1)))
+                .andExpect(jsonPath("$[0].user.userId", is(1001)))
+                .andExpect(jsonPath("$[1].user.userId", is(1002)))
+                .andExpect(jsonPath("$[2].user.userId", is(1007)));
+    }
+
+//        getUserInterestCreditRank
+    @Test
+    @Sql({"/h2_integration_test.sql"})
+    public void givenUserIdAndInterestId_whenGetUserInterestCreditRank_thenReturnLeaderboardEntry() throws Exception {
+
+//      when and then
+        mockMvc.perform(get("/api/user/{userId}/interest/{interestId}/credit/rank", 1003L, 1006L)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rank", is(4)))
+                .andExpect(jsonPath("$.credit", is(0)))
+                .andExpect(jsonPath("$.user.userId", is(1003)));
+    }
+
 //    Helper methods
 
     private UserRequest produceTestUser(String name, String gender, String nickname, String geography, Integer credit,
@@ -4,23 +4,27 @@ import com.tiwa007.gamematchrestapi.entity.Interest;
 import com.tiwa007.gamematchrestapi.entity.User;
 import com.tiwa007.gamematchrestapi.repository.InterestRepository;
 import com.tiwa007.gamematchrestapi.repository.UserRepository;
+import com.tiwa007.gamematchrestapi.service.AttributeDictionary;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
 
 @RunWith(SpringRunner.class)
 @DataJpaTest
+@Import(AttributeDictionary.class)
 @Sql({"/h2_repository_test.sql"})
 public class InterestRepositoryTest {
 
@@ -41,25 +45,82 @@ public class InterestRepositoryTest {
     }
 
     @Test
-    public void givenUserAndGame_whenFindInterestByUserAndGame_thenReturnInterestList() {
+    public void givenInterestIdAndCredit_whenUpdateUserInterestCredit_thenSucess() {
 //        given resources/data.sql
 //        when
-        User user = userRepository.findById(10001L).get();
-        List<Interest> interestList = interestRepository.findInterestByUserAndGame(user, "fortnite");
+        int updatedCount = interestRepository.updateUserInterestCredit(10001L, 10001L, 8);
+        Interest interest = interestRepository.findById(10001L).get();
 //        then
-        assertThat(interestList).hasSize(1);
-        assertThat(interestList.get(0).getInterestId()).isEqualTo(10001L);
+        assertThat(updatedCount).isEqualTo(1);
+        assertThat(interest).isNotNull();
+        assertThat(interest.getCredit()).isEqualTo(8);
     }
 
     @Test
-    public void givenInterestIdAndCredit_whenUpdateUserInterestCredit_thenSucess() {
+    public void givenOtherUserId_whenUpdateUserInterestCredit_thenNoRowUpdated() {
 //        given resources/data.sql
 //        when
-        interestRepository.updateUserInterestCredit(10001L, 8);
+        int updatedCount = interestRepository.updateUserInterestCredit(10002L, 10001L, 8);
+//        then
+        assertThat(updatedCount).isEqualTo(0);
+        assertThat(interestRepository.findById(10001L).get().getCredit()).isEqualTo(10);
+    }
+
+    @Test
+    public void givenInterest_whenUpdateUserInterest_thenSuccess() {
+//        given resources/data.sql
+//        when
+        int updatedCount = interestRepository.updateUserInterest(10001L, 10001L, "dota", "pro", 3, null);
         Interest interest = interestRepository.findById(10001L).get();
 //        then
-        assertThat(interest).isNotNull();
-        assertThat(interest.getCredit()).isEqualTo(8);
+        assertThat(updatedCount).isEqualTo(1);
+        assertThat(interest.getGame()).isEqualTo("dota");
+        assertThat(interest.getLevel()).isEqualTo("pro");
+        assertThat(interest.getCredit()).isEqualTo(3);
+    }
+
+    @Test
+    public void givenGameOfOtherInterestOfUser_whenUpdateUserInterest_thenUniqueConstraintViolated() {
+//        given resources/data.sql, interest 10002 of user 10001 is call of duty
+//        when and then
+        assertThatThrownBy(() -> interestRepository.updateUserInterest(10001L, 10001L, "call of duty", "pro", 3, null))
+                .isInstanceOf(DataIntegrityViolationException.class)
+                .hasMessageContaining(Interest.USER_GAME_CONSTRAINT.toUpperCase());
+    }
+
+    @Test
+    public void givenGameOfOtherInterestOfUser_whenSaveInterest_thenUniqueConstraintViolated() {
+//        given resources/data.sql, interest 10001 of user 10001 is fortnite
+        User user = userRepository.findById(10001L).get();
+//        when and then
+        assertThatThrownBy(() -> interestRepository.saveAndFlush(new Interest("fortnite", "pro", 1, user)))
+                .isInstanceOf(DataIntegrityViolationException.class)
+                .hasMessageContaining(Interest.USER_GAME_CONSTRAINT.toUpperCase());
+    }
+
+    @Test
+    public void givenUserId_whenUpdateGeographyByUserId_thenIncrementVersions() {
+//        given resources/data.sql
+//        when
+        int updatedCount = interestRepository.updateGeographyByUserId(10001L, "Asia");
+        Interest interest = interestRepository.findById(10001L).get();
+//        then
+        assertThat(updatedCount).isEqualTo(2);
+        assertThat(interest.getGeography()).isEqualTo("Asia");
+        assertThat(interest.getVersion()).isEqualTo(1L);
+    }
+
+    @Test
+    public void givenUserIdAndInterestId_whenDeleteUserInterest_thenDeleteOnlyOwnInterest() {
+//        given resources/data.sql
+//        when
+        int otherDeletedCount = interestRepository.deleteUserInterest(10002L, 10001L);
+        int deletedCount = interestRepository.deleteUserInterest(10001L, 10001L);
+//        then
+        assertThat(otherDeletedCount).isEqualTo(0);
+        assertThat(deletedCount).isEqualTo(1);
+        assertThat(interestRepository.findOwnerIdByInterestId(10001L)).isEmpty();
+        assertThat(interestRepository.findOwnerIdByInterestId(10002L)).contains(10001L);
     }
 
     @Test
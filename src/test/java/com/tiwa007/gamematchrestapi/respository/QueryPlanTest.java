@@ -0,0 +1,68 @@
+package com.tiwa007.gamematchrestapi.respository;
+
+import com.tiwa007.gamematchrestapi.service.AttributeDictionary;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Query plans of the batch queries of UserPurger, explained by H2 for the SQL the purger runs.
+ * Fails if the queries stop using the indexes of db/migration.
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Import(AttributeDictionary.class)
+@Sql({"/h2_repository_test.sql"})
+public class QueryPlanTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    public void whenExplainFindDeletedUsers_thenUseDeletedIndex() throws Exception {
+//        when
+        String plan = this.explain("SELECT u.user_id FROM users u WHERE u.deleted = TRUE " +
+                "AND NOT EXISTS (SELECT i.interest_id FROM interests i WHERE i.user_id = u.user_id) LIMIT ?");
+//        then
+        assertThat(plan).contains("IX_USERS_DELETED_USER: DELETED = TRUE").doesNotContain("tableScan");
+    }
+
+    @Test
+    public void whenExplainFindInterestsOfDeletedUsers_thenLookUpInterestsByUserId() throws Exception {
+//        when
+        String plan = this.explain("SELECT i.interest_id FROM users u " +
+                "JOIN interests i ON i.user_id = u.user_id WHERE u.deleted = TRUE LIMIT ?");
+//        then
+        assertThat(plan).contains("IX_USERS_DELETED_USER: DELETED = TRUE")
+                .contains(": USER_ID = U.USER_ID").doesNotContain("tableScan");
+    }
+
+//    Helper methods
+
+    /**
+     * Explain SQL, every parameter is bound to 1
+     * @return plan with whitespace collapsed to single spaces
+     */
+    private String explain(String sql) throws Exception {
+        try (Connection connection = this.dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 1; i <= statement.getParameterMetaData().getParameterCount(); i++)
+                statement.setInt(i, 1);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getString(1).replaceAll("\\s+", " ");
+            }
+        }
+    }
+}
@@ -1,24 +1,29 @@
 package com.tiwa007.gamematchrestapi.respository;
 
-import com.tiwa007.gamematchrestapi.entity.Interest;
-import com.tiwa007.gamematchrestapi.entity.User;
 import com.tiwa007.gamematchrestapi.repository.InterestRepository;
+import com.tiwa007.gamematchrestapi.repository.UserInterestRow;
 import com.tiwa007.gamematchrestapi.repository.UserRepository;
+import com.tiwa007.gamematchrestapi.service.AttributeDictionary;
 import org.assertj.core.api.AssertionsForClassTypes;
+import org.hibernate.SessionFactory;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import javax.persistence.EntityManagerFactory;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 @RunWith(SpringRunner.class)
 @DataJpaTest
+@Import(AttributeDictionary.class)
 @Sql({"/h2_repository_test.sql"})
 public class UserRepositoryTest {
 
@@ -28,6 +33,12 @@ public class UserRepositoryTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @Before
     public void setUp() {
     }
@@ -40,25 +51,32 @@ public class UserRepositoryTest {
 
 
     @Test
-    public void whenFindMatchUserByGameAndLevelAndGeography_thenReturnUserList() {
+    public void whenFindAllUserInterestRows_thenReturnRowPerInterestOrderedByUserId() {
 //        given resources/data.sql
 //        when
-        Interest interest = interestRepository.findById(10001L).get();
-        List<User> found = userRepository.findMatchUserByGameAndLevelAndGeography(interest.getGame(),
-                interest.getLevel(), interest.getUser().getGeography());
-//        then user 10001L and 10003L
-        assertThat(found).hasSize(2).contains(userRepository.findById(10001L).get(),
-                userRepository.findById(10003L).get());
+        List<UserInterestRow> found = userRepository.findAllUserInterestRows();
+//        then 15 interests of 10 users
+        assertThat(found).hasSize(15);
+        assertThat(found.get(0).getUserId()).isEqualTo(10001L);
+        assertThat(found.get(0).getInterestId()).isEqualTo(10001L);
+        assertThat(found.get(0).getGame()).isEqualTo("fortnite");
+        assertThat(found.get(0).getGeography()).isEqualTo("Europe");
+        assertThat(found.get(14).getUserId()).isEqualTo(10010L);
     }
 
     @Test
-    public void whenFindUserWithMaxCreditByGameAndLevel_thenReturnUserList() {
-//        given resources/data.sql
-//        when
-        List<User> found = userRepository.findUserWithMaxCreditByGameAndLevel("fortnite",
-                "noob");
-//        then 10001L
-        assertThat(found).hasSize(1).contains(userRepository.findById(10001L).get());
+    public void givenDeletedUser_whenFindUsers_thenDeletedUserIsHidden() {
+//        given resources/data.sql and user 10001L with 2 interests deleted
+        assertThat(userRepository.softDeleteById(10001L)).isEqualTo(1);
+        assertThat(userRepository.softDeleteById(10001L)).isEqualTo(0);
+//        cached users are evicted when the bulk update commits, the test transaction does not commit
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+//        when and then
+        assertThat(userRepository.findById(10001L).isPresent()).isFalse();
+        assertThat(userRepository.existsById(10001L)).isFalse();
+        assertThat(userRepository.findAllUserInterestRows()).hasSize(13);
+        assertThat(jdbcTemplate.queryForObject("SELECT version FROM users WHERE user_id = 10001", Long.class))
+                .isEqualTo(1L);
     }
 
 
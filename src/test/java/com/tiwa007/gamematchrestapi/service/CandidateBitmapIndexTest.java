@@ -0,0 +1,77 @@
+package com.tiwa007.gamematchrestapi.service;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class CandidateBitmapIndexTest {
+
+    private CandidateBitmapIndex candidateBitmapIndex;
+
+    @Before
+    public void setUp() {
+        candidateBitmapIndex = new CandidateBitmapIndex(2, 2, 2);
+        candidateBitmapIndex.replace(Collections.emptyList(), Arrays.asList(
+                new long[]{1, 0, 0, 0},
+                new long[]{2, 0, 0, 1},
+                new long[]{3, 0, 1, 0},
+                new long[]{4, 1, 0, 0}));
+    }
+
+    @Test
+    public void givenAllCodes_whenMatch_thenReturnIntersection() {
+        assertThat(candidateBitmapIndex.match(0, 0, 0).toArray()).containsExactly(1L);
+        assertThat(candidateBitmapIndex.match(1, 1, 1).isEmpty()).isTrue();
+    }
+
+    @Test
+    public void givenAnyCode_whenMatch_thenAttributeIsNotIntersected() {
+        assertThat(candidateBitmapIndex.match(0, 0, CandidateBitmapIndex.ANY).toArray()).containsExactly(1L, 2L);
+        assertThat(candidateBitmapIndex.match(CandidateBitmapIndex.ANY, 0, 0).toArray()).containsExactly(1L, 4L);
+        assertThat(candidateBitmapIndex.match(CandidateBitmapIndex.ANY, CandidateBitmapIndex.ANY,
+                CandidateBitmapIndex.ANY).toArray()).containsExactly(1L, 2L, 3L, 4L);
+    }
+
+    @Test
+    public void givenReplacedInterest_whenMatch_thenOnlyNewCodesMatch() {
+        candidateBitmapIndex.replace(Collections.singletonList(new long[]{1, 0, 0, 0}),
+                Collections.singletonList(new long[]{1, 0, 0, 1}));
+
+        assertThat(candidateBitmapIndex.match(0, 0, 0).isEmpty()).isTrue();
+        assertThat(candidateBitmapIndex.match(0, 0, 1).toArray()).containsExactly(1L, 2L);
+    }
+
+    @Test
+    public void givenMatchResult_whenModified_thenIndexIsUnchanged() {
+        candidateBitmapIndex.match(0, CandidateBitmapIndex.ANY, CandidateBitmapIndex.ANY).addLong(9);
+
+        assertThat(candidateBitmapIndex.match(0, CandidateBitmapIndex.ANY, CandidateBitmapIndex.ANY).toArray())
+                .containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    public void givenCodeAddedToCatalog_whenReplace_thenBitmapIsAdded() {
+        assertThat(candidateBitmapIndex.match(5, CandidateBitmapIndex.ANY, CandidateBitmapIndex.ANY).isEmpty()).isTrue();
+
+        candidateBitmapIndex.replace(Collections.emptyList(), Collections.singletonList(new long[]{5, 5, 0, 1}));
+
+        assertThat(candidateBitmapIndex.match(5, 0, CandidateBitmapIndex.ANY).toArray()).containsExactly(5L);
+        assertThat(candidateBitmapIndex.match(0, 0, 1).toArray()).containsExactly(2L);
+    }
+
+    @Test
+    public void givenInterestIdAboveIntRange_whenMatch_thenReturnInterestId() {
+        long interestId = Integer.MAX_VALUE + 10L;
+        candidateBitmapIndex.replace(Collections.emptyList(), Collections.singletonList(new long[]{interestId, 0, 0, 0}));
+
+        assertThat(candidateBitmapIndex.match(0, 0, 0).toArray()).containsExactly(1L, interestId);
+
+        candidateBitmapIndex.replace(Collections.singletonList(new long[]{interestId, 0, 0, 0}), Collections.emptyList());
+
+        assertThat(candidateBitmapIndex.match(0, 0, 0).toArray()).containsExactly(1L);
+    }
+}
@@ -0,0 +1,201 @@
+package com.tiwa007.gamematchrestapi.service;
+
+import com.tiwa007.gamematchrestapi.common.exception.InvalidRequestException;
+import com.tiwa007.gamematchrestapi.entity.CatalogAttribute;
+import com.tiwa007.gamematchrestapi.entity.CatalogEntry;
+import com.tiwa007.gamematchrestapi.repository.CatalogEntryRepository;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+
+@RunWith(SpringRunner.class)
+public class CatalogServiceTest {
+
+    @TestConfiguration
+    static class CatalogServiceTestContextConfiguration {
+        @Bean
+        public CatalogService catalogService() {
+            return new CatalogService();
+        }
+
+        @Bean
+        public AttributeDictionary attributeDictionary() {
+            return new AttributeDictionary();
+        }
+    }
+
+    @Autowired
+    private CatalogService catalogService;
+
+    @Autowired
+    private AttributeDictionary attributeDictionary;
+
+    @MockBean
+    private CatalogEntryRepository catalogEntryRepository;
+
+    @MockBean
+    private ShardTemplate shardTemplate;
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    @Test
+    public void givenEmptyCatalog_whenReload_thenSaveDefaultValues() {
+//        given
+        given(catalogEntryRepository.findAllByOrderByCodeAsc()).willReturn(new ArrayList<>());
+        given(catalogEntryRepository.saveAll(any())).willAnswer(invocation -> invocation.getArgument(0));
+
+//        when
+        catalogService.reload();
+
+//        then
+        verify(catalogEntryRepository).saveAll(any());
+        assertThat(attributeDictionary.getGameList()).containsExactly("fortnite", "call of duty", "dota", "valhalla",
+                "among us");
+        assertThat(attributeDictionary.getLevelList()).containsExactly("noob", "pro", "invincible");
+        assertThat(attributeDictionary.getGeographyList()).containsExactly("Europe", "Asia", "USA");
+    }
+
+    @Test
+    public void givenCatalogEntries_whenReload_thenSwapDictionary() {
+//        given
+        given(catalogEntryRepository.findAllByOrderByCodeAsc()).willReturn(createEntryList("minecraft"));
+
+//        when
+        catalogService.reload();
+
+//        then
+        assertThat(attributeDictionary.getGameList()).containsExactly("dota", "minecraft");
+        assertThat(attributeDictionary.encodeGame("minecraft")).isEqualTo(1);
+        assertThat(attributeDictionary.encodeGame("fortnite")).isEqualTo(-1);
+        assertThat(catalogService.getCatalog().get("game")).containsExactly("dota", "minecraft");
+    }
+
+    @Test
+    public void givenNewGame_whenAddValue_thenAppendAndReload() {
+//        given
+        given(catalogEntryRepository.findByAttributeOrderByCodeAsc(CatalogAttribute.GAME))
+                .willReturn(createEntryList().subList(0, 1));
+        given(catalogEntryRepository.findAllByOrderByCodeAsc()).willReturn(createEntryList("minecraft"));
+
+//        when
+        Map<String, List<String>> catalog = catalogService.addValue("game", "minecraft");
+
+//        then
+        verify(catalogEntryRepository).saveAndFlush(new CatalogEntry(CatalogAttribute.GAME, (short) 1, "minecraft"));
+        assertThat(catalog.get("game")).containsExactly("dota", "minecraft");
+        assertThat(attributeDictionary.encodeGame("minecraft")).isEqualTo(1);
+    }
+
+    @Test
+    public void givenTransaction_whenAddValue_thenReloadAfterCommit() {
+//        given
+        given(catalogEntryRepository.findByAttributeOrderByCodeAsc(CatalogAttribute.GAME))
+                .willReturn(createEntryList().subList(0, 1));
+        given(catalogEntryRepository.findAllByOrderByCodeAsc()).willReturn(createEntryList("minecraft"));
+        attributeDictionary.swap(Collections.singletonList("dota"), Collections.singletonList("noob"),
+                Collections.singletonList("USA"));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+//        when
+            Map<String, List<String>> catalog = catalogService.addValue("game", "minecraft");
+
+//        then
+            assertThat(catalog.get("game")).containsExactly("dota", "minecraft");
+            assertThat(attributeDictionary.encodeGame("minecraft")).isEqualTo(-1);
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertThat(attributeDictionary.encodeGame("minecraft")).isEqualTo(1);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void givenShardsWithoutGeography_whenAddGeography_thenException() {
+//        given
+        given(shardTemplate.isEnabled()).willReturn(true);
+        given(shardTemplate.getShardGeographyList()).willReturn(Arrays.asList("Europe", "Asia", "USA"));
+
+//        when & then
+        exceptionRule.expect(InvalidRequestException.class);
+        exceptionRule.expectMessage("Catalog geography: Africa has no shard in shard.shards");
+
+        catalogService.addValue("geography", "Africa");
+    }
+
+    @Test
+    public void givenShardOfGeography_whenAddGeography_thenAppendGeography() {
+//        given
+        given(shardTemplate.isEnabled()).willReturn(true);
+        given(shardTemplate.getShardGeographyList()).willReturn(Arrays.asList("USA", "Africa"));
+        given(catalogEntryRepository.findByAttributeOrderByCodeAsc(CatalogAttribute.GEOGRAPHY))
+                .willReturn(createEntryList().subList(2, 3));
+
+//        when
+        Map<String, List<String>> catalog = catalogService.addValue("geography", "Africa");
+
+//        then
+        verify(catalogEntryRepository).saveAndFlush(new CatalogEntry(CatalogAttribute.GEOGRAPHY, (short) 1, "Africa"));
+        assertThat(catalog.get("geography")).containsExactly("USA", "Africa");
+    }
+
+    @Test
+    public void givenExistingGame_whenAddValue_thenException() {
+//        given
+        given(catalogEntryRepository.findByAttributeOrderByCodeAsc(CatalogAttribute.GAME))
+                .willReturn(createEntryList().subList(0, 1));
+
+//        when & then
+        exceptionRule.expect(InvalidRequestException.class);
+        exceptionRule.expectMessage("Catalog game already has value: dota");
+
+        catalogService.addValue("game", "dota");
+    }
+
+    @Test
+    public void givenUnknownAttribute_whenAddValue_thenException() {
+//        when & then
+        exceptionRule.expect(InvalidRequestException.class);
+        exceptionRule.expectMessage("Invalid catalog attribute: mode");
+
+        catalogService.addValue("mode", "ranked");
+    }
+
+    @Test
+    public void givenCodeGap_whenReload_thenException() {
+//        given
+        List<CatalogEntry> entryList = createEntryList();
+        entryList.add(new CatalogEntry(CatalogAttribute.GAME, (short) 2, "minecraft"));
+        given(catalogEntryRepository.findAllByOrderByCodeAsc()).willReturn(entryList);
+
+//        when & then
+        exceptionRule.expect(IllegalStateException.class);
+
+        catalogService.reload();
+    }
+
+    private List<CatalogEntry> createEntryList(String... newGames) {
+        List<CatalogEntry> entryList = new ArrayList<>();
+        entryList.add(new CatalogEntry(CatalogAttribute.GAME, (short) 0, "dota"));
+        entryList.add(new CatalogEntry(CatalogAttribute.LEVEL, (short) 0, "noob"));
+        entryList.add(new CatalogEntry(CatalogAttribute.GEOGRAPHY, (short) 0, "USA"));
+        for (int i = 0; i < newGames.length; i++)
+            entryList.add(new CatalogEntry(CatalogAttribute.GAME, (short) (i + 1), newGames[i]));
+        return entryList;
+    }
+}
@@ -0,0 +1,147 @@
+package com.tiwa007.gamematchrestapi.service;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+public class CreditLeaderboardTest {
+
+    private CreditLeaderboard creditLeaderboard;
+
+    @Before
+    public void setUp() {
+        creditLeaderboard = new CreditLeaderboard();
+        creditLeaderboard.put(1L, 1L, "dota", "noob", 4);
+        creditLeaderboard.put(2L, 2L, "dota", "noob", 10);
+        creditLeaderboard.put(3L, 3L, "dota", "noob", 7);
+        creditLeaderboard.put(4L, 4L, "dota", "pro", 20);
+    }
+
+    @Test
+    public void givenInterests_whenGetMaxCreditUserIds_thenReturnMaxHolder() {
+        assertThat(creditLeaderboard.getMaxCreditUserIds("dota", "noob")).containsExactly(2L);
+        assertThat(creditLeaderboard.getMaxCreditUserIds("dota", "pro")).containsExactly(4L);
+        assertThat(creditLeaderboard.getMaxCreditUserIds("fortnite", "noob")).isEmpty();
+    }
+
+    @Test
+    public void givenTiedCredit_whenGetMaxCreditUserIds_thenReturnAllMaxHolders() {
+        creditLeaderboard.put(3L, 3L, "dota", "noob", 10);
+
+        assertThat(creditLeaderboard.getMaxCreditUserIds("dota", "noob")).containsExactly(2L, 3L);
+    }
+
+    @Test
+    public void givenMaxHolderRemoved_whenGetMaxCreditUserIds_thenReturnNextHolder() {
+        creditLeaderboard.remove(2L);
+
+        assertThat(creditLeaderboard.getMaxCreditUserIds("dota", "noob")).containsExactly(3L);
+    }
+
+    @Test
+    public void givenTiedInserts_whenGetMaxCreditUserIds_thenReturnAllMaxHoldersAfterEachInsert() {
+        assertThat(creditLeaderboard.getMaxCreditUserIds("dota", "noob")).containsExactly(2L);
+
+        creditLeaderboard.put(6L, 6L, "dota", "noob", 10);
+        assertThat(creditLeaderboard.getMaxCreditUserIds("dota", "noob")).containsExactly(2L, 6L);
+
+        creditLeaderboard.put(5L, 5L, "dota", "noob", 10);
+        creditLeaderboard.put(7L, 7L, "dota", "noob", 9);
+        assertThat(creditLeaderboard.getMaxCreditUserIds("dota", "noob")).containsExactly(2L, 5L, 6L);
+
+        creditLeaderboard.put(8L, 8L, "dota", "noob", 11);
+        assertThat(creditLeaderboard.getMaxCreditUserIds("dota", "noob")).containsExactly(8L);
+    }
+
+    @Test
+    public void givenLastMaxEntryRemoved_whenGetMaxCreditUserIds_thenReturnHoldersOfNextCredit() {
+        creditLeaderboard.put(5L, 5L, "dota", "noob", 10);
+        creditLeaderboard.put(6L, 6L, "dota", "noob", 7);
+        assertThat(creditLeaderboard.getMaxCreditUserIds("dota", "noob")).containsExactly(2L, 5L);
+
+        creditLeaderboard.remove(2L);
+        assertThat(creditLeaderboard.getMaxCreditUserIds("dota", "noob")).containsExactly(5L);
+
+        creditLeaderboard.remove(5L);
+        assertThat(creditLeaderboard.getMaxCreditUserIds("dota", "noob")).containsExactly(3L, 6L);
+
+        creditLeaderboard.remove(4L);
+        assertThat(creditLeaderboard.getMaxCreditUserIds("dota", "pro")).isEmpty();
+    }
+
+    @Test
+    public void givenMaxHolderCreditDecreased_whenGetMaxCreditUserIds_thenReturnNewMaxHolder() {
+        creditLeaderboard.put(2L, 2L, "dota", "noob", 1);
+
+        assertThat(creditLeaderboard.getMaxCreditUserIds("dota", "noob")).containsExactly(3L);
+    }
+
+    @Test
+    public void givenInterestMovedLevel_whenGetMaxCreditUserIds_thenReturnHolderOfNewLevel() {
+        creditLeaderboard.put(2L, 2L, "dota", "pro", 30);
+
+        assertThat(creditLeaderboard.getMaxCreditUserIds("dota", "noob")).containsExactly(3L);
+        assertThat(creditLeaderboard.getMaxCreditUserIds("dota", "pro")).containsExactly(2L);
+    }
+
+    @Test
+    public void givenInterestWithoutCredit_whenPut_thenInterestIsNotRanked() {
+        creditLeaderboard.put(5L, 5L, "valhalla", "noob", null);
+        creditLeaderboard.put(4L, 4L, "dota", "pro", null);
+
+        assertThat(creditLeaderboard.getMaxCreditUserIds("valhalla", "noob")).isEmpty();
+        assertThat(creditLeaderboard.getMaxCreditUserIds("dota", "pro")).isEmpty();
+    }
+
+    @Test
+    public void givenRankRange_whenGetRankRange_thenReturnEntriesOrderedByCredit() {
+        List<CreditLeaderboard.Entry> entryList = creditLeaderboard.getRankRange("dota", "noob", 2, 5);
+
+        assertThat(entryList).hasSize(2);
+        assertThat(entryList.get(0).getInterestId()).isEqualTo(3L);
+        assertThat(entryList.get(0).getRank()).isEqualTo(2);
+        assertThat(entryList.get(1).getInterestId()).isEqualTo(1L);
+        assertThat(entryList.get(1).getRank()).isEqualTo(3);
+    }
+
+    @Test
+    public void givenInterestId_whenGetEntry_thenReturnRank() {
+        creditLeaderboard.put(5L, 5L, "dota", "noob", 7);
+
+        assertThat(creditLeaderboard.getEntry(2L).getRank()).isEqualTo(1);
+        assertThat(creditLeaderboard.getEntry(3L).getRank()).isEqualTo(2);
+        assertThat(creditLeaderboard.getEntry(5L).getRank()).isEqualTo(3);
+        assertThat(creditLeaderboard.getEntry(1L).getRank()).isEqualTo(4);
+        assertThat(creditLeaderboard.getEntry(6L)).isNull();
+    }
+
+    @Test
+    public void givenManyInterests_whenGetRankRange_thenRanksMatchSortedOrder() {
+        CreditLeaderboard leaderboard = new CreditLeaderboard();
+        Random random = new Random(7);
+        Map<Long, Integer> creditMap = new HashMap<>();
+        for (long interestId = 1; interestId <= 2000; interestId++) {
+            int credit = random.nextInt(50);
+            creditMap.put(interestId, credit);
+            leaderboard.put(interestId, interestId, "dota", "noob", credit);
+        }
+        for (long interestId = 1; interestId <= 2000; interestId += 3) {
+            creditMap.remove(interestId);
+            leaderboard.remove(interestId);
+        }
+        List<Long> expected = new ArrayList<>(creditMap.keySet());
+        expected.sort(Comparator.comparing((Long interestId) -> -creditMap.get(interestId))
+                .thenComparing(Comparator.naturalOrder()));
+
+        List<CreditLeaderboard.Entry> entryList = leaderboard.getRankRange("dota", "noob", 1, expected.size());
+
+        assertThat(entryList).hasSize(expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(entryList.get(i).getInterestId()).isEqualTo(expected.get(i));
+            assertThat(leaderboard.getEntry(expected.get(i)).getRank()).isEqualTo(i + 1);
+        }
+    }
+}
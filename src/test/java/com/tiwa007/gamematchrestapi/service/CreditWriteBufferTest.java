@@ -0,0 +1,180 @@
+package com.tiwa007.gamematchrestapi.service;
+
+import com.tiwa007.gamematchrestapi.entity.Interest;
+import com.tiwa007.gamematchrestapi.entity.User;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.internal.verification.VerificationModeFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+
+@RunWith(SpringRunner.class)
+@TestPropertySource(properties = {"credit.write-behind.enabled=true", "credit.write-behind.flush-size=3"})
+public class CreditWriteBufferTest {
+
+    @TestConfiguration
+    static class CreditWriteBufferTestContextConfiguration {
+        @Bean
+        public CreditWriteBuffer creditWriteBuffer() {
+            return new CreditWriteBuffer();
+        }
+
+        @Bean
+        public ShardTemplate shardTemplate() {
+            return new ShardTemplate();
+        }
+    }
+
+    @Autowired
+    private CreditWriteBuffer creditWriteBuffer;
+
+    @MockBean
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private TransactionTemplate transactionTemplate;
+
+    @MockBean
+    private CacheService cacheService;
+
+    @MockBean
+    private MatchIndex matchIndex;
+
+    @Before
+    public void setUp() {
+        given(transactionTemplate.execute(any()))
+                .willAnswer(invocation -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+    }
+
+    @After
+    public void tearDown() {
+        reset(jdbcTemplate, transactionTemplate, cacheService);
+        creditWriteBuffer.flush();
+        reset(jdbcTemplate, transactionTemplate, cacheService);
+    }
+
+    @Test
+    public void givenRepeatedUpdates_whenFlush_thenWriteLastCreditOnce() {
+//        given
+        creditWriteBuffer.put(1L, 5);
+        creditWriteBuffer.put(1L, 7);
+        creditWriteBuffer.put(2L, 3);
+        assertThat(creditWriteBuffer.getPendingCount()).isEqualTo(2);
+        assertThat(creditWriteBuffer.getPendingCredit(1L)).isEqualTo(7);
+        InOrder inOrder = inOrder(matchIndex);
+        inOrder.verify(matchIndex).updateCredit(1L, 5);
+        inOrder.verify(matchIndex).updateCredit(1L, 7);
+
+//      when
+        creditWriteBuffer.flush();
+
+//      then
+        List<Object[]> argList = captureBatch();
+        assertThat(argList).hasSize(2);
+        Map<Long, Integer> creditMap = new HashMap<>();
+        for (Object[] args : argList)
+            creditMap.put((Long) args[1], (Integer) args[0]);
+        assertThat(creditMap).containsEntry(1L, 7).containsEntry(2L, 3);
+        verify(cacheService, VerificationModeFactory.times(1)).evictInterests(creditMap.keySet());
+        assertThat(creditWriteBuffer.getPendingCount()).isEqualTo(0);
+        assertThat(creditWriteBuffer.getPendingCredit(1L)).isNull();
+    }
+
+    @Test
+    public void givenFlushSizeReached_whenPut_thenFlush() {
+//      when
+        creditWriteBuffer.put(1L, 1);
+        creditWriteBuffer.put(2L, 2);
+        creditWriteBuffer.put(3L, 3);
+
+//      then
+        assertThat(captureBatch()).hasSize(3);
+        assertThat(creditWriteBuffer.getPendingCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void givenFailedFlush_whenFlush_thenKeepNewerCredit() {
+//        given
+        creditWriteBuffer.put(1L, 5);
+        given(jdbcTemplate.batchUpdate(anyString(), anyList())).willAnswer(invocation -> {
+            // updated again while the batch is written
+            creditWriteBuffer.put(1L, 9);
+            throw new IllegalStateException("Database is down");
+        });
+
+//      when
+        assertThatThrownBy(() -> creditWriteBuffer.flush()).isInstanceOf(IllegalStateException.class);
+
+//      then
+        assertThat(creditWriteBuffer.getPendingCount()).isEqualTo(1);
+        assertThat(creditWriteBuffer.getPendingCredit(1L)).isEqualTo(9);
+    }
+
+    @Test
+    public void givenPendingCredit_whenDiscard_thenNotWritten() {
+//        given
+        creditWriteBuffer.put(1L, 5);
+
+//      when
+        creditWriteBuffer.discard(1L);
+        creditWriteBuffer.flush();
+
+//      then
+        assertThat(creditWriteBuffer.getPendingCredit(1L)).isNull();
+        verify(jdbcTemplate, VerificationModeFactory.times(0)).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    public void givenPendingCredit_whenWithPendingCredits_thenReturnCopyWithPendingCredit() {
+//        given
+        User user = new User("name1", "male", "nkname1", "USA");
+        user.setUserId(1L);
+        Interest interest = new Interest("dota", "noob", 1, user);
+        interest.setInterestId(10L);
+        Interest otherInterest = new Interest("fortnite", "pro", 2, user);
+        otherInterest.setInterestId(11L);
+        user.setInterestSet(new HashSet<>(Arrays.asList(interest, otherInterest)));
+        creditWriteBuffer.put(10L, 100);
+
+//      when
+        User pendingUser = creditWriteBuffer.withPendingCredits(user);
+
+//      then
+        assertThat(pendingUser).isNotSameAs(user);
+        assertThat(pendingUser.getInterestSet()).extracting(Interest::getCredit).containsExactlyInAnyOrder(100, 2);
+        assertThat(interest.getCredit()).isEqualTo(1);
+        assertThat(creditWriteBuffer.withPendingCredit(otherInterest)).isSameAs(otherInterest);
+    }
+
+//    Helper methods
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> captureBatch() {
+        ArgumentCaptor<List<Object[]>> argCaptor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, VerificationModeFactory.times(1)).batchUpdate(anyString(), argCaptor.capture());
+        return argCaptor.getValue();
+    }
+}
@@ -1,10 +1,14 @@
 package com.tiwa007.gamematchrestapi.service;
 
 import com.tiwa007.gamematchrestapi.common.exception.InvalidRequestException;
+import com.tiwa007.gamematchrestapi.common.exception.PreconditionFailedException;
+import com.tiwa007.gamematchrestapi.common.exception.ResourceNotFoundException;
 import com.tiwa007.gamematchrestapi.entity.Interest;
 import com.tiwa007.gamematchrestapi.entity.User;
 import com.tiwa007.gamematchrestapi.repository.InterestRepository;
 import com.tiwa007.gamematchrestapi.repository.UserRepository;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -14,11 +18,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Bean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.*;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.verify;
@@ -32,11 +41,41 @@ public class InterestServiceTest {
         public InterestService interestService() {
             return new InterestService();
         }
+
+        @Bean
+        public MatchIndex matchIndex() {
+            return new MatchIndex();
+        }
+
+        @Bean
+        public AttributeDictionary attributeDictionary() {
+            return new AttributeDictionary();
+        }
+
+        @Bean
+        public ShardTemplate shardTemplate() {
+            return new ShardTemplate();
+        }
     }
 
     @Autowired
     private InterestService interestService;
 
+    @Autowired
+    private MatchIndex matchIndex;
+
+    @MockBean
+    private CacheService cacheService;
+
+    @MockBean
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private TransactionTemplate transactionTemplate;
+
+    @MockBean
+    private CreditWriteBuffer creditWriteBuffer;
+
     @MockBean
     private UserRepository userRepository;
 
@@ -46,6 +85,12 @@ public class InterestServiceTest {
     @Rule
     public ExpectedException exceptionRule = ExpectedException.none();
 
+    @Before
+    public void setUp() {
+        given(transactionTemplate.execute(any()))
+                .willAnswer(invocation -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+    }
+
     @Test
     public void contextLoads() throws Exception {
         assertThat(interestService).isNotNull();
@@ -60,6 +105,7 @@ public class InterestServiceTest {
 //        given
         List<User> userList = createUserList();
         Interest interest = userList.get(0).getInterestSet().iterator().next();
+        given(userRepository.findById(userList.get(0).getUserId())).willReturn(Optional.of(userList.get(0)));
         given(interestRepository.findById(interest.getInterestId())).willReturn(Optional.of(interest));
 //      when & then
         Interest restInterest = this.interestService.getInterestByInterestId(userList.get(0).getUserId(), interest.getInterestId());
@@ -80,20 +126,17 @@ public class InterestServiceTest {
         resInterest.setInterestId(4L);
 
         given(userRepository.findById(userList.get(0).getUserId())).willReturn(Optional.of(userList.get(0)));
-        given(interestRepository.findInterestByUserAndGame(userList.get(0), "fortnite"))
-                .willReturn(new ArrayList<Interest>());
-        given(interestRepository.save(interest)).willReturn(resInterest);
+        given(interestRepository.saveAndFlush(interest)).willReturn(resInterest);
 
 //      when & then
         Interest createdInterest = this.interestService.createUserInterest(interest, userList.get(0).getUserId());
 
         assertThat(createdInterest).isEqualTo(resInterest);
+        assertThat(interest.getGeography()).isEqualTo("USA");
 
         verify(userRepository, VerificationModeFactory.times(1))
                 .findById(userList.get(0).getUserId());
-        verify(interestRepository, VerificationModeFactory.times(1))
-                .findInterestByUserAndGame(userList.get(0), "fortnite");
-        verify(interestRepository, VerificationModeFactory.times(1)).save(interest);
+        verify(interestRepository, VerificationModeFactory.times(1)).saveAndFlush(interest);
 
         reset(userRepository);
         reset(interestRepository);
@@ -107,8 +150,7 @@ public class InterestServiceTest {
         Interest interest = new Interest("fortnite", "pro", 1, userList.get(0));
 
         given(userRepository.findById(userList.get(0).getUserId())).willReturn(Optional.of(userList.get(0)));
-        given(interestRepository.findInterestByUserAndGame(userList.get(0), "fortnite"))
-                .willReturn(Arrays.asList(interest));
+        given(interestRepository.saveAndFlush(interest)).willThrow(createUserGameViolation());
 
 //      when & then
         exceptionRule.expect(InvalidRequestException.class);
@@ -118,8 +160,6 @@ public class InterestServiceTest {
 
         verify(userRepository, VerificationModeFactory.times(1))
                 .findById(userList.get(0).getUserId());
-        verify(interestRepository, VerificationModeFactory.times(1))
-                .findInterestByUserAndGame(userList.get(0), "fortnite");
 
         reset(userRepository);
         reset(interestRepository);
@@ -133,29 +173,52 @@ public class InterestServiceTest {
         List<User> userList = createUserList();
         Interest interest = new Interest("fortnite", "pro", 1, userList.get(0));
         interest.setInterestId(4L);
-        Interest updateInterest = new Interest("fortnite", "noob", 1, userList.get(0));
-        updateInterest.setInterestId(4L);
 
-        given(userRepository.findById(userList.get(0).getUserId())).willReturn(Optional.of(userList.get(0)));
-        given(interestRepository.findById(interest.getInterestId()))
-                .willReturn(Optional.of(interest));
-        given(interestRepository.save(interest)).willReturn(updateInterest);
+        given(interestRepository.updateUserInterest(userList.get(0).getUserId(), interest.getInterestId(),
+                "fortnite", "pro", 1, null)).willReturn(1);
+        matchIndex.indexUser(userList.get(0));
 
 //      when & then
 
         this.interestService.updateUserInterestByInterestId(interest,
-                userList.get(0).getUserId(), interest.getInterestId());
-
-        verify(userRepository, VerificationModeFactory.times(1))
-                .findById(userList.get(0).getUserId());
-        verify(interestRepository, VerificationModeFactory.times(1))
-                .findById(interest.getInterestId());
-        verify(interestRepository, VerificationModeFactory.times(1)).save(interest);
+                userList.get(0).getUserId(), interest.getInterestId(), null);
+
+        verify(interestRepository, VerificationModeFactory.times(1)).updateUserInterest(userList.get(0).getUserId(),
+                interest.getInterestId(), "fortnite", "pro", 1, null);
+        verify(userRepository, VerificationModeFactory.times(0)).findById(any());
+        verify(userRepository, VerificationModeFactory.times(0)).getOne(any());
+        verify(interestRepository, VerificationModeFactory.times(0)).findById(any());
+        verify(interestRepository, VerificationModeFactory.times(0)).save(any());
+        assertThat(matchIndex.getUser(userList.get(0).getUserId()).getInterestSet().stream()
+                .anyMatch(indexedInterest -> indexedInterest.getInterestId().equals(4L)
+                        && indexedInterest.getLevel().equals("pro"))).isTrue();
 
         reset(userRepository);
         reset(interestRepository);
     }
 
+    @Test
+    public void givenEqualInterestIdAbove127_whenUpdateUserInterestByInterestId_thenUpdateInterest() throws Exception {
+
+//        given
+        List<User> userList = createUserList();
+        Interest interest = new Interest("fortnite", "pro", 1, userList.get(0));
+        interest.setInterestId(Long.valueOf(1001L));
+        Long interestId = Long.valueOf(1001L);
+
+        given(interestRepository.updateUserInterest(userList.get(0).getUserId(), interestId,
+                "fortnite", "pro", 1, null)).willReturn(1);
+
+//      when
+        this.interestService.updateUserInterestByInterestId(interest, userList.get(0).getUserId(), interestId, null);
+
+//      then
+        verify(interestRepository, VerificationModeFactory.times(1)).updateUserInterest(userList.get(0).getUserId(),
+                interestId, "fortnite", "pro", 1, null);
+
+        reset(interestRepository);
+    }
+
     @Test
     public void givenInterestHasDifferentInterestId_whenUpdateUserInterestByInterestId_thenException() throws Exception {
 
@@ -177,7 +240,7 @@ public class InterestServiceTest {
         exceptionRule.expectMessage("The interest has a different interestId: " + interest.getInterestId()
                 + " from path variable: " + 1);
 
-        this.interestService.updateUserInterestByInterestId(interest, userList.get(0).getUserId(), 1L);
+        this.interestService.updateUserInterestByInterestId(interest, userList.get(0).getUserId(), 1L, null);
 
         verify(userRepository, VerificationModeFactory.times(0))
                 .findById(userList.get(0).getUserId());
@@ -194,31 +257,75 @@ public class InterestServiceTest {
         List<User> userList = createUserList();
         Interest interest = new Interest("fortnite", "pro", 1, userList.get(0));
         interest.setInterestId(4L);
-        Interest updateInterest = new Interest("dota", "noob", 1, userList.get(0));
-        updateInterest.setInterestId(4L);
-        Interest existingInterest = new Interest("fortnite", "noob", 1, userList.get(0));
-        existingInterest.setInterestId(3L);
 
-        given(userRepository.findById(userList.get(0).getUserId())).willReturn(Optional.of(userList.get(0)));
-        given(interestRepository.findById(interest.getInterestId()))
-                .willReturn(Optional.of(updateInterest));
-        given(interestRepository.findInterestByUserAndGame(userList.get(0), interest.getGame()))
-                .willReturn(Arrays.asList(existingInterest));
+        given(interestRepository.updateUserInterest(userList.get(0).getUserId(), 4L, "fortnite", "pro", 1, null))
+                .willThrow(createUserGameViolation());
 
 //      when & then
 
         exceptionRule.expect(InvalidRequestException.class);
         exceptionRule.expectMessage("User already has interest with game: " + interest.getGame());
 
-        this.interestService.updateUserInterestByInterestId(interest, userList.get(0).getUserId(), 4L);
+        this.interestService.updateUserInterestByInterestId(interest, userList.get(0).getUserId(), 4L, null);
+    }
 
-        verify(userRepository, VerificationModeFactory.times(1))
-                .findById(userList.get(0).getUserId());
-        verify(interestRepository, VerificationModeFactory.times(1))
-                .findById(interest.getInterestId());
-        verify(interestRepository, VerificationModeFactory.times(1))
-                .findInterestByUserAndGame(userList.get(0), interest.getGame());
-        verify(interestRepository, VerificationModeFactory.times(0)).save(interest);
+    @Test
+    public void givenOtherUserInterest_whenUpdateUserInterestByInterestId_thenException() throws Exception {
+
+//        given
+        Interest interest = new Interest("fortnite", "pro", 1, null);
+        interest.setInterestId(4L);
+
+        given(interestRepository.updateUserInterest(1L, 4L, "fortnite", "pro", 1, null)).willReturn(0);
+        given(userRepository.existsById(1L)).willReturn(true);
+        given(interestRepository.findOwnerIdByInterestId(4L)).willReturn(Optional.of(2L));
+
+//      when & then
+
+        exceptionRule.expect(InvalidRequestException.class);
+        exceptionRule.expectMessage("User with userId: 1 does not have the interest with interestId : 4");
+
+        this.interestService.updateUserInterestByInterestId(interest, 1L, 4L, null);
+    }
+
+    @Test
+    public void givenChangedInterest_whenUpdateUserInterestByInterestIdWithVersion_thenPreconditionFailedException()
+            throws Exception {
+
+//        given
+        Interest interest = new Interest("fortnite", "pro", 1, null);
+        interest.setInterestId(4L);
+
+        given(interestRepository.updateUserInterest(1L, 4L, "fortnite", "pro", 1, 3L)).willReturn(0);
+        given(userRepository.existsById(1L)).willReturn(true);
+        given(interestRepository.findOwnerIdByInterestId(4L)).willReturn(Optional.of(1L));
+
+//      when & then
+
+        exceptionRule.expect(PreconditionFailedException.class);
+        exceptionRule.expectMessage("Interest with interestId: 4 is not at version of If-Match: 3");
+
+        this.interestService.updateUserInterestByInterestId(interest, 1L, 4L, 3L);
+    }
+
+    @Test
+    public void givenNoVersionAndNoUpdatedRow_whenUpdateUserInterestByInterestId_thenResourceNotFoundException()
+            throws Exception {
+
+//        given interest deleted concurrently, without If-Match
+        Interest interest = new Interest("fortnite", "pro", 1, null);
+        interest.setInterestId(4L);
+
+        given(interestRepository.updateUserInterest(1L, 4L, "fortnite", "pro", 1, null)).willReturn(0);
+        given(userRepository.existsById(1L)).willReturn(true);
+        given(interestRepository.findOwnerIdByInterestId(4L)).willReturn(Optional.of(1L));
+
+//      when & then
+
+        exceptionRule.expect(ResourceNotFoundException.class);
+        exceptionRule.expectMessage("Interest cannot be found with id: 4");
+
+        this.interestService.updateUserInterestByInterestId(interest, 1L, 4L, null);
     }
 
     //  deleteUserInterestByInterestId
@@ -229,22 +336,36 @@ public class InterestServiceTest {
         List<User> userList = createUserList();
         Interest interest = userList.get(0).getInterestSet().iterator().next();
 
-        given(userRepository.findById(userList.get(0).getUserId())).willReturn(Optional.of(userList.get(0)));
-        given(interestRepository.findById(interest.getInterestId()))
-                .willReturn(Optional.of(interest));
+        given(interestRepository.deleteUserInterest(userList.get(0).getUserId(), interest.getInterestId()))
+                .willReturn(1);
 
 //      when & then
         this.interestService.deleteUserInterestByInterestId(userList.get(0).getUserId(), interest.getInterestId());
 
-        verify(userRepository, VerificationModeFactory.times(1))
-                .findById(userList.get(0).getUserId());
         verify(interestRepository, VerificationModeFactory.times(1))
-                .findById(interest.getInterestId());
+                .deleteUserInterest(userList.get(0).getUserId(), interest.getInterestId());
+        verify(userRepository, VerificationModeFactory.times(0)).existsById(any());
+        verify(interestRepository, VerificationModeFactory.times(0)).findOwnerIdByInterestId(any());
 
         reset(userRepository);
         reset(interestRepository);
     }
 
+    @Test
+    public void givenMissingInterest_whenDeleteUserInterestByInterestId_thenException() throws Exception {
+
+//        given
+        given(interestRepository.deleteUserInterest(1L, 4L)).willReturn(0);
+        given(userRepository.existsById(1L)).willReturn(true);
+        given(interestRepository.findOwnerIdByInterestId(4L)).willReturn(Optional.empty());
+
+//      when & then
+        exceptionRule.expect(ResourceNotFoundException.class);
+        exceptionRule.expectMessage("Interest cannot be found with id: 4");
+
+        this.interestService.deleteUserInterestByInterestId(1L, 4L);
+    }
+
     //  updateUserInterestCreditByInterestId
     @Test
     public void givenInterestCreditAndInterestId_whenUpdateUserInterestCreditByInterestId_thenSucess() throws Exception {
@@ -254,23 +375,41 @@ public class InterestServiceTest {
         Interest interest = userList.get(0).getInterestSet().iterator().next();
         Integer credit = 8;
 
-
-        given(userRepository.findById(userList.get(0).getUserId())).willReturn(Optional.of(userList.get(0)));
-        given(interestRepository.findById(interest.getInterestId()))
-                .willReturn(Optional.of(interest));
+        given(interestRepository.updateUserInterestCredit(userList.get(0).getUserId(), interest.getInterestId(), credit))
+                .willReturn(1);
 
 //      when & then
         this.interestService.updateUserInterestCreditByInterestId(userList.get(0).getUserId(), interest.getInterestId(), credit);
 
-        verify(userRepository, VerificationModeFactory.times(1))
-                .findById(userList.get(0).getUserId());
         verify(interestRepository, VerificationModeFactory.times(1))
-                .findById(interest.getInterestId());
+                .updateUserInterestCredit(userList.get(0).getUserId(), interest.getInterestId(), credit);
+        verify(userRepository, VerificationModeFactory.times(0)).findById(any());
+        verify(interestRepository, VerificationModeFactory.times(0)).findById(any());
 
         reset(userRepository);
         reset(interestRepository);
     }
 
+    @Test
+    public void givenMissingUser_whenUpdateUserInterestCreditByInterestId_thenException() throws Exception {
+
+//        given
+        given(interestRepository.updateUserInterestCredit(1L, 4L, 8)).willReturn(0);
+        given(userRepository.existsById(1L)).willReturn(false);
+
+//      when & then
+        exceptionRule.expect(ResourceNotFoundException.class);
+        exceptionRule.expectMessage("User cannot be found with id: 1");
+
+        this.interestService.updateUserInterestCreditByInterestId(1L, 4L, 8);
+    }
+
+    private DataIntegrityViolationException createUserGameViolation() {
+        return new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("could not execute statement", null,
+                        "PUBLIC.UK_INTERESTS_USER_GAME_INDEX_A"));
+    }
+
     private User produceUser(Long userId, String name, String gender, String nickname, String geography, Integer credit,
                              Long interestId, String game, String level) {
         User user = new User(name, gender, nickname, geography, null);
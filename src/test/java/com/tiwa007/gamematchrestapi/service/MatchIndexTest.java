@@ -0,0 +1,163 @@
+package com.tiwa007.gamematchrestapi.service;
+
+import com.tiwa007.gamematchrestapi.entity.Interest;
+import com.tiwa007.gamematchrestapi.entity.User;
+import com.tiwa007.gamematchrestapi.repository.UserRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+@RunWith(SpringRunner.class)
+public class MatchIndexTest {
+
+    @TestConfiguration
+    static class MatchIndexTestContextConfiguration {
+        @Bean
+        public MatchIndex matchIndex() {
+            return new MatchIndex();
+        }
+
+        @Bean
+        public AttributeDictionary attributeDictionary() {
+            return new AttributeDictionary();
+        }
+
+        @Bean
+        public ShardTemplate shardTemplate() {
+            return new ShardTemplate();
+        }
+    }
+
+    @Autowired
+    private MatchIndex matchIndex;
+
+    @MockBean
+    private UserRepository userRepository;
+
+    @Before
+    public void setUp() {
+        matchIndex.rebuild();
+        matchIndex.indexUser(produceUser(1L, "USA", 1L, "dota", "noob", 0));
+        matchIndex.indexUser(produceUser(2L, "USA", 2L, "dota", "noob", 5));
+        matchIndex.indexUser(produceUser(3L, "Asia", 3L, "dota", "noob", 3));
+    }
+
+    @Test
+    public void givenIndexedUsers_whenFindMatchUsers_thenReturnUsersOrderedByUserId() {
+        List<User> userList = matchIndex.findMatchUsers("dota", "noob", "USA");
+
+        assertThat(userList).hasSize(2);
+        assertThat(userList.get(0).getUserId()).isEqualTo(1L);
+        assertThat(userList.get(1).getUserId()).isEqualTo(2L);
+        assertThat(matchIndex.findMatchUsers("dota", "pro", "USA")).isEmpty();
+    }
+
+    @Test
+    public void givenAttributeLeftOut_whenFindMatchUsers_thenMatchAnyValue() {
+        matchIndex.indexUser(produceUser(4L, "Europe", 4L, "dota", "pro", 1));
+
+        assertThat(matchIndex.findMatchUsers("dota", "noob", null)).extracting(User::getUserId)
+                .containsExactly(1L, 2L, 3L);
+        assertThat(matchIndex.findMatchUsers("dota", null, null)).extracting(User::getUserId)
+                .containsExactly(1L, 2L, 3L, 4L);
+        assertThat(matchIndex.findMatchUsers(null, null, "Asia")).extracting(User::getUserId)
+                .containsExactly(3L);
+        assertThat(matchIndex.findMatchUsers("dota", "noob", "Mars")).isEmpty();
+    }
+
+    @Test
+    public void givenIdsAboveIntRange_whenFindMatchUsers_thenReturnUsersOrderedByUserId() {
+        long userId = Integer.MAX_VALUE + 1L;
+        long interestId = Integer.MAX_VALUE + 2L;
+        matchIndex.indexUser(produceUser(userId, "USA", interestId, "dota", "noob", 2));
+
+        assertThat(matchIndex.findMatchUsers("dota", "noob", "USA")).extracting(User::getUserId)
+                .containsExactly(1L, 2L, userId);
+
+        matchIndex.removeInterest(interestId);
+
+        assertThat(matchIndex.findMatchUsers("dota", "noob", "USA")).extracting(User::getUserId)
+                .containsExactly(1L, 2L);
+    }
+
+    @Test
+    public void givenUserWithTwoMatchingInterests_whenFindMatchUsers_thenUserIsReturnedOnce() {
+        Interest interest = new Interest("fortnite", "noob", 1, null);
+        interest.setInterestId(4L);
+        matchIndex.indexInterest(matchIndex.getUser(1L), interest);
+
+        assertThat(matchIndex.findMatchUsers(null, "noob", "USA")).extracting(User::getUserId)
+                .containsExactly(1L, 2L);
+    }
+
+    @Test
+    public void givenUserChangesGeography_whenUpdateUserProfile_thenUserMovesBucket() {
+        User user = new User("name1", "male", "nkname1", "Asia");
+        user.setUserId(1L);
+
+        matchIndex.updateUserProfile(user);
+
+        assertThat(matchIndex.findMatchUsers("dota", "noob", "USA")).hasSize(1);
+        assertThat(matchIndex.findMatchUsers("dota", "noob", "Asia")).hasSize(2);
+        assertThat(matchIndex.getUser(1L).getInterestSet()).hasSize(1);
+    }
+
+    @Test
+    public void givenNewInterest_whenIndexInterest_thenUserMatchesNewGame() {
+        Interest interest = new Interest("fortnite", "pro", 1, null);
+        interest.setInterestId(4L);
+
+        matchIndex.indexInterest(matchIndex.getUser(1L), interest);
+
+        assertThat(matchIndex.findMatchUsers("fortnite", "pro", "USA")).hasSize(1);
+        assertThat(matchIndex.findMatchUsers("dota", "noob", "USA")).hasSize(2);
+        assertThat(matchIndex.getInterestOwner(4L)).isEqualTo(1L);
+    }
+
+    @Test
+    public void givenInterestId_whenRemoveInterest_thenUserNoLongerMatches() {
+        matchIndex.removeInterest(1L);
+
+        assertThat(matchIndex.findMatchUsers("dota", "noob", "USA")).hasSize(1);
+        assertThat(matchIndex.getInterestOwner(1L)).isNull();
+        assertThat(matchIndex.getUser(1L).getInterestSet()).isEmpty();
+    }
+
+    @Test
+    public void givenInterestId_whenUpdateCredit_thenSnapshotHasNewCredit() {
+        matchIndex.updateCredit(2L, 42);
+
+        assertThat(matchIndex.getUser(2L).getInterestSet().iterator().next().getCredit()).isEqualTo(42);
+    }
+
+    @Test
+    public void givenUserId_whenRemoveUser_thenUserIsNotIndexed() {
+        matchIndex.removeUser(2L);
+
+        assertThat(matchIndex.getUser(2L)).isNull();
+        assertThat(matchIndex.getInterestOwner(2L)).isNull();
+        assertThat(matchIndex.findMatchUsers("dota", "noob", "USA")).hasSize(1);
+    }
+
+    private User produceUser(Long userId, String geography, Long interestId, String game, String level, Integer credit) {
+        User user = new User("name" + userId, "male", "nkname" + userId, geography, null);
+        user.setUserId(userId);
+        Interest interest = new Interest(game, level, credit, user);
+        interest.setInterestId(interestId);
+        Set<Interest> interestSet = new HashSet<>();
+        interestSet.add(interest);
+        user.setInterestSet(interestSet);
+        return user;
+    }
+}
@@ -0,0 +1,223 @@
+package com.tiwa007.gamematchrestapi.service;
+
+import com.tiwa007.gamematchrestapi.common.config.MatchmakingProperties;
+import com.tiwa007.gamematchrestapi.common.exception.InvalidRequestException;
+import com.tiwa007.gamematchrestapi.entity.Interest;
+import com.tiwa007.gamematchrestapi.entity.User;
+import com.tiwa007.gamematchrestapi.repository.InterestRepository;
+import com.tiwa007.gamematchrestapi.repository.UserRepository;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+@RunWith(SpringRunner.class)
+public class MatchmakingServiceTest {
+
+    @TestConfiguration
+    static class MatchmakingServiceTestContextConfiguration {
+        @Bean
+        public MatchmakingService matchmakingService() {
+            return new MatchmakingService();
+        }
+
+        @Bean
+        public UserService userService() {
+            return new UserService();
+        }
+
+        @Bean
+        public MatchIndex matchIndex() {
+            return new MatchIndex();
+        }
+
+        @Bean
+        public AttributeDictionary attributeDictionary() {
+            return new AttributeDictionary();
+        }
+
+        @Bean
+        public MatchmakingProperties matchmakingProperties() {
+            return new MatchmakingProperties();
+        }
+
+        @Bean
+        public ShardTemplate shardTemplate() {
+            return new ShardTemplate();
+        }
+    }
+
+    @Autowired
+    private MatchmakingService matchmakingService;
+
+    @Autowired
+    private MatchIndex matchIndex;
+
+    @Autowired
+    private MatchmakingProperties matchmakingProperties;
+
+    @MockBean
+    private CreditWriteBuffer creditWriteBuffer;
+
+    @MockBean
+    private UserRepository userRepository;
+
+    @MockBean
+    private InterestRepository interestRepository;
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    @Before
+    public void setUp() {
+        for (long id = 1; id <= 5; id++)
+            matchIndex.indexUser(produceUser(id, id <= 3 ? "USA" : "Asia", id, "dota", "noob"));
+    }
+
+    @Test
+    public void givenCompatibleTickets_whenTick_thenTicketsAreMatchedInPairs() {
+//        given
+        Ticket ticket1 = matchmakingService.enqueue(1L, 1L);
+        Ticket ticket2 = matchmakingService.enqueue(2L, 2L);
+        Ticket ticket3 = matchmakingService.enqueue(3L, 3L);
+        Ticket ticket4 = matchmakingService.enqueue(4L, 4L);
+
+//        when
+        matchmakingService.tick();
+
+//        then
+        assertThat(ticket1.getStatus()).isEqualTo(Ticket.Status.MATCHED);
+        assertThat(ticket2.getStatus()).isEqualTo(Ticket.Status.MATCHED);
+        assertThat(ticket1.getMatch()).isSameAs(ticket2.getMatch());
+        assertThat(ticket1.getMatch().getUserIds()).containsExactly(1L, 2L);
+        assertThat(ticket3.getStatus()).isEqualTo(Ticket.Status.WAITING);
+        assertThat(ticket4.getStatus()).isEqualTo(Ticket.Status.WAITING);
+
+//        when user 5 from Asia joins
+        Ticket ticket5 = matchmakingService.enqueue(5L, 5L);
+        matchmakingService.tick();
+
+//        then
+        assertThat(ticket3.getStatus()).isEqualTo(Ticket.Status.WAITING);
+        assertThat(ticket4.getMatch().getUserIds()).containsExactly(4L, 5L);
+        assertThat(matchmakingService.getTicket(ticket5.getTicketId())).isSameAs(ticket5);
+
+        matchmakingService.cancel(ticket3.getTicketId());
+    }
+
+    @Test
+    public void givenCancelledTicket_whenTick_thenTicketIsNotMatched() {
+//        given
+        Ticket ticket1 = matchmakingService.enqueue(1L, 1L);
+        Ticket ticket2 = matchmakingService.enqueue(2L, 2L);
+        matchmakingService.cancel(ticket1.getTicketId());
+
+//        when
+        matchmakingService.tick();
+
+//        then
+        assertThat(ticket1.getStatus()).isEqualTo(Ticket.Status.CANCELLED);
+        assertThat(ticket2.getStatus()).isEqualTo(Ticket.Status.WAITING);
+
+        matchmakingService.cancel(ticket2.getTicketId());
+    }
+
+    @Test
+    public void givenTicketWaitingTooLong_whenTick_thenTicketExpires() {
+//        given
+        Ticket ticket1 = matchmakingService.enqueue(1L, 1L);
+        matchmakingService.tick(ticket1.getCreatedAt());
+        assertThat(ticket1.getStatus()).isEqualTo(Ticket.Status.WAITING);
+
+//        when
+        matchmakingService.tick(ticket1.getCreatedAt() + matchmakingProperties.getMaxWaitMillis());
+
+//        then expired ticket is not matched and its interest can wait again
+        assertThat(ticket1.getStatus()).isEqualTo(Ticket.Status.EXPIRED);
+        assertThat(ticket1.getMatch()).isNull();
+        assertThat(matchmakingService.getStats().get("waitingCount")).isEqualTo(0L);
+        Ticket ticket2 = matchmakingService.enqueue(2L, 2L);
+        matchmakingService.tick(ticket2.getCreatedAt());
+        assertThat(ticket2.getStatus()).isEqualTo(Ticket.Status.WAITING);
+        Ticket ticket3 = matchmakingService.enqueue(1L, 1L);
+        matchmakingService.tick(ticket3.getCreatedAt());
+        assertThat(ticket2.getStatus()).isEqualTo(Ticket.Status.MATCHED);
+        assertThat(ticket3.getMatch()).isSameAs(ticket2.getMatch());
+    }
+
+    @Test
+    public void givenWaitingTicket_whenEnqueueSameInterest_thenException() {
+//        given
+        Ticket ticket = matchmakingService.enqueue(1L, 1L);
+
+//        expectations
+        exceptionRule.expect(InvalidRequestException.class);
+        exceptionRule.expectMessage("Interest with interestId: 1 is already waiting for a match");
+
+        try {
+            matchmakingService.enqueue(1L, 1L);
+        } finally {
+            matchmakingService.cancel(ticket.getTicketId());
+        }
+    }
+
+    @Test
+    public void givenWideningSchedule_whenTicketsWait_thenLevelAndRegionWindowsGrow() {
+//        given
+        MatchmakingProperties.Widening widening = matchmakingProperties.getWidening();
+        widening.setEnabled(true);
+        widening.setSteps(Arrays.asList(new MatchmakingProperties.Step(1000, 0, 1),
+                new MatchmakingProperties.Step(2000, 1, 1)));
+        widening.getRegionNeighbors().put("Asia", Arrays.asList("Europe"));
+        widening.getRegionNeighbors().put("Europe", Arrays.asList("Asia"));
+        matchIndex.indexUser(produceUser(11L, "Asia", 11L, "valhalla", "invincible"));
+        matchIndex.indexUser(produceUser(12L, "Europe", 12L, "valhalla", "pro"));
+
+        try {
+            Ticket ticket1 = matchmakingService.enqueue(11L, 11L);
+            Ticket ticket2 = matchmakingService.enqueue(12L, 12L);
+            long now = Math.max(ticket1.getCreatedAt(), ticket2.getCreatedAt());
+
+//        when strict, then no match
+            matchmakingService.tick(now);
+            assertThat(ticket1.getStatus()).isEqualTo(Ticket.Status.WAITING);
+
+//        when region widened, then level still differs
+            matchmakingService.tick(now + 1500);
+            assertThat(ticket1.getStatus()).isEqualTo(Ticket.Status.WAITING);
+
+//        when level widened, then matched across level and region
+            matchmakingService.tick(now + 2500);
+            assertThat(ticket1.getStatus()).isEqualTo(Ticket.Status.MATCHED);
+            assertThat(ticket2.getMatch()).isSameAs(ticket1.getMatch());
+            assertThat(ticket1.getMatch().getUserIds()).containsExactly(11L, 12L);
+            assertThat(matchmakingService.getStats().get("matchedCount")).isGreaterThanOrEqualTo(2L);
+            assertThat(matchmakingService.getStats().get("p99Millis")).isGreaterThanOrEqualTo(2000L);
+        } finally {
+            widening.setEnabled(false);
+        }
+    }
+
+    private User produceUser(Long userId, String geography, Long interestId, String game, String level) {
+        User user = new User("name" + userId, "male", "nkname" + userId, geography, null);
+        user.setUserId(userId);
+        Interest interest = new Interest(game, level, 0, user);
+        interest.setInterestId(interestId);
+        Set<Interest> interestSet = new HashSet<>();
+        interestSet.add(interest);
+        user.setInterestSet(interestSet);
+        return user;
+    }
+}
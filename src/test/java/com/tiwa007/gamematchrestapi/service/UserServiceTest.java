@@ -1,6 +1,7 @@
 package com.tiwa007.gamematchrestapi.service;
 
 import com.tiwa007.gamematchrestapi.common.exception.InvalidRequestException;
+import com.tiwa007.gamematchrestapi.common.exception.PreconditionFailedException;
 import com.tiwa007.gamematchrestapi.common.exception.ResourceNotFoundException;
 import com.tiwa007.gamematchrestapi.entity.Interest;
 import com.tiwa007.gamematchrestapi.entity.User;
@@ -15,11 +16,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.util.*;
 
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.verify;
@@ -33,11 +36,32 @@ public class UserServiceTest {
         public UserService userService() {
             return new UserService();
         }
+
+        @Bean
+        public MatchIndex matchIndex() {
+            return new MatchIndex();
+        }
+
+        @Bean
+        public AttributeDictionary attributeDictionary() {
+            return new AttributeDictionary();
+        }
+
+        @Bean
+        public ShardTemplate shardTemplate() {
+            return new ShardTemplate();
+        }
     }
 
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private MatchIndex matchIndex;
+
+    @MockBean
+    private CreditWriteBuffer creditWriteBuffer;
+
     @MockBean
     private UserRepository userRepository;
 
@@ -54,26 +78,103 @@ public class UserServiceTest {
         assertThat(interestRepository).isNotNull();
     }
 
-    //    getAllUsers
+    //    getUsers
 
     @Test
-    public void givenUsers_whenGetAllUsers_thenReturnUserList() throws Exception {
+    public void givenMoreUsersThanSize_whenGetUsers_thenReturnPageWithNextCursor() throws Exception {
 //        given
         List<User> userList = createUserList();
-        given(userRepository.findAll()).willReturn(userList);
+        given(userRepository.findUserIdPage(0L, null, null, PageRequest.of(0, 2)))
+                .willReturn(Arrays.asList(1L, 2L));
+        given(userRepository.findWithInterestsByUserIdIn(Arrays.asList(1L))).willReturn(userList.subList(0, 1));
 
 //      when
-        List<User> obtainedUserList = userService.getAllUsers();
+        UserPage userPage = userService.getUsers(null, 1, null, null);
+
 //      then
+        assertThat(userPage.getUsers()).containsExactly(userList.get(0));
+        assertThat(userPage.getNextCursor()).isNotNull();
 
-        for (User user : userList) {
-            assertThat(obtainedUserList).contains(user);
-        }
+//      given next page
+        given(userRepository.findUserIdPage(1L, null, null, PageRequest.of(0, 2)))
+                .willReturn(Arrays.asList(2L));
+        given(userRepository.findWithInterestsByUserIdIn(Arrays.asList(2L))).willReturn(userList.subList(1, 2));
+
+//      when
+        UserPage nextUserPage = userService.getUsers(userPage.getNextCursor(), 1, null, null);
 
-        verify(userRepository, VerificationModeFactory.times(1)).findAll();
+//      then
+        assertThat(nextUserPage.getUsers()).containsExactly(userList.get(1));
+        assertThat(nextUserPage.getNextCursor()).isNull();
+        verify(userRepository, VerificationModeFactory.times(0)).findAll();
         reset(userRepository);
     }
 
+    @Test
+    public void givenInvalidCursor_whenGetUsers_thenException() throws Exception {
+//      when & then
+        exceptionRule.expect(InvalidRequestException.class);
+        exceptionRule.expectMessage("Invalid cursor: abc");
+
+        userService.getUsers("abc", 20, null, null);
+    }
+
+    @Test
+    public void givenTooLargeSize_whenGetUsers_thenException() throws Exception {
+//      when & then
+        exceptionRule.expect(InvalidRequestException.class);
+        exceptionRule.expectMessage("Page size should be between 1 and 100, but was: 101");
+
+        userService.getUsers(null, 101, null, null);
+    }
+
+    //    getUsersByIds
+
+    @Test
+    public void givenUserIds_whenGetUsersByIds_thenReturnUsersInOrderWithMissingIds() throws Exception {
+//        given
+        List<User> userList = createUserList();
+        given(userRepository.findWithInterestsByUserIdIn(Arrays.asList(2L, 3L, 1L))).willReturn(userList);
+
+//      when
+        UserBatch userBatch = userService.getUsersByIds(Arrays.asList(2L, 3L, 2L, 1L));
+
+//      then
+        assertThat(userBatch.getUsers()).containsExactly(userList.get(1), userList.get(0));
+        assertThat(userBatch.getMissingIds()).containsExactly(3L);
+        verify(userRepository, VerificationModeFactory.times(1)).findWithInterestsByUserIdIn(any());
+        reset(userRepository);
+    }
+
+    @Test
+    public void givenManyUserIds_whenGetUsersByIds_thenQueryInChunks() throws Exception {
+//        given
+        List<Long> userIdList = new ArrayList<>();
+        for (long userId = 1; userId <= 250; userId++)
+            userIdList.add(userId);
+        given(userRepository.findWithInterestsByUserIdIn(any())).willReturn(new ArrayList<>());
+
+//      when
+        UserBatch userBatch = userService.getUsersByIds(userIdList);
+
+//      then
+        assertThat(userBatch.getUsers()).isEmpty();
+        assertThat(userBatch.getMissingIds()).hasSize(250);
+        verify(userRepository, VerificationModeFactory.times(1)).findWithInterestsByUserIdIn(userIdList.subList(0, 100));
+        verify(userRepository, VerificationModeFactory.times(1)).findWithInterestsByUserIdIn(userIdList.subList(100, 200));
+        verify(userRepository, VerificationModeFactory.times(1)).findWithInterestsByUserIdIn(userIdList.subList(200, 250));
+        reset(userRepository);
+    }
+
+    @Test
+    public void givenEmptyUserIds_whenGetUsersByIds_thenException() throws Exception {
+//      when & then
+        exceptionRule.expect(InvalidRequestException.class);
+        exceptionRule.expectMessage("Ids should have 1 to 1000 entries");
+
+        userService.getUsersByIds(new ArrayList<>());
+    }
+
     @Test
     public void givenUserId_whenGetUserById_thenReturnUser() throws Exception {
 
@@ -127,7 +228,6 @@ public class UserServiceTest {
         user1.setUserId(1L);
 
         given(userRepository.save(user)).willReturn(user1);
-        given(userRepository.findById(1L)).willReturn(Optional.of(user1));
 
         //     When
         User createdUser = this.userService.createUser(user);
@@ -135,35 +235,32 @@ public class UserServiceTest {
 //        Then
         assertThat(createdUser).isEqualTo(user1);
         verify(userRepository, VerificationModeFactory.times(1)).save(user);
-        verify(userRepository, VerificationModeFactory.times(1)).findById(1L);
+        verify(userRepository, VerificationModeFactory.times(0)).findById(1L);
         reset(userRepository);
     }
 
     @Test
-    public void givenUserWithInterest_whenCreateUser_thenReturnUser() throws Exception {
+    public void givenUserWithInterest_whenCreateUser_thenSaveOnceByCascade() throws Exception {
         //        given
         User userRB = produceUser(null,"name1", "male", "nkname1", "USA", 0,
                 null, "dota", "noob");
-        User userS1 = produceUser(1L,"name1", "male", "nkname1", "USA", 0,
-                null, "dota", "noob");
         User userFinal = produceUser(1L,"name1", "male", "nkname1", "USA", 0,
                 1L, "dota", "noob");
+        userRB.getInterestSet().iterator().next().setUser(null);
 
-        given(userRepository.save(userRB)).willReturn(userS1);
-        given(interestRepository.save(userS1.getInterestSet().iterator().next()))
-                .willReturn(userFinal.getInterestSet().iterator().next());
-        given(userRepository.findById(1L)).willReturn(Optional.of(userFinal));
+        given(userRepository.save(userRB)).willReturn(userFinal);
 
         //     When
         User createdUser = this.userService.createUser(userRB);
 
 //        Then
         assertThat(createdUser).isEqualTo(userFinal);
+        assertThat(userRB.getInterestSet().iterator().next().getUser()).isEqualTo(userRB);
+        assertThat(userRB.getInterestSet().iterator().next().getGeography()).isEqualTo("USA");
 
         verify(userRepository, VerificationModeFactory.times(1)).save(userRB);
-        verify(interestRepository, VerificationModeFactory.times(1))
-                .save(userS1.getInterestSet().iterator().next());
-        verify(userRepository, VerificationModeFactory.times(1)).findById(userFinal.getUserId());
+        verify(interestRepository, VerificationModeFactory.times(0)).save(any(Interest.class));
+        verify(userRepository, VerificationModeFactory.times(0)).findById(userFinal.getUserId());
 
         reset(userRepository);
         reset(interestRepository);
@@ -183,41 +280,87 @@ public class UserServiceTest {
         given(userRepository.findById(1L)).willReturn(Optional.of(userRB));
         given(userRepository.save(userRB)).willReturn(userS1);
 //      when
-        this.userService.updateUserById(userRB, 1L);
+        this.userService.updateUserById(userRB, 1L, null);
 //      Then
         verify(userRepository, VerificationModeFactory.times(1)).findById(1L);
         verify(userRepository, VerificationModeFactory.times(1)).save(userRB);
+        verify(interestRepository, VerificationModeFactory.times(0)).updateGeographyByUserId(any(), any());
         reset(userRepository);
     }
 
+    @Test
+    public void givenUserWithNewGeography_whenUpdateUserById_thenUpdateGeographyOfInterests() throws Exception {
+        //        given
+        User userRB = produceUser(1L,"name1", "male", "nkname1", "USA", 0,
+                1L, "dota", "noob");
+        User userS1 = produceUser(1L,"name1", "male", "nkname1", "Europe", 0,
+                1L, "dota", "noob");
+
+        given(userRepository.findById(1L)).willReturn(Optional.of(userRB));
+//      when
+        this.userService.updateUserById(userS1, 1L, null);
+//      Then
+        verify(interestRepository, VerificationModeFactory.times(1)).updateGeographyByUserId(1L, "Europe");
+        verify(userRepository, VerificationModeFactory.times(1)).save(userRB);
+        reset(userRepository);
+        reset(interestRepository);
+    }
 
-//      deleteUserById
     @Test
-    public void whenDeleteUserById_ThenSuccess() throws Exception {
+    public void givenChangedUser_whenUpdateUserByIdWithVersion_thenPreconditionFailedException() throws Exception {
         //        given
         User userRB = produceUser(1L,"name1", "male", "nkname1", "USA", 0,
                 1L, "dota", "noob");
+        userRB.setVersion(2L);
+        User userS1 = produceUser(1L,"name2", "male", "nkname1", "USA", 0,
+                1L, "dota", "noob");
+
         given(userRepository.findById(1L)).willReturn(Optional.of(userRB));
+//      when and then
+        exceptionRule.expect(PreconditionFailedException.class);
+        exceptionRule.expectMessage("User with userId: 1 is at version: 2, not at version of If-Match: 1");
+        this.userService.updateUserById(userS1, 1L, 1L);
+    }
+
+
+//      deleteUserById
+    @Test
+    public void whenDeleteUserById_ThenSuccess() throws Exception {
+        //        given
+        given(userRepository.softDeleteById(1L)).willReturn(1);
 
         //      when & then
 
         this.userService.deleteUserById(1L);
 
-        verify(interestRepository, VerificationModeFactory.times(1)).deleteInterestsByUserId(1L);
-        verify(userRepository, VerificationModeFactory.times(1)).deleteById(1L);
+        verify(userRepository, VerificationModeFactory.times(1)).softDeleteById(1L);
+        verify(userRepository, VerificationModeFactory.times(0)).findById(1L);
+        verify(interestRepository, VerificationModeFactory.times(0)).deleteInterestsByUserId(1L);
+        verify(userRepository, VerificationModeFactory.times(0)).deleteById(1L);
 
         reset(userRepository);
         reset(interestRepository);
 
     }
 
+    @Test
+    public void givenNoUser_whenDeleteUserById_thenResourceNotFoundException() throws Exception {
+        //        given
+        given(userRepository.softDeleteById(1L)).willReturn(0);
+
+        //      when & then
+        exceptionRule.expect(ResourceNotFoundException.class);
+        exceptionRule.expectMessage("User cannot be found with id: 1");
+        this.userService.deleteUserById(1L);
+    }
+
 //    getMatchUserByGameAndLevelAndGeography
     @Test
     public void givenUsers_whenGetMatchUserByGameAndLevelAndGeography_thenReturnUserList() throws Exception {
 //        given
         List<User> userList = createUserList();
-        given(userRepository.findMatchUserByGameAndLevelAndGeography("dota", "noob", "USA"))
-                .willReturn(userList);
+        for (User user : userList)
+            this.matchIndex.indexUser(user);
 
 //      when and then
         List<User> resList = this.userService.getMatchUserByGameAndLevelAndGeography("dota", "noob", "USA");
@@ -225,8 +368,6 @@ public class UserServiceTest {
         for (User user : userList) {
             assertThat(resList).contains(user);
         }
-        verify(userRepository, VerificationModeFactory.times(1))
-                .findMatchUserByGameAndLevelAndGeography("dota", "noob", "USA");
         reset(userRepository);
     }
 
@@ -238,43 +379,51 @@ public class UserServiceTest {
         Long interestId = 1L;
 
         List<User> userList = createUserList();
-        given(userRepository.findById(userId)).willReturn(Optional.of(userList.get(0)));
-        given(interestRepository.findById(interestId))
-                .willReturn(Optional.of(userList.get(0).getInterestSet().iterator().next()));
-        given(userRepository.findMatchUserByGameAndLevelAndGeography("dota", "noob", "USA"))
-                .willReturn(Arrays.asList(userList.get(1)));
+        for (User user : userList)
+            this.matchIndex.indexUser(user);
 
 //      when and then
         List<User> resList = this.userService.getOtherUserMatchUserInterest(userId, interestId);
         assertThat(resList.size()).isEqualTo(1);
         assertThat(resList).contains(userList.get(1));
 
-        verify(userRepository, VerificationModeFactory.times(1)).findById(userId);
-        verify(interestRepository, VerificationModeFactory.times(1)).findById(interestId);
-        verify(userRepository, VerificationModeFactory.times(1))
-                .findMatchUserByGameAndLevelAndGeography("dota", "noob", "USA");
+        verify(userRepository, VerificationModeFactory.times(0)).findById(userId);
+        verify(interestRepository, VerificationModeFactory.times(0)).findById(interestId);
 
         reset(userRepository);
         reset(interestRepository);
     }
 
-    //    getUserWithMaxCreditByGameAndLevel
     @Test
-    public void givenGameAndLevel_whenGetUserWithMaxCreditByGameAndLevel_thenReturnUserList() throws Exception {
+    public void givenOtherUserInterestId_whenGetOtherUserMatchUserInterest_thenException() throws Exception {
 //        given
         List<User> userList = createUserList();
-        given(userRepository.findUserWithMaxCreditByGameAndLevel("dota", "noob"))
-                .willReturn(userList);
+        for (User user : userList)
+            this.matchIndex.indexUser(user);
 
-//      when and then
-        List<User> resList = this.userRepository.findUserWithMaxCreditByGameAndLevel("dota", "noob");
-        assertThat(resList.size()).isEqualTo(2);
-        for (User user : userList) {
-            assertThat(resList).contains(user);
-        }
+        // expectations
+        exceptionRule.expect(InvalidRequestException.class);
+        exceptionRule.expectMessage("User with userId: 1 does not have the interest with interestId : 2");
 
-        verify(userRepository, VerificationModeFactory.times(1))
-                .findUserWithMaxCreditByGameAndLevel("dota", "noob");
+        // when & then
+        this.userService.getOtherUserMatchUserInterest(1L, 2L);
+    }
+
+    //    getUserWithMaxCreditByGameAndLevel
+    @Test
+    public void givenIndexedUsers_whenGetUserWithMaxCreditByGameAndLevel_thenReturnMaxHolders() throws Exception {
+//        given
+        User user1 = produceUser(1L,"name1", "male", "nkname1", "USA", 3,
+                1L, "dota", "noob");
+        User user2 = produceUser(2L,"name2", "male", "nkname2", "USA", 9,
+                2L,"dota", "noob");
+        this.matchIndex.indexUser(user1);
+        this.matchIndex.indexUser(user2);
+
+//      when and then
+        List<User> resList = this.userService.getUserWithMaxCreditByGameAndLevel("dota", "noob");
+        assertThat(resList.size()).isEqualTo(1);
+        assertThat(resList).contains(user2);
         reset(userRepository);
     }
 
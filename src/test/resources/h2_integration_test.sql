@@ -1,31 +1,36 @@
+-- geography: 0 Europe, 1 Asia, 2 USA
 INSERT INTO users(user_id, name, gender, nickname, geography)
 VALUES
-(1001, 'Name1001', 'male', 'nickname1001', 'Europe' ),
-(1002, 'Name1002', 'male', 'nickname1002', 'Asia' ),
-(1003, 'Name1003', 'female', 'nickname1003', 'Europe' ),
-(1004, 'Name1004', 'male', 'nickname1004', 'Europe' ),
-(1005, 'Name1005', 'female', 'nickname1005', 'Asia' ),
-(1006, 'Name1006', 'female', 'nickname1006', 'Europe' ),
-(1007, 'Name1007', 'male', 'nickname1007', 'USA' ),
-(1008, 'Name1008', 'female', 'nickname1008', 'Asia' ),
-(1009, 'Name1009', 'male', 'nickname1009', 'Europe' ),
-(1010, 'Name1010', 'male', 'nickname1010', 'USA' );
+(1001, 'Name1001', 'male', 'nickname1001', 0 ),
+(1002, 'Name1002', 'male', 'nickname1002', 1 ),
+(1003, 'Name1003', 'female', 'nickname1003', 0 ),
+(1004, 'Name1004', 'male', 'nickname1004', 0 ),
+(1005, 'Name1005', 'female', 'nickname1005', 1 ),
+(1006, 'Name1006', 'female', 'nickname1006', 0 ),
+(1007, 'Name1007', 'male', 'nickname1007', 2 ),
+(1008, 'Name1008', 'female', 'nickname1008', 1 ),
+(1009, 'Name1009', 'male', 'nickname1009', 0 ),
+(1010, 'Name1010', 'male', 'nickname1010', 2 );
 
+-- game: 0 fortnite, 1 call of duty, 2 dota, 3 valhalla, 4 among us; level: 0 noob, 1 pro, 2 invincible
 INSERT INTO interests(interest_id, game, level, credit, user_id)
 VALUES
-(1001, 'fortnite', 'noob', 10, 1001 ),
-(1002, 'call of duty', 'noob', 8, 1001 ),
-(1003, 'fortnite', 'noob', 5, 1002 ),
-(1004, 'dota', 'noob', 4, 1002 ),
-(1005, 'among us', 'pro', 3, 1002 ),
-(1006, 'fortnite', 'noob', 0, 1003 ),
-(1007, 'among us', 'invincible', 12, 1003 ),
-(1008, 'dota', 'pro', 6, 1004 ),
-(1009, 'dota', 'noob', 5, 1005 ),
-(1010, 'among us', 'invincible', 4, 1006 ),
-(1011, 'fortnite', 'noob', 3, 1007 ),
-(1012, 'valhalla', 'pro', 0, 1008 ),
-(1013, 'dota', 'invincible', 10, 1008 ),
-(1014, 'valhalla', 'pro', 9, 1009 ),
-(1015, 'valhalla', 'noob', 0, 1010 );
+(1001, 0, 0, 10, 1001 ),
+(1002, 1, 0, 8, 1001 ),
+(1003, 0, 0, 5, 1002 ),
+(1004, 2, 0, 4, 1002 ),
+(1005, 4, 1, 3, 1002 ),
+(1006, 0, 0, 0, 1003 ),
+(1007, 4, 2, 12, 1003 ),
+(1008, 2, 1, 6, 1004 ),
+(1009, 2, 0, 5, 1005 ),
+(1010, 4, 2, 4, 1006 ),
+(1011, 0, 0, 3, 1007 ),
+(1012, 3, 1, 0, 1008 ),
+(1013, 2, 2, 10, 1008 ),
+(1014, 3, 1, 9, 1009 ),
+(1015, 3, 0, 0, 1010 );
 
+
+-- geography of interests is a copy of geography of their users
+UPDATE interests SET geography = (SELECT users.geography FROM users WHERE users.user_id = interests.user_id);